@@ -1,6 +1,9 @@
 package io.choerodon.iam;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
@@ -8,6 +11,7 @@ import org.springframework.cloud.netflix.feign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import io.choerodon.resource.annoation.EnableChoerodonResourceServer;
@@ -21,6 +25,7 @@ import io.choerodon.resource.annoation.EnableChoerodonResourceServer;
 @SpringBootApplication
 @EnableChoerodonResourceServer
 @EnableAsync
+@EnableScheduling
 public class IAMServiceApplication {
 
     public static void main(String[] args) {
@@ -46,4 +51,44 @@ public class IAMServiceApplication {
         executor.setCorePoolSize(4);
         return executor;
     }
+
+    @Bean
+    @Qualifier("parse-permission-executor")
+    public AsyncTaskExecutor parsePermissionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("parse-permission-executor");
+        executor.setMaxPoolSize(2);
+        executor.setCorePoolSize(2);
+        return executor;
+    }
+
+    /**
+     * 广播和推送导入进度使用的线程池，每个订阅者和每个导入同时最多占用一个任务
+     */
+    @Bean
+    @Qualifier("import-progress-executor")
+    public AsyncTaskExecutor importProgressExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("import-progress-executor");
+        executor.setMaxPoolSize(2);
+        executor.setCorePoolSize(2);
+        return executor;
+    }
+
+    /**
+     * 批量创建用户时BCrypt加密使用的线程池，默认使用一半的cpu核数
+     * 队列满时由提交的导入线程自己加密，不会拒绝任务
+     */
+    @Bean
+    @Qualifier("password-hash-executor")
+    public ThreadPoolTaskExecutor passwordHashExecutor(@Value("${choerodon.user.password.hash-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("password-hash-executor");
+        executor.setMaxPoolSize(size);
+        executor.setCorePoolSize(size);
+        executor.setQueueCapacity(size * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
 }
@@ -7,6 +7,7 @@ import io.choerodon.core.exception.NotFoundException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.iam.api.dto.LanguageDTO;
 import io.choerodon.iam.app.service.LanguageService;
+import io.choerodon.iam.infra.cache.ResponseVersions;
 import io.choerodon.mybatis.pagehelper.annotation.SortDefault;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.mybatis.pagehelper.domain.Sort;
@@ -16,6 +17,7 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
@@ -31,8 +33,11 @@ public class LanguageController extends BaseController {
 
     private LanguageService languageService;
 
-    public LanguageController(LanguageService languageService) {
+    private ResponseVersions responseVersions;
+
+    public LanguageController(LanguageService languageService, ResponseVersions responseVersions) {
         this.languageService = languageService;
+        this.responseVersions = responseVersions;
     }
 
     /**
@@ -75,8 +80,8 @@ public class LanguageController extends BaseController {
     @Permission(level = ResourceLevel.SITE, permissionLogin = true)
     @ApiOperation(value = "查询language列表")
     @GetMapping(value = "/list")
-    public ResponseEntity<List<LanguageDTO>> listAll() {
-        return new ResponseEntity<>(languageService.listAll(), HttpStatus.OK);
+    public ResponseEntity<List<LanguageDTO>> listAll(@ApiIgnore WebRequest request) {
+        return responseVersions.conditional(request, ResponseVersions.languageKey(), languageService::listAll);
     }
 
 
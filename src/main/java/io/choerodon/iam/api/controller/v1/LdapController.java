@@ -9,8 +9,10 @@ import io.choerodon.iam.app.service.LdapService;
 import io.choerodon.swagger.annotation.Permission;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * @author wuguokai
@@ -132,4 +134,12 @@ public class LdapController {
                                                         @PathVariable Long id) {
         return new ResponseEntity<>(ldapService.queryLatestHistory(id), HttpStatus.OK);
     }
+
+    @Permission(level = ResourceLevel.ORGANIZATION)
+    @ApiOperation(value = "订阅ldap同步的实时进度(Server-Sent Events)")
+    @GetMapping(value = "/{id}/sync_progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter syncProgress(@PathVariable("organization_id") Long organizationId,
+                                   @PathVariable Long id) {
+        return ldapService.subscribeSyncProgress(id);
+    }
 }
@@ -6,6 +6,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.iam.api.dto.LookupDTO;
 import io.choerodon.iam.app.service.LookupService;
+import io.choerodon.iam.infra.cache.ResponseVersions;
 import io.choerodon.mybatis.pagehelper.annotation.SortDefault;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.mybatis.pagehelper.domain.Sort;
@@ -15,6 +16,7 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
@@ -29,8 +31,11 @@ public class LookupController extends BaseController {
 
     private LookupService lookupService;
 
-    public LookupController(LookupService lookupService) {
+    private ResponseVersions responseVersions;
+
+    public LookupController(LookupService lookupService, ResponseVersions responseVersions) {
         this.lookupService = lookupService;
+        this.responseVersions = responseVersions;
     }
 
     /**
@@ -97,8 +102,10 @@ public class LookupController extends BaseController {
     @Permission(level = ResourceLevel.SITE)
     @ApiOperation(value = "通过code查询快码")
     @GetMapping(value = "/code")
-    public ResponseEntity<LookupDTO> listByCode(@RequestParam(name = "value") String code) {
-        return new ResponseEntity<>(lookupService.listByCodeWithLookupValues(code), HttpStatus.OK);
+    public ResponseEntity<LookupDTO> listByCode(@RequestParam(name = "value") String code,
+                                                @ApiIgnore WebRequest request) {
+        return responseVersions.conditional(request, ResponseVersions.lookupKey(code),
+                () -> lookupService.listByCodeWithLookupValues(code));
     }
 
     /**
@@ -1,16 +1,21 @@
 package io.choerodon.iam.api.controller.v1;
 
 import io.choerodon.core.iam.ResourceLevel;
+import io.choerodon.core.oauth.CustomUserDetails;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.core.validator.ValidList;
 import io.choerodon.iam.api.dto.MenuDTO;
 import io.choerodon.iam.api.validator.MenuValidator;
 import io.choerodon.iam.api.validator.ResourceLevelValidator;
 import io.choerodon.iam.app.service.MenuService;
+import io.choerodon.iam.infra.cache.ResponseVersions;
 import io.choerodon.swagger.annotation.Permission;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -25,10 +30,12 @@ public class MenuController {
 
     private MenuService menuService;
     private MenuValidator menuValidator;
+    private ResponseVersions responseVersions;
 
-    public MenuController(MenuService menuService, MenuValidator menuValidator) {
+    public MenuController(MenuService menuService, MenuValidator menuValidator, ResponseVersions responseVersions) {
         this.menuService = menuService;
         this.menuValidator = menuValidator;
+        this.responseVersions = responseVersions;
     }
 
     /**
@@ -98,9 +105,14 @@ public class MenuController {
     @GetMapping("/tree")
     public ResponseEntity<List<MenuDTO>> listTreeMenusWithPermissions(
             @RequestParam(required = false, name = "test_permission") boolean testPermission,
-            @RequestParam String level) {
+            @RequestParam String level,
+            @ApiIgnore WebRequest request) {
         ResourceLevelValidator.validate(level);
-        return new ResponseEntity<>(menuService.listTreeMenusWithPermissions(testPermission, level), HttpStatus.OK);
+        CustomUserDetails userDetails = DetailsHelper.getUserDetails();
+        Long userId = userDetails == null ? null : userDetails.getUserId();
+        //菜单未变化时直接返回304
+        return responseVersions.conditional(request, ResponseVersions.menuTreeKey(level, testPermission, userId),
+                () -> menuService.listTreeMenusWithPermissions(testPermission, level));
     }
 
     /**
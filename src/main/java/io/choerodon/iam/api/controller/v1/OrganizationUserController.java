@@ -25,6 +25,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
@@ -172,4 +173,12 @@ public class OrganizationUserController extends BaseController {
         return new ResponseEntity<>(uploadHistoryService.latestHistory(userId, "user", organizationId, ResourceLevel.ORGANIZATION.value()), HttpStatus.OK);
     }
 
+    @Permission(level = ResourceLevel.ORGANIZATION)
+    @ApiOperation("订阅最新一次导入的实时进度(Server-Sent Events)")
+    @GetMapping(value = "/users/{user_id}/upload/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter latestProgress(@PathVariable(name = "organization_id") Long organizationId,
+                                     @PathVariable(name = "user_id") Long userId) {
+        return uploadHistoryService.subscribeProgress(userId, "user", organizationId, ResourceLevel.ORGANIZATION.value());
+    }
+
 }
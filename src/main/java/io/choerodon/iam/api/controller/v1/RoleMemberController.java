@@ -7,9 +7,11 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import springfox.documentation.annotations.ApiIgnore;
 
 import io.choerodon.core.base.BaseController;
@@ -292,6 +294,56 @@ public class RoleMemberController extends BaseController {
     }
 
 
+    /**
+     * 在site层按游标查询用户，用户包含拥有的site层的角色
+     *
+     * @param cursor    上一页返回的游标，为空表示第一页
+     * @param withCount 是否返回近似总数
+     */
+    @Permission(level = ResourceLevel.SITE)
+    @ApiOperation(value = "全局层按游标查询用户列表以及该用户拥有的角色")
+    @PostMapping(value = "/site/role_members/users/roles/cursor")
+    public ResponseEntity<CursorPageDTO<UserWithRoleDTO>> cursorQueryUsersWithSiteLevelRoles(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "with_count", defaultValue = "false") boolean withCount,
+            @RequestBody(required = false) @Valid RoleAssignmentSearchDTO roleAssignmentSearchDTO) {
+        return new ResponseEntity<>(userService.cursorQueryUsersWithLevelRoles(cursor, size, withCount,
+                roleAssignmentSearchDTO, 0L, ResourceLevel.SITE.value()), HttpStatus.OK);
+    }
+
+    /**
+     * 在organization层按游标查询用户，用户包含拥有的organization层的角色
+     */
+    @Permission(level = ResourceLevel.ORGANIZATION)
+    @ApiOperation(value = "组织层按游标查询用户列表以及该用户拥有的角色")
+    @PostMapping(value = "/organizations/{organization_id}/role_members/users/roles/cursor")
+    public ResponseEntity<CursorPageDTO<UserWithRoleDTO>> cursorQueryUsersWithOrganizationLevelRoles(
+            @PathVariable(name = "organization_id") Long sourceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "with_count", defaultValue = "false") boolean withCount,
+            @RequestBody(required = false) @Valid RoleAssignmentSearchDTO roleAssignmentSearchDTO) {
+        return new ResponseEntity<>(userService.cursorQueryUsersWithLevelRoles(cursor, size, withCount,
+                roleAssignmentSearchDTO, sourceId, ResourceLevel.ORGANIZATION.value()), HttpStatus.OK);
+    }
+
+    /**
+     * 在project层按游标查询用户，用户包含拥有的project层的角色
+     */
+    @Permission(level = ResourceLevel.PROJECT, roles = InitRoleCode.PROJECT_OWNER)
+    @ApiOperation(value = "项目层按游标查询用户列表以及该用户拥有的角色")
+    @PostMapping(value = "/projects/{project_id}/role_members/users/roles/cursor")
+    public ResponseEntity<CursorPageDTO<UserWithRoleDTO>> cursorQueryUsersWithProjectLevelRoles(
+            @PathVariable(name = "project_id") Long sourceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "with_count", defaultValue = "false") boolean withCount,
+            @RequestBody(required = false) @Valid RoleAssignmentSearchDTO roleAssignmentSearchDTO) {
+        return new ResponseEntity<>(userService.cursorQueryUsersWithLevelRoles(cursor, size, withCount,
+                roleAssignmentSearchDTO, sourceId, ResourceLevel.PROJECT.value()), HttpStatus.OK);
+    }
+
     /**
      * 在 organization 层根据 用户Id 及 组织Id 查询用户及该用户在此组织下拥有的角色
      */
@@ -402,4 +454,27 @@ public class RoleMemberController extends BaseController {
         return new ResponseEntity<>(uploadHistoryService.latestHistory(userId, "member-role", projectId, ResourceLevel.PROJECT.value()), HttpStatus.OK);
     }
 
+    @Permission(level = ResourceLevel.SITE)
+    @ApiOperation("订阅site层最新一次导入的实时进度(Server-Sent Events)")
+    @GetMapping(value = "/site/member_role/users/{user_id}/upload/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter latestProgressOnSite(@PathVariable(name = "user_id") Long userId) {
+        return uploadHistoryService.subscribeProgress(userId, "member-role", 0L, ResourceLevel.SITE.value());
+    }
+
+    @Permission(level = ResourceLevel.ORGANIZATION)
+    @ApiOperation("订阅组织层最新一次导入的实时进度(Server-Sent Events)")
+    @GetMapping(value = "/organizations/{organization_id}/member_role/users/{user_id}/upload/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter latestProgressOnOrganization(@PathVariable(name = "organization_id") Long organizationId,
+                                                   @PathVariable(name = "user_id") Long userId) {
+        return uploadHistoryService.subscribeProgress(userId, "member-role", organizationId, ResourceLevel.ORGANIZATION.value());
+    }
+
+    @Permission(level = ResourceLevel.PROJECT, roles = InitRoleCode.PROJECT_OWNER)
+    @ApiOperation("订阅项目层最新一次导入的实时进度(Server-Sent Events)")
+    @GetMapping(value = "/projects/{project_id}/member_role/users/{user_id}/upload/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter latestProgressOnProject(@PathVariable(name = "project_id") Long projectId,
+                                              @PathVariable(name = "user_id") Long userId) {
+        return uploadHistoryService.subscribeProgress(userId, "member-role", projectId, ResourceLevel.PROJECT.value());
+    }
+
 }
@@ -0,0 +1,55 @@
+package io.choerodon.iam.api.dto;
+
+import java.util.List;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * 游标分页结果
+ *
+ * @author superlee
+ */
+public class CursorPageDTO<T> {
+
+    @ApiModelProperty(value = "当前页的数据")
+    private List<T> content;
+
+    @ApiModelProperty(value = "下一页的游标，为空表示没有下一页")
+    private String nextCursor;
+
+    @ApiModelProperty(value = "近似总数，未请求时为空")
+    private Integer totalElements;
+
+    public CursorPageDTO() {
+    }
+
+    public CursorPageDTO(List<T> content, String nextCursor, Integer totalElements) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.totalElements = totalElements;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Integer getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Integer totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -0,0 +1,71 @@
+package io.choerodon.iam.api.dto;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * excel导入或ldap同步的实时进度
+ *
+ * @author superlee
+ */
+public class ImportProgressDTO {
+    @ApiModelProperty(value = "已读取的行数")
+    private Long readCount;
+    @ApiModelProperty(value = "通过校验的行数，从检查点恢复时为空")
+    private Long validatedCount;
+    @ApiModelProperty(value = "成功数量")
+    private Long insertedCount;
+    @ApiModelProperty(value = "失败数量")
+    private Long failedCount;
+    @ApiModelProperty(value = "每秒读取的行数，从检查点恢复时为空")
+    private Long rate;
+    @ApiModelProperty(value = "是否结束，结束后客户端应关闭连接")
+    private Boolean finished;
+
+    public Long getReadCount() {
+        return readCount;
+    }
+
+    public void setReadCount(Long readCount) {
+        this.readCount = readCount;
+    }
+
+    public Long getValidatedCount() {
+        return validatedCount;
+    }
+
+    public void setValidatedCount(Long validatedCount) {
+        this.validatedCount = validatedCount;
+    }
+
+    public Long getInsertedCount() {
+        return insertedCount;
+    }
+
+    public void setInsertedCount(Long insertedCount) {
+        this.insertedCount = insertedCount;
+    }
+
+    public Long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Long getRate() {
+        return rate;
+    }
+
+    public void setRate(Long rate) {
+        this.rate = rate;
+    }
+
+    public Boolean getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Boolean finished) {
+        this.finished = finished;
+    }
+}
@@ -0,0 +1,46 @@
+package io.choerodon.iam.api.eventhandler;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+
+/**
+ * 接收其他节点广播的缓存失效事件
+ *
+ * @author superlee
+ */
+@Component
+@ConditionalOnProperty(value = "choerodon.cache.bus.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheEventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheEventListener.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CacheEventPublisher cacheEventPublisher;
+
+    public CacheEventListener(CacheEventPublisher cacheEventPublisher) {
+        this.cacheEventPublisher = cacheEventPublisher;
+    }
+
+    @KafkaListener(topics = CacheEventPublisher.TOPIC, containerFactory = "cacheEventListenerContainerFactory")
+    public void receive(String message) {
+        try {
+            List<CacheEvent> events = objectMapper.readValue(message, new TypeReference<List<CacheEvent>>() {
+            });
+            cacheEventPublisher.receive(events);
+        } catch (IOException e) {
+            LOGGER.info("read cache event failed: {}", e.getMessage());
+        }
+    }
+}
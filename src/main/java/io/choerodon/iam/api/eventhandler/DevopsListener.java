@@ -7,10 +7,11 @@ import io.choerodon.asgard.saga.feign.SagaClient;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.iam.api.dto.payload.UserMemberEventPayload;
-import io.choerodon.iam.domain.repository.LabelRepository;
-import io.choerodon.iam.infra.common.utils.CollectionUtils;
+import io.choerodon.iam.infra.dataobject.LabelDO;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
+import io.choerodon.iam.infra.dataobject.RoleDO;
 import io.choerodon.iam.infra.mapper.MemberRoleMapper;
+import io.choerodon.iam.infra.mapper.RoleMapper;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -27,60 +28,92 @@ import static io.choerodon.iam.infra.common.utils.SagaTopic.MemberRole.MEMBER_RO
 @Component
 public class DevopsListener {
 
+    private static final int BATCH_SIZE = 1000;
+
     private MemberRoleMapper memberRoleMapper;
-    private LabelRepository labelRepository;
+    private RoleMapper roleMapper;
     private SagaClient sagaClient;
     private ObjectMapper objectMapper = new ObjectMapper();
 
     public DevopsListener(MemberRoleMapper memberRoleMapper,
-                          LabelRepository labelRepository,
+                          RoleMapper roleMapper,
                           SagaClient sagaClient) {
         this.memberRoleMapper = memberRoleMapper;
-        this.labelRepository = labelRepository;
+        this.roleMapper = roleMapper;
         this.sagaClient = sagaClient;
     }
 
     @SagaTask(code = MEMBER_ROLE_UPDATE, sagaCode = "devops-upgrade-0.9", seq = 1, description = "iam接收devops平滑升级事件")
     public void assignRolesOnProject(String messgae) {
-        MemberRoleDO memberRole = new MemberRoleDO();
-        memberRole.setSourceType(ResourceLevel.PROJECT.value());
-        memberRole.setMemberType("user");
-        List<MemberRoleDO> memberRoles = memberRoleMapper.select(memberRole);
-        Map<Map<Long, Long>, List<MemberRoleDO>> map
-                = memberRoles.stream().collect(Collectors.groupingBy(m->{
-                        Map<Long, Long> map1 = new HashMap<>();
-                        map1.put(m.getSourceId(), m.getMemberId());
-                        return map1;
-                    }));
-        List<UserMemberEventPayload> userMemberEventPayloads = new ArrayList<>();
-        for (Map.Entry<Map<Long, Long>, List<MemberRoleDO>> entry : map.entrySet()) {
-            UserMemberEventPayload payload = new UserMemberEventPayload();
-            List<MemberRoleDO> mrs = entry.getValue();
-            Long sourceId = null;
-            Long userId = null;
-            List<Long> roleIds = new ArrayList<>();
-            for(MemberRoleDO mr : mrs) {
-                sourceId = mr.getSourceId();
-                userId = mr.getMemberId();
-                roleIds.add(mr.getRoleId());
+        //mysql逐行读取期间同一连接不能执行其他查询，先一次查出所有角色的label，只在本次任务中使用，不受缓存失效影响
+        Map<Long, Set<String>> labelsByRole = new HashMap<>();
+        for (RoleDO role : roleMapper.selectAllWithLabels()) {
+            labelsByRole.put(role.getId(), role.getLabels().stream().map(LabelDO::getName).collect(Collectors.toSet()));
+        }
+        PayloadWriter writer = new PayloadWriter(labelsByRole);
+        memberRoleMapper.selectProjectUserMemberRoles(context -> writer.add(context.getResultObject()));
+        writer.finish();
+    }
+
+    /**
+     * 游标结果按(source_id, member_id)有序，相邻的记录属于同一个用户，
+     * 每凑满一批payload就发送一次saga，内存占用与member_role表大小无关
+     */
+    private class PayloadWriter {
+
+        private final Map<Long, Set<String>> labelsByRole;
+        private long sourceId;
+        private long memberId;
+        private final List<Long> roleIds = new ArrayList<>();
+        private final List<UserMemberEventPayload> payloads = new ArrayList<>(BATCH_SIZE);
+
+        PayloadWriter(Map<Long, Set<String>> labelsByRole) {
+            this.labelsByRole = labelsByRole;
+        }
+
+        void add(MemberRoleDO memberRole) {
+            if (!roleIds.isEmpty()
+                    && (memberRole.getSourceId() != sourceId || memberRole.getMemberId() != memberId)) {
+                closeGroup();
             }
-            payload.setResourceId(sourceId);
-            payload.setResourceType("project");
-            payload.setUserId(userId);
+            sourceId = memberRole.getSourceId();
+            memberId = memberRole.getMemberId();
+            roleIds.add(memberRole.getRoleId());
+        }
+
+        void finish() {
             if (!roleIds.isEmpty()) {
-                payload.setRoleLabels(labelRepository.selectLabelNamesInRoleIds(roleIds));
+                closeGroup();
+            }
+            if (!payloads.isEmpty()) {
+                flush();
+            }
+        }
+
+        private void closeGroup() {
+            UserMemberEventPayload payload = new UserMemberEventPayload();
+            payload.setResourceId(sourceId);
+            payload.setResourceType(ResourceLevel.PROJECT.value());
+            payload.setUserId(memberId);
+            Set<String> labels = new HashSet<>();
+            roleIds.forEach(roleId -> labels.addAll(labelsByRole.getOrDefault(roleId, Collections.emptySet())));
+            payload.setRoleLabels(labels);
+            payloads.add(payload);
+            roleIds.clear();
+            if (payloads.size() >= BATCH_SIZE) {
+                flush();
             }
-            userMemberEventPayloads.add(payload);
         }
-        List<List<UserMemberEventPayload>> list = CollectionUtils.subList(userMemberEventPayloads, 1000);
-        list.forEach(l -> {
+
+        private void flush() {
             try {
-                String input = objectMapper.writeValueAsString(l);
-                String refIds = l.stream().map(t -> t.getUserId() + "").collect(Collectors.joining(","));
+                String input = objectMapper.writeValueAsString(payloads);
+                String refIds = payloads.stream().map(t -> t.getUserId() + "").collect(Collectors.joining(","));
                 sagaClient.startSaga(MEMBER_ROLE_UPDATE, new StartInstanceDTO(input, "users", refIds));
             } catch (Exception e) {
                 throw new CommonException("error.iRoleMemberServiceImpl.updateMemberRole.event");
             }
-        });
+            payloads.clear();
+        }
     }
 }
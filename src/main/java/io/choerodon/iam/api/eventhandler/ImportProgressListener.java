@@ -0,0 +1,42 @@
+package io.choerodon.iam.api.eventhandler;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.infra.common.utils.ImportProgressEvent;
+import io.choerodon.iam.infra.common.utils.ImportProgressRegistry;
+
+/**
+ * 接收其他节点广播的导入进度
+ *
+ * @author superlee
+ */
+@Component
+@ConditionalOnProperty(value = "choerodon.cache.bus.enabled", havingValue = "true", matchIfMissing = true)
+public class ImportProgressListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportProgressListener.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImportProgressRegistry importProgressRegistry;
+
+    public ImportProgressListener(ImportProgressRegistry importProgressRegistry) {
+        this.importProgressRegistry = importProgressRegistry;
+    }
+
+    @KafkaListener(topics = ImportProgressRegistry.TOPIC, containerFactory = "importProgressListenerContainerFactory")
+    public void receive(String message) {
+        try {
+            importProgressRegistry.receive(objectMapper.readValue(message, ImportProgressEvent.class));
+        } catch (IOException e) {
+            LOGGER.info("read import progress failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package io.choerodon.iam.api.eventhandler;
 
-import io.choerodon.iam.domain.service.ParsePermissionService;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
-import rx.Observable;
-import rx.schedulers.Schedulers;
 
 /**
  * 根据接口解析权限
@@ -18,21 +21,49 @@ import rx.schedulers.Schedulers;
 public class ParsePermissionListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsePermissionListener.class);
     private static final String SWAGGER_TOPIC_NAME = "manager-service";
-    private ParsePermissionService parsePermissionService;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private ParsePermissionQueue parsePermissionQueue;
 
-    public ParsePermissionListener(ParsePermissionService parsePermissionService) {
-        this.parsePermissionService = parsePermissionService;
+    public ParsePermissionListener(ParsePermissionQueue parsePermissionQueue) {
+        this.parsePermissionQueue = parsePermissionQueue;
     }
 
     @KafkaListener(topics = SWAGGER_TOPIC_NAME)
     public void parse(byte[] bytes) {
         LOGGER.info("### begin to parse message");
+        String message = new String(bytes, StandardCharsets.UTF_8);
+        String serviceName = readServiceName(message);
+        if (serviceName == null) {
+            LOGGER.info("can not read appName from message, skip it");
+            return;
+        }
         try {
-            Observable.just(new String(bytes))
-                    .subscribeOn(Schedulers.computation())
-                    .subscribe(parsePermissionService::parser);
-        } catch (Exception e) {
-            LOGGER.info("rx.java observable exception: {}", e.getMessage());
+            parsePermissionQueue.submit(serviceName, message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("interrupted while waiting for the parse queue, service: {}", serviceName);
+        }
+    }
+
+    /**
+     * 只读取顶层的appName字段，跳过apiData等其他字段
+     */
+    private String readServiceName(String message) {
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("appName".equals(field)) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            LOGGER.info("read message failed: {}", e.getMessage());
         }
+        return null;
     }
 }
@@ -0,0 +1,130 @@
+package io.choerodon.iam.api.eventhandler;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.domain.service.ParsePermissionService;
+
+/**
+ * 权限解析的工作队列
+ * 同一服务的文档串行解析，排队期间只保留该服务最新的一份文档
+ * 排队的服务数达到上限时阻塞kafka消费线程，暂停拉取消息
+ *
+ * @author superlee
+ */
+@Component
+public class ParsePermissionQueue implements PublicMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParsePermissionQueue.class);
+
+    private ParsePermissionService parsePermissionService;
+
+    private AsyncTaskExecutor executor;
+
+    private int capacity;
+
+    /**
+     * serviceName -> 待解析的最新文档
+     */
+    private final Map<String, String> pending = new LinkedHashMap<>();
+
+    /**
+     * 已提交到线程池或正在解析的服务
+     */
+    private final Set<String> scheduled = new HashSet<>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong parsed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    public ParsePermissionQueue(ParsePermissionService parsePermissionService,
+                                @Qualifier("parse-permission-executor") AsyncTaskExecutor executor,
+                                @Value("${choerodon.permission.parse.queue-capacity:50}") int capacity) {
+        this.parsePermissionService = parsePermissionService;
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 提交一份文档，队列已满且该服务没有排队的文档时阻塞
+     *
+     * @param serviceName 服务名
+     * @param message     manager-service发送的消息
+     */
+    public void submit(String serviceName, String message) throws InterruptedException {
+        synchronized (pending) {
+            while (!pending.containsKey(serviceName) && pending.size() >= capacity) {
+                pending.wait();
+            }
+            if (pending.put(serviceName, message) != null) {
+                coalesced.incrementAndGet();
+                logger.info("swagger document of service: {} is replaced by a newer one", serviceName);
+                return;
+            }
+            if (scheduled.add(serviceName)) {
+                executor.execute(() -> parse(serviceName));
+            }
+        }
+    }
+
+    private void parse(String serviceName) {
+        String message;
+        synchronized (pending) {
+            message = pending.remove(serviceName);
+            pending.notifyAll();
+        }
+        try {
+            if (message != null) {
+                long begin = System.currentTimeMillis();
+                parsePermissionService.parser(message);
+                long latency = System.currentTimeMillis() - begin;
+                parsed.incrementAndGet();
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.warn("parse permission failed, service: {}", serviceName, e);
+        } finally {
+            synchronized (pending) {
+                if (pending.containsKey(serviceName)) {
+                    executor.execute(() -> parse(serviceName));
+                } else {
+                    scheduled.remove(serviceName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        int depth;
+        synchronized (pending) {
+            depth = pending.size();
+        }
+        long count = parsed.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("permission.parse.queue.depth", depth));
+        metrics.add(new Metric<>("permission.parse.coalesced", coalesced.get()));
+        metrics.add(new Metric<>("permission.parse.count", count));
+        metrics.add(new Metric<>("permission.parse.failed", failed.get()));
+        metrics.add(new Metric<>("permission.parse.latency.mean", count == 0 ? 0 : totalLatency.get() / count));
+        metrics.add(new Metric<>("permission.parse.latency.max", maxLatency.get()));
+        return metrics;
+    }
+}
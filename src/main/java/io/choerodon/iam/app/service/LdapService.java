@@ -6,6 +6,8 @@ import io.choerodon.iam.api.dto.LdapDTO;
 import io.choerodon.iam.api.dto.LdapHistoryDTO;
 import io.choerodon.iam.infra.dataobject.LdapDO;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
 import javax.naming.ldap.LdapContext;
 
 /**
@@ -48,6 +50,13 @@ public interface LdapService {
      */
     LdapHistoryDTO queryLatestHistory(Long id);
 
+    /**
+     * 订阅ldap同步的进度
+     *
+     * @param id ldap id
+     */
+    SseEmitter subscribeSyncProgress(Long id);
+
     LdapDTO enableLdap(Long organizationId, Long id);
 
     LdapDTO disableLdap(Long organizationId, Long id);
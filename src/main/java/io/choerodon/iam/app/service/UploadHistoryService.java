@@ -1,5 +1,7 @@
 package io.choerodon.iam.app.service;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
 import io.choerodon.iam.api.dto.UploadHistoryDTO;
 
 /**
@@ -7,4 +9,9 @@ import io.choerodon.iam.api.dto.UploadHistoryDTO;
  */
 public interface UploadHistoryService {
     UploadHistoryDTO latestHistory(Long userId, String type, Long sourceId, String sourceType);
+
+    /**
+     * 订阅最新一次导入的进度
+     */
+    SseEmitter subscribeProgress(Long userId, String type, Long sourceId, String sourceType);
 }
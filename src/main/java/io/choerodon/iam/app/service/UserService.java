@@ -46,6 +46,16 @@ public interface UserService {
     Page<UserWithRoleDTO> pagingQueryUsersWithProjectLevelRoles(PageRequest pageRequest,
                                                                 RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId);
 
+    /**
+     * 按用户id游标分页查询拥有该层级角色的用户，每页的代价与页码无关
+     *
+     * @param cursor    上一页返回的nextCursor，为空表示第一页
+     * @param withCount 是否返回近似总数
+     */
+    CursorPageDTO<UserWithRoleDTO> cursorQueryUsersWithLevelRoles(String cursor, int size, boolean withCount,
+                                                                  RoleAssignmentSearchDTO roleAssignmentSearchDTO,
+                                                                  Long sourceId, String sourceType);
+
     Page<UserDTO> pagingQueryUsersByRoleIdOnSiteLevel(PageRequest pageRequest,
                                                       RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long roleId);
 
@@ -1,13 +1,13 @@
 package io.choerodon.iam.app.service.impl;
 
 import io.choerodon.core.excel.ExcelReadConfig;
-import io.choerodon.core.excel.ExcelReadHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.app.service.ExcelService;
 import io.choerodon.iam.domain.repository.UploadHistoryRepository;
 import io.choerodon.iam.infra.common.utils.excel.ExcelImportUserTask;
+import io.choerodon.iam.infra.common.utils.excel.ExcelStreamReader;
 import io.choerodon.iam.infra.dataobject.UploadHistoryDO;
 import io.choerodon.iam.infra.dataobject.UserDO;
 import org.slf4j.Logger;
@@ -18,14 +18,12 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URLEncoder;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -51,22 +49,21 @@ public class ExcelServiceImpl implements ExcelService {
 
     @Override
     public void importUsers(Long organizationId, MultipartFile multipartFile) {
-        ExcelReadConfig excelReadConfig = initExcelReadConfig();
-        long begin = System.currentTimeMillis();
+        String suffix = ExcelStreamReader.suffix(multipartFile);
+        //上传的文件在请求结束后会被清理，先保存下来，由异步任务边读边导入
+        File file = ExcelStreamReader.saveTemp(multipartFile, suffix);
         try {
-            List<UserDO> users = ExcelReadHelper.read(multipartFile, UserDO.class, excelReadConfig);
-            if (users.isEmpty()) {
-                throw new CommonException("error.excel.user.empty");
-            }
+            ExcelReadConfig excelReadConfig = initExcelReadConfig();
+            //表头不对或没有数据时直接拒绝，不生成导入记录
+            ExcelStreamReader.validate(file, suffix, excelReadConfig, UserDO.class, "error.excel.user.empty");
             UploadHistoryDO uploadHistory = initUploadHistory(organizationId);
-            long end = System.currentTimeMillis();
-            logger.info("read excel for {} millisecond", (end - begin));
             Long userId = DetailsHelper.getUserDetails().getUserId();
-            excelImportUserTask.importUsers(userId, users, organizationId, uploadHistory, finishFallback);
-        } catch (IOException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
-            throw new CommonException("error.excel.read", e.getCause());
-        } catch (IllegalArgumentException e) {
-            throw new CommonException("error.excel.illegal.column", e);
+            excelImportUserTask.importUsers(userId, file, suffix, excelReadConfig,
+                    organizationId, uploadHistory, finishFallback);
+        } catch (RuntimeException e) {
+            //交给异步任务之前失败，由这里删除临时文件
+            ExcelStreamReader.deleteTemp(file);
+            throw e;
         }
     }
 
@@ -7,6 +7,8 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.iam.api.dto.LanguageDTO;
 import io.choerodon.iam.app.service.LanguageService;
 import io.choerodon.iam.domain.repository.LanguageRepository;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
 import io.choerodon.iam.infra.dataobject.LanguageDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import org.springframework.stereotype.Component;
@@ -23,8 +25,11 @@ public class LanguageServiceImpl implements LanguageService {
 
     private LanguageRepository repository;
 
-    public LanguageServiceImpl(LanguageRepository repository) {
+    private CacheEventPublisher cacheEventPublisher;
+
+    public LanguageServiceImpl(LanguageRepository repository, CacheEventPublisher cacheEventPublisher) {
         this.repository = repository;
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
     @Override
@@ -41,10 +46,12 @@ public class LanguageServiceImpl implements LanguageService {
         if (repository.queryById(languageDTO.getId()) == null) {
             throw new CommonException("error.language.not.exist");
         }
-        return ConvertHelper.convert(
+        LanguageDTO language = ConvertHelper.convert(
                 repository.update(
                         ConvertHelper.convert(
                                 languageDTO, LanguageDO.class)), LanguageDTO.class);
+        cacheEventPublisher.publish(CacheEvent.languageChanged());
+        return language;
     }
 
     @Override
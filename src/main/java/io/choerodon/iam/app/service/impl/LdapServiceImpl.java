@@ -5,6 +5,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.iam.api.dto.LdapAccountDTO;
 import io.choerodon.iam.api.dto.LdapConnectionDTO;
 import io.choerodon.iam.api.dto.LdapDTO;
+import io.choerodon.iam.api.dto.ImportProgressDTO;
 import io.choerodon.iam.api.dto.LdapHistoryDTO;
 import io.choerodon.iam.api.validator.LdapValidator;
 import io.choerodon.iam.app.service.LdapService;
@@ -13,12 +14,15 @@ import io.choerodon.iam.domain.repository.LdapHistoryRepository;
 import io.choerodon.iam.domain.repository.LdapRepository;
 import io.choerodon.iam.domain.repository.OrganizationRepository;
 import io.choerodon.iam.domain.service.ILdapService;
+import io.choerodon.iam.infra.common.utils.ImportProgressRegistry;
 import io.choerodon.iam.infra.common.utils.ldap.LdapSyncUserTask;
 import io.choerodon.iam.infra.common.utils.ldap.LdapUtil;
 import io.choerodon.iam.infra.dataobject.LdapDO;
+import io.choerodon.iam.infra.dataobject.LdapHistoryDO;
 
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.naming.ldap.LdapContext;
 
@@ -35,17 +39,20 @@ public class LdapServiceImpl implements LdapService {
     private LdapSyncUserTask ldapSyncUserTask;
     private LdapSyncUserTask.FinishFallback finishFallback;
     private LdapHistoryRepository ldapHistoryRepository;
+    private ImportProgressRegistry importProgressRegistry;
 
     public LdapServiceImpl(LdapRepository ldapRepository, OrganizationRepository organizationRepository,
                            LdapSyncUserTask ldapSyncUserTask, ILdapService iLdapService,
                            LdapSyncUserTask.FinishFallback finishFallback,
-                           LdapHistoryRepository ldapHistoryRepository) {
+                           LdapHistoryRepository ldapHistoryRepository,
+                           ImportProgressRegistry importProgressRegistry) {
         this.ldapRepository = ldapRepository;
         this.organizationRepository = organizationRepository;
         this.ldapSyncUserTask = ldapSyncUserTask;
         this.iLdapService = iLdapService;
         this.finishFallback = finishFallback;
         this.ldapHistoryRepository = ldapHistoryRepository;
+        this.importProgressRegistry = importProgressRegistry;
     }
 
     @Override
@@ -164,6 +171,22 @@ public class LdapServiceImpl implements LdapService {
         return ConvertHelper.convert(ldapHistoryRepository.queryLatestHistory(id), LdapHistoryDTO.class);
     }
 
+    @Override
+    public SseEmitter subscribeSyncProgress(Long id) {
+        return importProgressRegistry.subscribe(ImportProgressRegistry.ldapKey(id), () -> {
+            //同步不在本实例运行，返回最近一次检查点
+            LdapHistoryDO history = ldapHistoryRepository.queryLatestHistory(id);
+            if (history == null) {
+                return null;
+            }
+            ImportProgressDTO progress = new ImportProgressDTO();
+            progress.setInsertedCount(history.getNewUserCount());
+            progress.setFailedCount(history.getErrorUserCount());
+            progress.setFinished(history.getSyncEndTime() != null);
+            return progress;
+        });
+    }
+
     @Override
     public LdapDTO enableLdap(Long organizationId, Long id) {
         LdapDO ldap = ldapRepository.queryById(id);
@@ -10,6 +10,8 @@ import io.choerodon.iam.domain.iam.entity.LookupE;
 import io.choerodon.iam.domain.repository.LookupRepository;
 import io.choerodon.iam.domain.repository.LookupValueRepository;
 import io.choerodon.iam.domain.service.ILookupService;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
 import io.choerodon.iam.infra.dataobject.LookupDO;
 import io.choerodon.iam.infra.dataobject.LookupValueDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -29,20 +31,26 @@ public class LookupServiceImpl implements LookupService {
 
     private LookupValueRepository lookupValueRepository;
 
+    private CacheEventPublisher cacheEventPublisher;
+
     public LookupServiceImpl(ILookupService service,
                              LookupRepository lookupRepository,
-                             LookupValueRepository lookupValueRepository) {
+                             LookupValueRepository lookupValueRepository,
+                             CacheEventPublisher cacheEventPublisher) {
         this.service = service;
         this.lookupRepository = lookupRepository;
         this.lookupValueRepository = lookupValueRepository;
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public LookupDTO create(LookupDTO lookupDTO) {
-        return ConvertHelper.convert(
+        LookupDTO lookup = ConvertHelper.convert(
                 service.create(ConvertHelper.convert(
                         lookupDTO, LookupE.class)), LookupDTO.class);
+        cacheEventPublisher.publish(CacheEvent.lookupChanged(lookup.getCode()));
+        return lookup;
     }
 
     @Override
@@ -58,19 +66,30 @@ public class LookupServiceImpl implements LookupService {
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public void delete(Long id) {
+        LookupE lookupE = lookupRepository.selectById(id);
         lookupRepository.deleteById(id);
         //删除lookup级联删除lookupValue
         LookupValueDO lookupValue = new LookupValueDO();
         lookupValue.setLookupId(id);
         lookupValueRepository.delete(lookupValue);
+        if (lookupE != null) {
+            cacheEventPublisher.publish(CacheEvent.lookupChanged(lookupE.getCode()));
+        }
     }
 
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public LookupDTO update(LookupDTO lookupDTO) {
-        return ConvertHelper.convert(
+        LookupE origin = lookupRepository.selectById(lookupDTO.getId());
+        LookupDTO lookup = ConvertHelper.convert(
                 service.update(ConvertHelper.convert(
                         lookupDTO, LookupE.class)), LookupDTO.class);
+        //code可能被修改，新旧code都需要失效
+        if (origin != null) {
+            cacheEventPublisher.publish(CacheEvent.lookupChanged(origin.getCode()));
+        }
+        cacheEventPublisher.publish(CacheEvent.lookupChanged(lookup.getCode()));
+        return lookup;
     }
 
     @Override
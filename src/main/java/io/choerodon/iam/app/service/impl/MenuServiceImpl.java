@@ -6,18 +6,23 @@ import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.core.oauth.CustomUserDetails;
 import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.api.dto.MenuDTO;
+import io.choerodon.iam.api.validator.MenuTypeValidator;
 import io.choerodon.iam.api.validator.MenuValidator;
+import io.choerodon.iam.api.validator.ResourceLevelValidator;
 import io.choerodon.iam.app.service.MenuService;
 import io.choerodon.iam.domain.iam.entity.MenuE;
 import io.choerodon.iam.domain.repository.MenuRepository;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.cache.MenuTreeCache;
 import io.choerodon.iam.infra.common.utils.menu.MenuTreeUtil;
 import io.choerodon.iam.infra.dataobject.MenuDO;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -29,11 +34,22 @@ public class MenuServiceImpl implements MenuService {
 
     private MenuRepository menuRepository;
     private MenuValidator menuValidator;
+    private CacheEventPublisher cacheEventPublisher;
+    private MenuTreeCache menuTreeCache;
 
+    /**
+     * 关闭后用户可见的菜单直接查库
+     */
+    @Value("${choerodon.permission.index.enabled:true}")
+    private boolean permissionIndexEnabled;
 
-    public MenuServiceImpl(MenuRepository menuRepository, MenuValidator menuValidator) {
+
+    public MenuServiceImpl(MenuRepository menuRepository, MenuValidator menuValidator,
+                           CacheEventPublisher cacheEventPublisher, MenuTreeCache menuTreeCache) {
         this.menuRepository = menuRepository;
         this.menuValidator = menuValidator;
+        this.cacheEventPublisher = cacheEventPublisher;
+        this.menuTreeCache = menuTreeCache;
     }
 
     @Override
@@ -47,12 +63,15 @@ public class MenuServiceImpl implements MenuService {
         MenuE menuE = ConvertHelper.convert(menuDTO, MenuE.class);
         menuE.nonDefault();
         menuE = menuRepository.createMenu(menuE);
+        cacheEventPublisher.publish(CacheEvent.menuChanged(menuE.getLevel()));
         return ConvertHelper.convert(menuE, MenuDTO.class);
     }
 
     @Override
     public Boolean delete(Long menuId) {
-        return menuRepository.deleteMenu(menuId);
+        Boolean deleted = menuRepository.deleteMenu(menuId);
+        cacheEventPublisher.publish(CacheEvent.menuChanged(null));
+        return deleted;
     }
 
     @Override
@@ -78,6 +97,7 @@ public class MenuServiceImpl implements MenuService {
             menuE.updateIcon(menuDTO.getIcon());
         }
         menuE = menuRepository.updateMenu(menuE);
+        cacheEventPublisher.publish(CacheEvent.menuChanged(menuE.getLevel()));
         return ConvertHelper.convert(menuE, MenuDTO.class);
     }
 
@@ -103,9 +123,7 @@ public class MenuServiceImpl implements MenuService {
         } else {
             //如果是menu level是user(个人中心)，不在member_role表里判断sourceType
             String sourceType = ResourceLevel.USER.value().equals(level) ? null : level;
-            menus =
-                    ConvertHelper.convertList(menuRepository.queryMenusWithPermissionByTestPermission(level,
-                            "user", userDetails.getUserId(), sourceType, sourceId), MenuDTO.class);
+            menus = queryMenusByTestPermission(level, userDetails.getUserId(), sourceType, sourceId);
         }
         return MenuTreeUtil.formatMenu(menus);
     }
@@ -120,14 +138,21 @@ public class MenuServiceImpl implements MenuService {
             }
             //如果是menu level是user(个人中心)，不在member_role表里判断sourceType
             String sourceType = ResourceLevel.USER.value().equals(level) ? null : level;
-            menus = ConvertHelper.convertList(menuRepository.queryMenusWithPermissionByTestPermission(level,
-                    "user", userDetails.getUserId(), sourceType, null), MenuDTO.class);
+            menus = queryMenusByTestPermission(level, userDetails.getUserId(), sourceType, null);
         } else {
             menus = queryMenusWithPermissions(level, null);
         }
         return MenuTreeUtil.formatMenu(menus);
     }
 
+    private List<MenuDTO> queryMenusByTestPermission(String level, Long userId, String sourceType, Long sourceId) {
+        if (permissionIndexEnabled) {
+            return menuTreeCache.listMenus(level, userId, sourceType, sourceId);
+        }
+        return ConvertHelper.convertList(menuRepository.queryMenusWithPermissionByTestPermission(level,
+                "user", userId, sourceType, sourceId), MenuDTO.class);
+    }
+
     @Override
     public void check(MenuDTO menu) {
         if (StringUtils.isEmpty(menu.getCode())) {
@@ -166,16 +191,48 @@ public class MenuServiceImpl implements MenuService {
     @Transactional(rollbackFor = Exception.class)
     @Override
     public List<MenuDTO> saveListTree(String level, List<MenuDTO> menuDTOList) {
-        List<MenuDTO> resultList = deFormatMenu(menuDTOList);
-        resultList = deleteNeedlessOrAddNewMenu(resultList, level);
+        if (level == null) {
+            throw new CommonException("error.menuLevel.null");
+        }
+        //数据库存在的菜单，只查询一次，后续的比较都在内存中进行
+        Map<Long, MenuDO> existMenus = new HashMap<>();
+        Set<Long> parentIds = new HashSet<>();
+        Set<String> existCodes = new HashSet<>();
+        for (MenuDO menu : menuRepository.selectByLevel(level)) {
+            existMenus.put(menu.getId(), menu);
+            parentIds.add(menu.getParentId());
+            existCodes.add(codeKey(menu.getCode(), menu.getType()));
+        }
+        List<MenuDTO> resultList = new ArrayList<>();
+        deProcessMenu(menuDTOList, resultList, null, level, existCodes);
+        Set<Long> newMenuIds = resultList.stream().map(MenuDTO::getId).collect(Collectors.toSet());
+        //非默认菜单并且没有子菜单，且不在传入的树中，才删除
+        List<Long> deleteList = existMenus.values().stream()
+                .filter(menu -> !newMenuIds.contains(menu.getId()))
+                .filter(menu -> !Boolean.TRUE.equals(menu.getDefault()))
+                .filter(menu -> !parentIds.contains(menu.getId()))
+                .map(MenuDO::getId)
+                .collect(Collectors.toList());
+        if (!deleteList.isEmpty()) {
+            menuRepository.deleteMenusById(deleteList);
+        }
+        List<MenuDO> movedMenus = new ArrayList<>();
         for (MenuDTO menuDTO : resultList) {
-            if (menuDTO.getId() != null) {
+            MenuDO exist = existMenus.get(menuDTO.getId());
+            if (exist == null) {
+                continue;
+            }
+            if (detailChanged(menuDTO, exist)) {
+                //名称等多语言字段变化的菜单仍然走单条更新，保证多语言表同步
                 menuRepository.updateMenu(ConvertHelper.convert(menuDTO, MenuE.class));
+            } else if (positionChanged(menuDTO, exist)) {
+                movedMenus.add(movedMenu(menuDTO, exist));
             }
         }
-        if (level == null) {
-            throw new CommonException("error.menuLevel.null");
+        if (!movedMenus.isEmpty()) {
+            menuRepository.updateParentAndSort(movedMenus);
         }
+        cacheEventPublisher.publish(CacheEvent.menuChanged(level));
         return listTreeMenusWithPermissions(false, level);
     }
 
@@ -184,76 +241,73 @@ public class MenuServiceImpl implements MenuService {
         return ConvertHelper.convertList(menuRepository.queryMenusWithPermissions(level, type), MenuDTO.class);
     }
 
-
-    private List<MenuDTO> deleteNeedlessOrAddNewMenu(List<MenuDTO> menuDTOList, String level) {
-        //需要添加的菜单
-        List<MenuDTO> addMenus = menuDTOList.stream().filter(item -> item.getId() == null).collect(Collectors.toList());
-        List<Long> newMenuIds = menuDTOList.stream().filter(item -> item.getId() != null).map(MenuDTO::getId).collect(Collectors.toList());
-        //数据库存在的菜单
-        List<MenuDTO> existMenus = list(level);
-        List<Long> existMenuIds = existMenus.stream().map(MenuDTO::getId).collect(Collectors.toList());
-        //交集，传入的menuId与数据库里存在的menuId相交,需要更新的菜单
-        List<Long> intersection = existMenuIds.stream().filter(newMenuIds::contains).collect(Collectors.toList());
-        List<Long> menuIds = new ArrayList<>();
-        for (MenuDTO dto : existMenus) {
-            Long id = dto.getId();
-            MenuDO menuDO = new MenuDO();
-            menuDO.setParentId(id);
-            //非默认菜单或者没有子菜单情况下才能删除
-            if (menuRepository.select(menuDO).isEmpty()
-                    && !dto.getDefault()) {
-                menuIds.add(dto.getId());
+    //递归解析菜单成list，并新建没有id的菜单
+    private void deProcessMenu(List<MenuDTO> menuDTOList, List<MenuDTO> resultList, Long parentId,
+                               String level, Set<String> existCodes) {
+        for (MenuDTO menuDTO : menuDTOList) {
+            if (parentId != null) {
+                menuDTO.setParentId(parentId);
             }
-        }
-        //数据库存在的roleId与交集的差集为要删除的roleId
-        List<Long> deleteList = menuIds.stream().filter(item ->
-                !intersection.contains(item)).collect(Collectors.toList());
-        //删除多余的菜单
-        if (!deleteList.isEmpty()) {
-            menuRepository.deleteMenusById(deleteList);
-        }
-        //新建菜单
-        addMenus.forEach(menuDTO -> {
-            menuValidator.create(menuDTO);
-            create(menuDTO);
-        });
-        return menuDTOList.stream()
-                .filter(item -> item.getId() != null)
-                .filter(item -> intersection.contains(item.getId()))
-                .collect(Collectors.toList());
-    }
-
-    //将树形菜单解析成list
-    private List<MenuDTO> deFormatMenu(List<MenuDTO> displayMenus) {
-        List<MenuDTO> resultList = new ArrayList<>();
-        for (MenuDTO menuDTO : displayMenus) {
-            autoAddMenu(menuDTO);
+            autoAddMenu(menuDTO, level, existCodes);
             resultList.add(menuDTO);
             if (menuDTO.getSubMenus() != null) {
-                deProcessMenu(menuDTO.getSubMenus(), resultList, menuDTO.getId());
+                deProcessMenu(menuDTO.getSubMenus(), resultList, menuDTO.getId(), level, existCodes);
             }
         }
-        return resultList;
     }
 
-    //递归解析菜单成list
-    private void deProcessMenu(List<MenuDTO> menuDTOList, List<MenuDTO> resultList, Long parentId) {
-        for (MenuDTO menuDTO : menuDTOList) {
-            menuDTO.setParentId(parentId);
-            autoAddMenu(menuDTO);
-            resultList.add(menuDTO);
-            if (menuDTO.getSubMenus() != null) {
-                deProcessMenu(menuDTO.getSubMenus(), resultList, menuDTO.getId());
+    private void autoAddMenu(MenuDTO menuDTO, String level, Set<String> existCodes) {
+        if (menuDTO.getId() != null) {
+            return;
+        }
+        if (level.equals(menuDTO.getLevel())) {
+            MenuTypeValidator.validate(menuDTO.getType());
+            ResourceLevelValidator.validate(level);
+            if (!existCodes.add(codeKey(menuDTO.getCode(), menuDTO.getType()))) {
+                throw new CommonException("error.menuCode.exist");
             }
+        } else {
+            menuValidator.create(menuDTO);
         }
+        MenuE menuE = ConvertHelper.convert(menuDTO, MenuE.class);
+        menuE.nonDefault();
+        menuE = menuRepository.createMenu(menuE);
+        menuDTO.setId(menuE.getId());
+        menuDTO.setObjectVersionNumber(menuE.getObjectVersionNumber());
     }
 
-    private void autoAddMenu(MenuDTO menuDTO) {
-        if (menuDTO.getId() == null) {
-            menuValidator.create(menuDTO);
-            MenuDTO newMenuDTO = create(menuDTO);
-            menuDTO.setId(newMenuDTO.getId());
-            menuDTO.setObjectVersionNumber(newMenuDTO.getObjectVersionNumber());
-        }
+    private String codeKey(String code, String type) {
+        return code + ":" + type;
+    }
+
+    private boolean detailChanged(MenuDTO menuDTO, MenuDO exist) {
+        return changed(menuDTO.getCode(), exist.getCode())
+                || changed(menuDTO.getName(), exist.getName())
+                || changed(menuDTO.getType(), exist.getType())
+                || changed(menuDTO.getIcon(), exist.getIcon())
+                || changed(menuDTO.getRoute(), exist.getRoute())
+                || changed(menuDTO.getDefault(), exist.getDefault())
+                || menuDTO.getZhName() != null
+                || menuDTO.getEnName() != null;
+    }
+
+    private boolean positionChanged(MenuDTO menuDTO, MenuDO exist) {
+        return changed(menuDTO.getParentId(), exist.getParentId())
+                || changed(menuDTO.getSort(), exist.getSort());
+    }
+
+    //与updateByPrimaryKeySelective一致，为null的字段不更新
+    private boolean changed(Object newValue, Object oldValue) {
+        return newValue != null && !newValue.equals(oldValue);
+    }
+
+    private MenuDO movedMenu(MenuDTO menuDTO, MenuDO exist) {
+        MenuDO menu = new MenuDO();
+        menu.setId(exist.getId());
+        menu.setParentId(menuDTO.getParentId() == null ? exist.getParentId() : menuDTO.getParentId());
+        menu.setSort(menuDTO.getSort() == null ? exist.getSort() : menuDTO.getSort());
+        menu.setObjectVersionNumber(menuDTO.getObjectVersionNumber() == null
+                ? exist.getObjectVersionNumber() : menuDTO.getObjectVersionNumber());
+        return menu;
     }
 }
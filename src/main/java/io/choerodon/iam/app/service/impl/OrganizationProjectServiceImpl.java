@@ -3,7 +3,6 @@ package io.choerodon.iam.app.service.impl;
 import static io.choerodon.iam.infra.common.utils.SagaTopic.Project.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.BeanUtils;
@@ -32,7 +31,9 @@ import io.choerodon.iam.domain.iam.entity.ProjectE;
 import io.choerodon.iam.domain.iam.entity.UserE;
 import io.choerodon.iam.domain.repository.*;
 import io.choerodon.iam.domain.service.IProjectService;
-import io.choerodon.iam.infra.dataobject.LabelDO;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.cache.RoleLabelCache;
 import io.choerodon.iam.infra.dataobject.OrganizationDO;
 import io.choerodon.iam.infra.dataobject.ProjectDO;
 import io.choerodon.iam.infra.dataobject.RoleDO;
@@ -67,12 +68,14 @@ public class OrganizationProjectServiceImpl implements OrganizationProjectServic
 
     private MemberRoleRepository memberRoleRepository;
 
-    private LabelRepository labelRepository;
+    private RoleLabelCache roleLabelCache;
 
     private SagaClient sagaClient;
 
     private NotifyFeignClient notifyFeignClient;
 
+    private CacheEventPublisher cacheEventPublisher;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     public OrganizationProjectServiceImpl(ProjectRepository projectRepository,
@@ -81,18 +84,20 @@ public class OrganizationProjectServiceImpl implements OrganizationProjectServic
                                           IProjectService iProjectService,
                                           RoleRepository roleRepository,
                                           MemberRoleRepository memberRoleRepository,
-                                          LabelRepository labelRepository,
+                                          RoleLabelCache roleLabelCache,
                                           SagaClient sagaClient,
-                                          NotifyFeignClient notifyFeignClient) {
+                                          NotifyFeignClient notifyFeignClient,
+                                          CacheEventPublisher cacheEventPublisher) {
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.organizationRepository = organizationRepository;
         this.iProjectService = iProjectService;
         this.roleRepository = roleRepository;
         this.memberRoleRepository = memberRoleRepository;
-        this.labelRepository = labelRepository;
+        this.roleLabelCache = roleLabelCache;
         this.sagaClient = sagaClient;
         this.notifyFeignClient = notifyFeignClient;
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
     @Transactional
@@ -155,13 +160,13 @@ public class OrganizationProjectServiceImpl implements OrganizationProjectServic
             //创建项目只分配项目层的角色
             if (ResourceLevel.PROJECT.value().equals(role.getLevel())) {
                 //查出来的符合要求的角色，要拿出来所有的label，发送给devops处理
-                List<LabelDO> labels = labelRepository.selectByRoleId(role.getId());
-                labelNames.addAll(labels.stream().map(LabelDO::getName).collect(Collectors.toList()));
+                labelNames.addAll(roleLabelCache.labelNames(Collections.singletonList(role.getId())));
                 MemberRoleE memberRole =
                         new MemberRoleE(null, role.getId(), userId, "user", projectId, ResourceLevel.PROJECT.value());
                 memberRoleRepository.insertSelective(memberRole);
             }
         });
+        cacheEventPublisher.publish(CacheEvent.memberRoleChanged(userId, ResourceLevel.PROJECT.value(), projectId));
         return labelNames;
     }
 
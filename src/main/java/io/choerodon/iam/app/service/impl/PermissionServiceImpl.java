@@ -1,7 +1,5 @@
 package io.choerodon.iam.app.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.appinfo.InstanceInfo;
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.convertor.ConvertPageHelper;
@@ -10,7 +8,6 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.core.oauth.CustomUserDetails;
 import io.choerodon.core.oauth.DetailsHelper;
-import io.choerodon.core.swagger.PermissionData;
 import io.choerodon.core.swagger.SwaggerExtraData;
 import io.choerodon.iam.api.dto.CheckPermissionDTO;
 import io.choerodon.iam.api.dto.PermissionDTO;
@@ -21,11 +18,17 @@ import io.choerodon.iam.domain.iam.entity.RolePermissionE;
 import io.choerodon.iam.domain.repository.MenuPermissionRepository;
 import io.choerodon.iam.domain.repository.PermissionRepository;
 import io.choerodon.iam.domain.repository.RolePermissionRepository;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.cache.PermissionIndex;
+import io.choerodon.iam.infra.common.utils.swagger.SwaggerOperation;
+import io.choerodon.iam.infra.common.utils.swagger.SwaggerOperationReader;
 import io.choerodon.iam.infra.dataobject.MenuPermissionDO;
 import io.choerodon.iam.infra.dataobject.PermissionDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.netflix.eureka.EurekaDiscoveryClient;
@@ -39,7 +42,6 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author wuguokai
@@ -57,16 +59,28 @@ public class PermissionServiceImpl implements PermissionService {
 
     private MenuPermissionRepository menuPermissionRepository;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PermissionIndex permissionIndex;
+
+    private CacheEventPublisher cacheEventPublisher;
+
+    /**
+     * 关闭后checkPermission直接查库
+     */
+    @Value("${choerodon.permission.index.enabled:true}")
+    private boolean permissionIndexEnabled;
 
     public PermissionServiceImpl(PermissionRepository permissionRepository,
                                  DiscoveryClient discoveryClient,
                                  RolePermissionRepository rolePermissionRepository,
-                                 MenuPermissionRepository menuPermissionRepository) {
+                                 MenuPermissionRepository menuPermissionRepository,
+                                 PermissionIndex permissionIndex,
+                                 CacheEventPublisher cacheEventPublisher) {
         this.permissionRepository = permissionRepository;
         this.discoveryClient = discoveryClient;
         this.rolePermissionRepository = rolePermissionRepository;
         this.menuPermissionRepository = menuPermissionRepository;
+        this.permissionIndex = permissionIndex;
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
 
@@ -89,77 +103,91 @@ public class PermissionServiceImpl implements PermissionService {
         }
         //super admin例外处理
         if (details.getAdmin()) {
-            checkPermissionDTOList.stream().filter(t -> permissionRepository.existByCode(t.getCode().trim())).forEach(cp -> cp.setApprove(true));
+            checkPermissionDTOList.stream().filter(t -> existByCode(t.getCode().trim())).forEach(cp -> cp.setApprove(true));
             return checkPermissionDTOList;
         }
         Long userId = details.getUserId();
-        Set<String> resultCodes = new HashSet<>();
-        resultCodes.addAll(checkSitePermission(checkPermissionDTOList, userId));
-        resultCodes.addAll(checkOrgPermission(checkPermissionDTOList, userId));
-        resultCodes.addAll(checkProjectPermission(checkPermissionDTOList, userId));
+        Map<String, Map<Long, Set<String>>> sources = groupBySource(checkPermissionDTOList);
+        Set<String> approved = permissionIndexEnabled
+                ? checkPermissionByIndex(userId, sources) : checkPermissionBySql(userId, sources);
         checkPermissionDTOList.forEach(p -> {
-            p.setApprove(false);
-            if (resultCodes.contains(p.getCode())) {
-                p.setApprove(true);
-            }
+            Long sourceId = sourceIdOf(p);
+            p.setApprove(sourceId != null
+                    && approved.contains(approvalKey(p.getResourceType(), sourceId, p.getCode())));
         });
         return checkPermissionDTOList;
     }
 
-    private Set<String> checkSitePermission(final List<CheckPermissionDTO> checkPermissionDTOList, final Long userId) {
-        Set<String> siteCodes = checkPermissionDTOList.stream().filter(i -> ResourceLevel.SITE.value().equals(i.getResourceType()))
-                .map(CheckPermissionDTO::getCode).collect(Collectors.toSet());
-        //site层校验之后的权限集
-        siteCodes = permissionRepository.checkPermission(userId, ResourceLevel.SITE.value(), 0L, siteCodes);
-        return siteCodes;
+    private boolean existByCode(String code) {
+        if (permissionIndexEnabled) {
+            return permissionIndex.containsCode(code);
+        }
+        return permissionRepository.existByCode(code);
     }
 
-    private Set<String> checkOrgPermission(final List<CheckPermissionDTO> checkPermissionDTOList, final Long userId) {
-        List<CheckPermissionDTO> organizationPermissions = checkPermissionDTOList.stream().filter(i -> ResourceLevel.ORGANIZATION.value().equals(i.getResourceType()))
-                .collect(Collectors.toList());
-        Map<Long, List<CheckPermissionDTO>> orgPermissionMaps = new HashMap<>();
-        organizationPermissions.forEach(p -> {
-            if (orgPermissionMaps.get(p.getOrganizationId()) != null && !orgPermissionMaps.get(p.getOrganizationId()).isEmpty()) {
-                orgPermissionMaps.get(p.getOrganizationId()).add(p);
-            } else {
-                List<CheckPermissionDTO> list = new ArrayList<>();
-                list.add(p);
-                orgPermissionMaps.put(p.getOrganizationId(), list);
+    /**
+     * 按sourceType -> sourceId -> codes分组，site层的sourceId为0
+     */
+    private Map<String, Map<Long, Set<String>>> groupBySource(List<CheckPermissionDTO> checkPermissionDTOList) {
+        Map<String, Map<Long, Set<String>>> sources = new HashMap<>();
+        checkPermissionDTOList.forEach(p -> {
+            Long sourceId = sourceIdOf(p);
+            if (sourceId != null) {
+                sources.computeIfAbsent(p.getResourceType(), k -> new HashMap<>())
+                        .computeIfAbsent(sourceId, k -> new HashSet<>())
+                        .add(p.getCode());
             }
         });
-        Set<String> organizationCodes = new HashSet<>();
-        for (Map.Entry<Long, List<CheckPermissionDTO>> entry : orgPermissionMaps.entrySet()) {
-            Long orgId = entry.getKey();
-            Set<String> searchOrganizationCodes = entry.getValue().stream().map(CheckPermissionDTO::getCode).collect(Collectors.toSet());
-            searchOrganizationCodes = permissionRepository.checkPermission(userId, ResourceLevel.ORGANIZATION.value(), orgId, searchOrganizationCodes);
-            organizationCodes.addAll(searchOrganizationCodes);
+        return sources;
+    }
+
+    private Long sourceIdOf(CheckPermissionDTO checkPermissionDTO) {
+        String resourceType = checkPermissionDTO.getResourceType();
+        if (ResourceLevel.SITE.value().equals(resourceType)) {
+            return 0L;
+        }
+        if (ResourceLevel.ORGANIZATION.value().equals(resourceType)) {
+            return checkPermissionDTO.getOrganizationId();
         }
-        return organizationCodes;
+        if (ResourceLevel.PROJECT.value().equals(resourceType)) {
+            return checkPermissionDTO.getProjectId();
+        }
+        return null;
+    }
+
+    private Set<String> checkPermissionByIndex(Long userId, Map<String, Map<Long, Set<String>>> sources) {
+        Set<String> approved = new HashSet<>();
+        sources.forEach((sourceType, sourceIds) -> sourceIds.forEach((sourceId, codes) ->
+                permissionIndex.checkPermission(userId, sourceType, sourceId, codes)
+                        .forEach(code -> approved.add(approvalKey(sourceType, sourceId, code)))));
+        return approved;
     }
 
-    private Set<String> checkProjectPermission(final List<CheckPermissionDTO> checkPermissionDTOList, final Long userId) {
-        List<CheckPermissionDTO> projectPermissions = checkPermissionDTOList.stream().filter(i -> ResourceLevel.PROJECT.value().equals(i.getResourceType()))
-                .collect(Collectors.toList());
-        Map<Long, List<CheckPermissionDTO>> projectMaps = new HashMap<>();
-        projectPermissions.forEach(p -> {
-            if (projectMaps.get(p.getProjectId()) != null && !projectMaps.get(p.getProjectId()).isEmpty()) {
-                projectMaps.get(p.getProjectId()).add(p);
+    /**
+     * 所有source一次查询，public/login权限对请求中的每个source都通过
+     */
+    private Set<String> checkPermissionBySql(Long userId, Map<String, Map<Long, Set<String>>> sources) {
+        Set<String> approved = new HashSet<>();
+        if (sources.isEmpty()) {
+            return approved;
+        }
+        permissionRepository.checkPermissionBySources(userId, sources).forEach(sp -> {
+            if (sp.getSourceType() != null) {
+                approved.add(approvalKey(sp.getSourceType(), sp.getSourceId(), sp.getCode()));
             } else {
-                List<CheckPermissionDTO> list = new ArrayList<>();
-                list.add(p);
-                projectMaps.put(p.getProjectId(), list);
+                sources.forEach((sourceType, sourceIds) -> sourceIds.forEach((sourceId, codes) -> {
+                    if (codes.contains(sp.getCode())) {
+                        approved.add(approvalKey(sourceType, sourceId, sp.getCode()));
+                    }
+                }));
             }
         });
-        Set<String> projectCodes = new HashSet<>();
-        for (Map.Entry<Long, List<CheckPermissionDTO>> entry : projectMaps.entrySet()) {
-            Long projectId = entry.getKey();
-            Set<String> searchProjectCodes = entry.getValue().stream().map(CheckPermissionDTO::getCode).collect(Collectors.toSet());
-            searchProjectCodes = permissionRepository.checkPermission(userId, ResourceLevel.PROJECT.value(), projectId, searchProjectCodes);
-            projectCodes.addAll(searchProjectCodes);
-        }
-        return projectCodes;
+        return approved;
     }
 
+    private String approvalKey(String sourceType, Long sourceId, String code) {
+        return sourceType + ":" + sourceId + ":" + code;
+    }
 
     @Override
     public Set<PermissionDTO> queryByRoleIds(List<Long> roleIds) {
@@ -202,6 +230,8 @@ public class PermissionServiceImpl implements PermissionService {
             MenuPermissionDO menuPermission = new MenuPermissionDO();
             menuPermission.setPermissionCode(code);
             menuPermissionRepository.delete(menuPermission);
+            cacheEventPublisher.publish(CacheEvent.permissionChanged());
+            cacheEventPublisher.publish(CacheEvent.menuChanged(null));
         } else {
             throw new CommonException("error.permission.not.obsoleting");
         }
@@ -211,12 +241,13 @@ public class PermissionServiceImpl implements PermissionService {
         Set<String> codes = new HashSet<>();
         try {
             if (!StringUtils.isEmpty(serviceName) && !StringUtils.isEmpty(json)) {
-                JsonNode node = objectMapper.readTree(json);
-                Iterator<Map.Entry<String, JsonNode>> pathIterator = node.get("paths").fields();
-                while (pathIterator.hasNext()) {
-                    Map.Entry<String, JsonNode> pathNode = pathIterator.next();
-                    Iterator<Map.Entry<String, JsonNode>> methodIterator = pathNode.getValue().fields();
-                    parserMethod(methodIterator, serviceName, codes);
+                for (SwaggerOperation operation : SwaggerOperationReader.read(json)) {
+                    String resourceCode = operation.getResourceCode();
+                    SwaggerExtraData extraData = SwaggerOperationReader.readExtraData(operation);
+                    if (extraData == null || extraData.getPermission() == null || resourceCode == null) {
+                        continue;
+                    }
+                    codes.add(serviceName + "." + resourceCode + "." + extraData.getPermission().getAction());
                 }
             }
         } catch (IOException e) {
@@ -226,39 +257,6 @@ public class PermissionServiceImpl implements PermissionService {
         return codes;
     }
 
-    private void parserMethod(Iterator<Map.Entry<String, JsonNode>> methodIterator,
-                              String serviceName,
-                              Set<String> codes) {
-        while (methodIterator.hasNext()) {
-            Map.Entry<String, JsonNode> methodNode = methodIterator.next();
-            JsonNode tags = methodNode.getValue().get("tags");
-            SwaggerExtraData extraData = null;
-            String resourceCode = null;
-            for (int i = 0; i < tags.size(); i++) {
-                String tag = tags.get(i).asText();
-                if (tag.endsWith("-controller")) {
-                    resourceCode = tag.substring(0, tag.length() - "-controller".length());
-                }
-            }
-            try {
-                JsonNode extraDataNode = methodNode.getValue().get("description");
-                if (extraDataNode == null) {
-                    continue;
-                }
-                extraData = objectMapper.readValue(extraDataNode.asText(), SwaggerExtraData.class);
-            } catch (IOException e) {
-                logger.info("extraData read failed.", e);
-            }
-            if (extraData == null || resourceCode == null) {
-                continue;
-            }
-            PermissionData permission = extraData.getPermission();
-            String action = permission.getAction();
-            String code = serviceName + "." + resourceCode + "." + action;
-            codes.add(code);
-        }
-    }
-
     private String fetchLatestSwaggerJson(String serviceName) {
         List<ServiceInstance> serviceInstances = discoveryClient.getInstances(serviceName);
         List<InstanceInfo> instanceInfos = new ArrayList<>();
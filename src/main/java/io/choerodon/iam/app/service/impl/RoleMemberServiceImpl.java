@@ -2,7 +2,6 @@ package io.choerodon.iam.app.service.impl;
 
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.excel.ExcelReadConfig;
-import io.choerodon.core.excel.ExcelReadHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.core.oauth.DetailsHelper;
@@ -10,10 +9,10 @@ import io.choerodon.iam.api.dto.ExcelMemberRoleDTO;
 import io.choerodon.iam.api.dto.MemberRoleDTO;
 import io.choerodon.iam.api.dto.RoleAssignmentDeleteDTO;
 import io.choerodon.iam.app.service.RoleMemberService;
-import io.choerodon.iam.domain.iam.entity.MemberRoleE;
 import io.choerodon.iam.domain.repository.UploadHistoryRepository;
 import io.choerodon.iam.domain.service.IRoleMemberService;
 import io.choerodon.iam.infra.common.utils.excel.ExcelImportUserTask;
+import io.choerodon.iam.infra.common.utils.excel.ExcelStreamReader;
 import io.choerodon.iam.infra.dataobject.UploadHistoryDO;
 import io.choerodon.iam.infra.enums.ExcelSuffix;
 import io.choerodon.iam.infra.mapper.OrganizationMapper;
@@ -29,10 +28,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URLEncoder;
 import java.util.*;
 
@@ -70,48 +68,22 @@ public class RoleMemberServiceImpl implements RoleMemberService {
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public List<MemberRoleDTO> createOrUpdateRolesByMemberIdOnSiteLevel(Boolean isEdit, List<Long> memberIds, List<MemberRoleDTO> memberRoleDTOList) {
-        List<MemberRoleDTO> memberRoleDTOS = new ArrayList<>();
-        for (Long memberId : memberIds) {
-            memberRoleDTOList.forEach(m ->
-                    m.setMemberId(memberId)
-            );
-            memberRoleDTOS.addAll(ConvertHelper.convertList(
-                    iRoleMemberService.insertOrUpdateRolesByMemberId(isEdit, 0L, memberId, ConvertHelper.convertList(
-                            memberRoleDTOList, MemberRoleE.class), ResourceLevel.SITE.value()), MemberRoleDTO.class));
-        }
-        return memberRoleDTOS;
+        return ConvertHelper.convertList(iRoleMemberService.insertOrUpdateRolesByMemberIds(isEdit, 0L, memberIds,
+                roleIds(memberRoleDTOList), ResourceLevel.SITE.value()), MemberRoleDTO.class);
     }
 
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public List<MemberRoleDTO> createOrUpdateRolesByMemberIdOnOrganizationLevel(Boolean isEdit, Long organizationId, List<Long> memberIds, List<MemberRoleDTO> memberRoleDTOList) {
-        List<MemberRoleDTO> memberRoleDTOS = new ArrayList<>();
-        for (Long memberId : memberIds) {
-            memberRoleDTOList.forEach(m ->
-                    m.setMemberId(memberId)
-            );
-            memberRoleDTOS.addAll(ConvertHelper.convertList(
-                    iRoleMemberService.insertOrUpdateRolesByMemberId(isEdit, organizationId, memberId,
-                            ConvertHelper.convertList(memberRoleDTOList, MemberRoleE.class),
-                            ResourceLevel.ORGANIZATION.value()), MemberRoleDTO.class));
-        }
-        return memberRoleDTOS;
+        return ConvertHelper.convertList(iRoleMemberService.insertOrUpdateRolesByMemberIds(isEdit, organizationId, memberIds,
+                roleIds(memberRoleDTOList), ResourceLevel.ORGANIZATION.value()), MemberRoleDTO.class);
     }
 
     @Transactional(rollbackFor = CommonException.class)
     @Override
     public List<MemberRoleDTO> createOrUpdateRolesByMemberIdOnProjectLevel(Boolean isEdit, Long projectId, List<Long> memberIds, List<MemberRoleDTO> memberRoleDTOList) {
-        List<MemberRoleDTO> memberRoleDTOS = new ArrayList<>();
-        for (Long memberId : memberIds) {
-            memberRoleDTOList.forEach(m ->
-                    m.setMemberId(memberId)
-            );
-            memberRoleDTOS.addAll(ConvertHelper.convertList(
-                    iRoleMemberService.insertOrUpdateRolesByMemberId(isEdit, projectId, memberId,
-                            ConvertHelper.convertList(memberRoleDTOList, MemberRoleE.class),
-                            ResourceLevel.PROJECT.value()), MemberRoleDTO.class));
-        }
-        return memberRoleDTOS;
+        return ConvertHelper.convertList(iRoleMemberService.insertOrUpdateRolesByMemberIds(isEdit, projectId, memberIds,
+                roleIds(memberRoleDTOList), ResourceLevel.PROJECT.value()), MemberRoleDTO.class);
     }
 
     @Transactional(rollbackFor = CommonException.class)
@@ -170,24 +142,29 @@ public class RoleMemberServiceImpl implements RoleMemberService {
     @Override
     public void import2MemberRole(Long sourceId, String sourceType, MultipartFile file) {
         validateSourceId(sourceId, sourceType);
-        ExcelReadConfig excelReadConfig = initExcelReadConfig();
-        long begin = System.currentTimeMillis();
+        String suffix = ExcelStreamReader.suffix(file);
+        //上传的文件在请求结束后会被清理，先保存下来，由异步任务边读边导入
+        File tempFile = ExcelStreamReader.saveTemp(file, suffix);
         try {
-            List<ExcelMemberRoleDTO> memberRoles = ExcelReadHelper.read(file, ExcelMemberRoleDTO.class, excelReadConfig);
-            if(memberRoles.isEmpty()) {
-                throw new CommonException("error.excel.memberRole.empty");
-            }
+            ExcelReadConfig excelReadConfig = initExcelReadConfig();
+            //表头不对或没有数据时直接拒绝，不生成导入记录
+            ExcelStreamReader.validate(tempFile, suffix, excelReadConfig, ExcelMemberRoleDTO.class,
+                    "error.excel.memberRole.empty");
             UploadHistoryDO uploadHistory = initUploadHistory(sourceId, sourceType);
-            long end = System.currentTimeMillis();
-            logger.info("read excel for {} millisecond", (end - begin));
-            excelImportUserTask.importMemberRole(memberRoles, uploadHistory, finishFallback);
-        } catch (IOException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
-            throw new CommonException("error.excel.read", e);
-        } catch (IllegalArgumentException e) {
-            throw new CommonException("error.excel.illegal.column", e);
+            excelImportUserTask.importMemberRole(tempFile, suffix, excelReadConfig, uploadHistory, finishFallback);
+        } catch (RuntimeException e) {
+            //交给异步任务之前失败，由这里删除临时文件
+            ExcelStreamReader.deleteTemp(tempFile);
+            throw e;
         }
     }
 
+    private List<Long> roleIds(List<MemberRoleDTO> memberRoleDTOList) {
+        List<Long> roleIds = new ArrayList<>();
+        memberRoleDTOList.forEach(m -> roleIds.add(m.getRoleId()));
+        return roleIds;
+    }
+
     private UploadHistoryDO initUploadHistory(Long sourceId, String sourceType) {
         UploadHistoryDO uploadHistory = new UploadHistoryDO();
         uploadHistory.setBeginTime(new Date(System.currentTimeMillis()));
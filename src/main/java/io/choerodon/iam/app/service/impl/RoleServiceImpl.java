@@ -1,7 +1,9 @@
 package io.choerodon.iam.app.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Component;
@@ -24,6 +26,7 @@ import io.choerodon.iam.domain.repository.UserRepository;
 import io.choerodon.iam.domain.service.IRoleService;
 import io.choerodon.iam.infra.common.utils.ParamUtils;
 import io.choerodon.iam.infra.dataobject.RoleDO;
+import io.choerodon.iam.infra.dataobject.UserDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 /**
@@ -61,21 +64,20 @@ public class RoleServiceImpl implements RoleService {
         Page<RoleDO> roleDOPage = roleRepository.pagingQuery(
                 pageRequest, ConvertHelper.convert(role, RoleDO.class), ParamUtils.arrToStr(role.getParams()));
         Page<RoleDTO> roleDTOPage = ConvertPageHelper.convertPage(roleDOPage, RoleDTO.class);
-        if (needUsers != null && needUsers) {
-            roleDTOPage.getContent().forEach(roleDTO -> {
-                if (sourceType == null || ResourceLevel.SITE.value().equals(sourceType)) {
-                    roleDTO.setUsers(ConvertHelper.convertList(
-                            userRepository.listUsersByRoleIdOnSiteLevel(roleDTO.getId()), UserDTO.class));
-                } else if (ResourceLevel.ORGANIZATION.value().equals(sourceType) && sourceId != null) {
-                    roleDTO.setUsers(ConvertHelper.convertList(
-                            userRepository.listUsersByRoleIdOnOrganizationLevel(
-                                    sourceId, roleDTO.getId()), UserDTO.class));
-                } else if (ResourceLevel.PROJECT.value().equals(sourceType) && sourceId != null) {
-                    roleDTO.setUsers(ConvertHelper.convertList(
-                            userRepository.listUsersByRoleIdOnProjectLevel(
-                                    sourceId, roleDTO.getId()), UserDTO.class));
-                }
-            });
+        if (needUsers != null && needUsers && !roleDTOPage.getContent().isEmpty()) {
+            Long querySourceId = null;
+            String querySourceType = null;
+            if (sourceType == null || ResourceLevel.SITE.value().equals(sourceType)) {
+                querySourceId = 0L;
+                querySourceType = ResourceLevel.SITE.value();
+            } else if ((ResourceLevel.ORGANIZATION.value().equals(sourceType)
+                    || ResourceLevel.PROJECT.value().equals(sourceType)) && sourceId != null) {
+                querySourceId = sourceId;
+                querySourceType = sourceType;
+            }
+            if (querySourceType != null) {
+                setUsers(roleDTOPage.getContent(), querySourceId, querySourceType);
+            }
         }
         return roleDTOPage;
     }
@@ -147,49 +149,51 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     public List<RoleDTO> listRolesWithUserCountOnSiteLevel(RoleAssignmentSearchDTO roleAssignmentSearchDTO) {
-        RoleDO roleDO = new RoleDO();
-        roleDO.setName(roleAssignmentSearchDTO.getRoleName());
-        roleDO.setLevel(ResourceLevel.SITE.value());
-        List<RoleDTO> roles = ConvertHelper.convertList(roleRepository.select(roleDO), RoleDTO.class);
-        String param = ParamUtils.arrToStr(roleAssignmentSearchDTO.getParam());
-        roles.forEach(r -> {
-            Integer count = userRepository.selectUserCountFromMemberRoleByOptions(
-                    r.getId(), "user", 0L, ResourceLevel.SITE.value(), roleAssignmentSearchDTO, param);
-            r.setUserCount(count);
-        });
-        return roles;
+        return listRolesWithUserCount(roleAssignmentSearchDTO, 0L, ResourceLevel.SITE.value());
     }
 
     @Override
     public List<RoleDTO> listRolesWithUserCountOnOrganizationLevel(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId) {
-        RoleDO roleDO = new RoleDO();
-        roleDO.setName(roleAssignmentSearchDTO.getRoleName());
-        roleDO.setLevel(ResourceLevel.ORGANIZATION.value());
-        List<RoleDTO> roles = ConvertHelper.convertList(roleRepository.select(roleDO), RoleDTO.class);
-        String param = ParamUtils.arrToStr(roleAssignmentSearchDTO.getParam());
-        roles.forEach(r -> {
-            Integer count = userRepository.selectUserCountFromMemberRoleByOptions(
-                    r.getId(), "user", sourceId, ResourceLevel.ORGANIZATION.value(), roleAssignmentSearchDTO, param);
-            r.setUserCount(count);
-        });
-        return roles;
+        return listRolesWithUserCount(roleAssignmentSearchDTO, sourceId, ResourceLevel.ORGANIZATION.value());
     }
 
     @Override
     public List<RoleDTO> listRolesWithUserCountOnProjectLevel(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId) {
+        return listRolesWithUserCount(roleAssignmentSearchDTO, sourceId, ResourceLevel.PROJECT.value());
+    }
+
+    private List<RoleDTO> listRolesWithUserCount(RoleAssignmentSearchDTO roleAssignmentSearchDTO,
+                                                 Long sourceId, String level) {
         RoleDO roleDO = new RoleDO();
         roleDO.setName(roleAssignmentSearchDTO.getRoleName());
-        roleDO.setLevel(ResourceLevel.PROJECT.value());
+        roleDO.setLevel(level);
         List<RoleDTO> roles = ConvertHelper.convertList(roleRepository.select(roleDO), RoleDTO.class);
+        if (roles.isEmpty()) {
+            return roles;
+        }
         String param = ParamUtils.arrToStr(roleAssignmentSearchDTO.getParam());
-        roles.forEach(r -> {
-            Integer count = userRepository.selectUserCountFromMemberRoleByOptions(
-                    r.getId(), "user", sourceId, ResourceLevel.PROJECT.value(), roleAssignmentSearchDTO, param);
-            r.setUserCount(count);
-        });
+        Map<Long, Integer> counts = new HashMap<>();
+        userRepository.selectUserCountGroupByRole(sourceId, level, roleAssignmentSearchDTO, param)
+                .forEach(r -> counts.put(r.getId(), r.getUserCount()));
+        roles.forEach(r -> r.setUserCount(counts.getOrDefault(r.getId(), 0)));
         return roles;
     }
 
+    /**
+     * 一次查询当前页所有角色的用户，在内存中按角色分组
+     */
+    private void setUsers(List<RoleDTO> roles, Long sourceId, String sourceType) {
+        List<Long> roleIds = roles.stream().map(RoleDTO::getId).collect(Collectors.toList());
+        Map<Long, List<UserDTO>> usersByRole = new HashMap<>();
+        for (UserDO user : userRepository.listUsersByRoleIds(roleIds, sourceId, sourceType)) {
+            List<RoleDO> userRoles = user.getRoles();
+            user.setRoles(null);
+            UserDTO userDTO = ConvertHelper.convert(user, UserDTO.class);
+            userRoles.forEach(r -> usersByRole.computeIfAbsent(r.getId(), k -> new ArrayList<>()).add(userDTO));
+        }
+        roles.forEach(r -> r.setUsers(usersByRole.getOrDefault(r.getId(), new ArrayList<>())));
+    }
+
     @Override
     public void check(RoleDTO role) {
         Boolean checkCode = !StringUtils.isEmpty(role.getCode());
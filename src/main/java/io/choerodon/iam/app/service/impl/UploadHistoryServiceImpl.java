@@ -1,10 +1,15 @@
 package io.choerodon.iam.app.service.impl;
 
 import io.choerodon.core.convertor.ConvertHelper;
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.iam.api.dto.ImportProgressDTO;
 import io.choerodon.iam.api.dto.UploadHistoryDTO;
 import io.choerodon.iam.app.service.UploadHistoryService;
+import io.choerodon.iam.infra.common.utils.ImportProgressRegistry;
+import io.choerodon.iam.infra.dataobject.UploadHistoryDO;
 import io.choerodon.iam.infra.mapper.UploadHistoryMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * @author superlee
@@ -12,12 +17,34 @@ import org.springframework.stereotype.Service;
 @Service
 public class UploadHistoryServiceImpl implements UploadHistoryService {
     private UploadHistoryMapper uploadHistoryMapper;
-    public UploadHistoryServiceImpl(UploadHistoryMapper uploadHistoryMapper) {
+    private ImportProgressRegistry importProgressRegistry;
+    public UploadHistoryServiceImpl(UploadHistoryMapper uploadHistoryMapper, ImportProgressRegistry importProgressRegistry) {
         this.uploadHistoryMapper = uploadHistoryMapper;
+        this.importProgressRegistry = importProgressRegistry;
     }
 
     @Override
     public UploadHistoryDTO latestHistory(Long userId, String type, Long sourceId, String sourceType) {
         return ConvertHelper.convert(uploadHistoryMapper.latestHistory(userId, type, sourceId, sourceType), UploadHistoryDTO.class);
     }
+
+    @Override
+    public SseEmitter subscribeProgress(Long userId, String type, Long sourceId, String sourceType) {
+        UploadHistoryDO history = uploadHistoryMapper.latestHistory(userId, type, sourceId, sourceType);
+        if (history == null) {
+            throw new CommonException("error.uploadHistory.not.exist");
+        }
+        return importProgressRegistry.subscribe(ImportProgressRegistry.uploadKey(history.getId()), () -> {
+            //导入不在本实例运行，返回最近一次检查点
+            UploadHistoryDO checkpoint = uploadHistoryMapper.selectByPrimaryKey(history.getId());
+            long successful = checkpoint.getSuccessfulCount() == null ? 0 : checkpoint.getSuccessfulCount();
+            long failed = checkpoint.getFailedCount() == null ? 0 : checkpoint.getFailedCount();
+            ImportProgressDTO progress = new ImportProgressDTO();
+            progress.setReadCount(successful + failed);
+            progress.setInsertedCount(successful);
+            progress.setFailedCount(failed);
+            progress.setFinished(checkpoint.getEndTime() != null);
+            return progress;
+        });
+    }
 }
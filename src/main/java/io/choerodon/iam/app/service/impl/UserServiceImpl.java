@@ -5,6 +5,7 @@ import static io.choerodon.iam.infra.common.utils.SagaTopic.User.USER_UPDATE;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -65,6 +66,7 @@ public class UserServiceImpl implements UserService {
 
     private static final String USER_NOT_LOGIN_EXCEPTION = "error.user.not.login";
     private static final String USER_ID_NOT_EQUAL_EXCEPTION = "error.user.id.not.equals";
+    private static final int MAX_CURSOR_SIZE = 1000;
     @Value("${choerodon.devops.message:false}")
     private boolean devopsMessage;
     @Value("${spring.application.name:default}")
@@ -201,6 +203,41 @@ public class UserServiceImpl implements UserService {
                         pageRequest, roleAssignmentSearchDTO, sourceId), UserWithRoleDTO.class);
     }
 
+    @Override
+    public CursorPageDTO<UserWithRoleDTO> cursorQueryUsersWithLevelRoles(String cursor, int size, boolean withCount,
+                                                                         RoleAssignmentSearchDTO roleAssignmentSearchDTO,
+                                                                         Long sourceId, String sourceType) {
+        if (size < 1 || size > MAX_CURSOR_SIZE) {
+            throw new CommonException("error.cursor.size.illegal", MAX_CURSOR_SIZE);
+        }
+        //多查一条用来判断是否还有下一页
+        List<UserDO> users = userRepository.listUsersWithLevelRolesByCursor(
+                roleAssignmentSearchDTO, sourceId, sourceType, decodeCursor(cursor), size + 1);
+        String nextCursor = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            nextCursor = encodeCursor(users.get(size - 1).getId());
+        }
+        Integer total = withCount
+                ? userRepository.countUsersWithLevelRoles(roleAssignmentSearchDTO, sourceId, sourceType) : null;
+        return new CursorPageDTO<>(ConvertHelper.convertList(users, UserWithRoleDTO.class), nextCursor, total);
+    }
+
+    private String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long decodeCursor(String cursor) {
+        if (StringUtils.isEmpty(cursor)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new CommonException("error.cursor.illegal", e);
+        }
+    }
+
     @Override
     public Page<UserDTO> pagingQueryUsersByRoleIdOnSiteLevel(PageRequest pageRequest, RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long roleId) {
         return ConvertPageHelper.convertPage(
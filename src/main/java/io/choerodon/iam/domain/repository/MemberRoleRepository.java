@@ -23,4 +23,16 @@ public interface MemberRoleRepository {
 
     List<Long> selectDeleteList(List<Long> deleteList, long memberId,
                                 long sourceId, String sourceType);
+
+    /**
+     * 分批查询多个成员在某个source下的member_role
+     */
+    List<MemberRoleDO> selectByMemberIds(List<Long> memberIds, String memberType, Long sourceId, String sourceType);
+
+    /**
+     * 批量插入，角色和source只校验一次，调用方需保证记录不重复
+     */
+    void insertList(List<MemberRoleDO> memberRoles);
+
+    void deleteByIds(List<Long> ids);
 }
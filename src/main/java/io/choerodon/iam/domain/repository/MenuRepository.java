@@ -21,6 +21,11 @@ public interface MenuRepository {
 
     void deleteMenusById(List<Long> menuIds);
 
+    /**
+     * 批量更新菜单的父节点和排序，按objectVersionNumber做乐观锁校验
+     */
+    void updateParentAndSort(List<MenuDO> menus);
+
     List<MenuDO> selectByLevel(String level);
 
     List<MenuDO> queryMenusWithPermissions(String level, String type);
@@ -3,9 +3,11 @@ package io.choerodon.iam.domain.repository;
 import io.choerodon.core.domain.Page;
 import io.choerodon.iam.domain.iam.entity.PermissionE;
 import io.choerodon.iam.infra.dataobject.PermissionDO;
+import io.choerodon.iam.infra.dataobject.SourcePermissionDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,7 +34,16 @@ public interface PermissionRepository {
     Set<String> checkPermission(Long memberId, String sourceType,
                                 Long sourceId, Set<String> codes);
 
+    List<SourcePermissionDO> checkPermissionBySources(Long memberId, Map<String, Map<Long, Set<String>>> sources);
+
     List<PermissionE> query(String level, String serviceName, String code);
 
     Page<PermissionDO> pagingQuery(PageRequest pageRequest, Long id, String params);
+
+    List<PermissionDO> selectByServiceName(String serviceName);
+
+    /**
+     * 按code批量插入或更新
+     */
+    void upsertList(List<PermissionDO> permissions);
 }
@@ -1,6 +1,7 @@
 package io.choerodon.iam.domain.repository;
 
 import io.choerodon.iam.domain.iam.entity.RolePermissionE;
+import io.choerodon.iam.infra.dataobject.RolePermissionDO;
 
 import java.util.List;
 
@@ -17,4 +18,13 @@ public interface RolePermissionRepository {
     List<RolePermissionE> select(RolePermissionE rolePermissionE);
 
     List<Long> queryPermissionIdsByRoles(List<Long> roles);
+
+    /**
+     * 查询服务所有权限的role_permission
+     */
+    List<RolePermissionDO> selectByServiceName(String serviceName);
+
+    void insertList(List<RolePermissionDO> rolePermissions);
+
+    void deleteByIds(List<Long> ids);
 }
@@ -44,5 +44,7 @@ public interface RoleRepository {
 
     Set<String> matchCode(Set<String> codeSet);
 
+    List<RoleDO> selectByCodes(Set<String> codeSet);
+
     List<RoleDO> queryRoleByOrgId(Long orgId);
 }
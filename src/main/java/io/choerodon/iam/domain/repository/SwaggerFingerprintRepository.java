@@ -0,0 +1,15 @@
+package io.choerodon.iam.domain.repository;
+
+import io.choerodon.iam.infra.dataobject.SwaggerFingerprintDO;
+
+/**
+ * @author superlee
+ */
+public interface SwaggerFingerprintRepository {
+
+    SwaggerFingerprintDO selectByServiceName(String serviceName);
+
+    SwaggerFingerprintDO insertSelective(SwaggerFingerprintDO swaggerFingerprintDO);
+
+    SwaggerFingerprintDO updateByPrimaryKeySelective(SwaggerFingerprintDO swaggerFingerprintDO);
+}
@@ -3,6 +3,7 @@ package io.choerodon.iam.domain.repository;
 import io.choerodon.core.domain.Page;
 import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO;
 import io.choerodon.iam.domain.iam.entity.UserE;
+import io.choerodon.iam.infra.dataobject.RoleDO;
 import io.choerodon.iam.infra.dataobject.UserDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -40,12 +41,34 @@ public interface UserRepository {
     Page<UserDO> pagingQueryUsersWithProjectLevelRoles(
             PageRequest pageRequest, RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId);
 
+    /**
+     * 按用户id升序查询cursor之后的size个拥有该层级角色的用户，cursor为空时从头开始
+     */
+    List<UserDO> listUsersWithLevelRolesByCursor(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId,
+                                                 String sourceType, Long cursor, int size);
+
+    /**
+     * 近似的用户总数，来自缓存
+     */
+    int countUsersWithLevelRoles(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId, String sourceType);
+
     UserE updateUserInfo(UserE userE);
 
     UserDO selectOne(UserDO user);
 
     Page<UserDO> pagingQueryUsersByProjectId(Long projectId, Long userId, String email, PageRequest pageRequest, String param);
 
+    /**
+     * 一次查询所有角色的用户数，返回的RoleDO只有id和userCount
+     */
+    List<RoleDO> selectUserCountGroupByRole(Long sourceId, String sourceType,
+                                            RoleAssignmentSearchDTO roleAssignmentSearchDTO, String param);
+
+    /**
+     * 一次查询多个角色下的用户，用户的roles只包含角色id
+     */
+    List<UserDO> listUsersByRoleIds(List<Long> roleIds, Long sourceId, String sourceType);
+
     Integer selectUserCountFromMemberRoleByOptions(Long roleId, String memberType, Long sourceId,
                                                    String sourceType, RoleAssignmentSearchDTO roleAssignmentSearchDTO,
                                                    String param);
@@ -75,6 +98,8 @@ public interface UserRepository {
 
     Set<String> matchLoginName(Set<String> nameSet);
 
+    List<UserDO> selectByLoginNames(Set<String> nameSet);
+
     Set<String> matchEmail(Set<String> emailSet);
 
     Long[] listUserIds();
@@ -5,6 +5,7 @@ import io.choerodon.iam.domain.iam.entity.MemberRoleE;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author superlee
@@ -15,7 +16,19 @@ public interface IRoleMemberService {
     List<MemberRoleE> insertOrUpdateRolesByMemberId(
             Boolean isEdit, Long sourceId, Long memberId, List<MemberRoleE> memberRoleEList, String sourceType);
 
+    /**
+     * 批量给多个用户分配同一组角色，整个请求只发送一次(按1000分批)saga
+     */
+    List<MemberRoleE> insertOrUpdateRolesByMemberIds(
+            Boolean isEdit, Long sourceId, List<Long> memberIds, List<Long> roleIds, String sourceType);
+
     void delete(RoleAssignmentDeleteDTO roleAssignmentDeleteDTO, String sourceType);
 
-    void insertAndSendEvent(MemberRoleDO memberRole, String loginName);
+    /**
+     * 批量插入member_role，每个用户只发送一条包含其全部角色的事件
+     *
+     * @param memberRoles 待插入的记录，调用方保证不重复
+     * @param loginNames  memberId与登录名的映射
+     */
+    void insertListAndSendEvent(List<MemberRoleDO> memberRoles, Map<Long, String> loginNames);
 }
@@ -10,21 +10,22 @@ import io.choerodon.iam.api.dto.payload.UserMemberEventPayload;
 import io.choerodon.iam.api.validator.RoleAssignmentViewValidator;
 import io.choerodon.iam.domain.iam.entity.MemberRoleE;
 import io.choerodon.iam.domain.iam.entity.UserE;
-import io.choerodon.iam.domain.repository.LabelRepository;
 import io.choerodon.iam.domain.repository.MemberRoleRepository;
 import io.choerodon.iam.domain.repository.UserRepository;
 import io.choerodon.iam.domain.service.IRoleMemberService;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.cache.RoleLabelCache;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
-import io.choerodon.iam.infra.mapper.MemberRoleMapper;
+import io.choerodon.iam.infra.dataobject.UserDO;
 import io.choerodon.mybatis.service.BaseServiceImpl;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static io.choerodon.iam.infra.common.utils.SagaTopic.MemberRole.MEMBER_ROLE_DELETE;
@@ -39,15 +40,18 @@ public class IRoleMemberServiceImpl extends BaseServiceImpl<MemberRoleDO> implem
 
     private static final String MEMBER_ROLE_NOT_EXIST_EXCEPTION = "error.memberRole.not.exist";
 
+    private static final int SAGA_BATCH_SIZE = 1000;
+
     private UserRepository userRepository;
 
     private MemberRoleRepository memberRoleRepository;
-    private MemberRoleMapper memberRoleMapper;
 
-    private LabelRepository labelRepository;
+    private RoleLabelCache roleLabelCache;
 
     private SagaClient sagaClient;
 
+    private CacheEventPublisher cacheEventPublisher;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     @Value("${choerodon.devops.message:false}")
@@ -58,42 +62,36 @@ public class IRoleMemberServiceImpl extends BaseServiceImpl<MemberRoleDO> implem
 
     public IRoleMemberServiceImpl(UserRepository userRepository,
                                   MemberRoleRepository memberRoleRepository,
-                                  LabelRepository labelRepository,
+                                  RoleLabelCache roleLabelCache,
                                   SagaClient sagaClient,
-                                  MemberRoleMapper memberRoleMapper) {
+                                  CacheEventPublisher cacheEventPublisher) {
         this.userRepository = userRepository;
         this.memberRoleRepository = memberRoleRepository;
-        this.labelRepository = labelRepository;
+        this.roleLabelCache = roleLabelCache;
         this.sagaClient = sagaClient;
-        this.memberRoleMapper = memberRoleMapper;
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
     @Override
     @Transactional
-    public void insertAndSendEvent(MemberRoleDO memberRole, String loginName) {
-        if (memberRoleMapper.insertSelective(memberRole) != 1) {
-            throw new CommonException("error.member_role.create");
+    public void insertListAndSendEvent(List<MemberRoleDO> memberRoles, Map<Long, String> loginNames) {
+        if (memberRoles.isEmpty()) {
+            return;
         }
-        if (devopsMessage) {
-            List<UserMemberEventPayload> userMemberEventPayloads = new ArrayList<>();
-            Long userId = memberRole.getMemberId();
-            Long sourceId = memberRole.getSourceId();
-            String memberType = memberRole.getMemberType();
-            String sourceType = memberRole.getSourceType();
-            UserMemberEventPayload userMemberEventMsg = new UserMemberEventPayload();
-            userMemberEventMsg.setResourceId(sourceId);
-            userMemberEventMsg.setUserId(userId);
-            userMemberEventMsg.setResourceType(sourceType);
-            userMemberEventMsg.setUsername(loginName);
-            MemberRoleE mr =
-                    new MemberRoleE(null, null, userId, memberType, sourceId, sourceType);
-            List<Long> roleIds = memberRoleRepository.select(mr)
-                    .stream().map(MemberRoleE::getRoleId).collect(Collectors.toList());
-            if (!roleIds.isEmpty()) {
-                userMemberEventMsg.setRoleLabels(labelRepository.selectLabelNamesInRoleIds(roleIds));
+        memberRoleRepository.insertList(memberRoles);
+        Map<String, List<MemberRoleDO>> sources = memberRoles.stream().collect(Collectors.groupingBy(
+                mr -> mr.getSourceType() + ":" + mr.getSourceId(), LinkedHashMap::new, Collectors.toList()));
+        for (List<MemberRoleDO> list : sources.values()) {
+            Long sourceId = list.get(0).getSourceId();
+            String sourceType = list.get(0).getSourceType();
+            List<Long> memberIds = list.stream().map(MemberRoleDO::getMemberId).distinct().collect(Collectors.toList());
+            memberIds.forEach(memberId ->
+                    cacheEventPublisher.publish(CacheEvent.memberRoleChanged(memberId, sourceType, sourceId)));
+            if (devopsMessage) {
+                List<MemberRoleDO> current =
+                        memberRoleRepository.selectByMemberIds(memberIds, "user", sourceId, sourceType);
+                sendEvents(current, memberIds, loginNames, sourceId, sourceType);
             }
-            userMemberEventPayloads.add(userMemberEventMsg);
-            sendEvent(userMemberEventPayloads);
         }
     }
 
@@ -119,10 +117,11 @@ public class IRoleMemberServiceImpl extends BaseServiceImpl<MemberRoleDO> implem
             List<Long> ownRoleIds = insertOrUpdateRolesByMemberIdExecute(
                     isEdit, sourceId, memberId, sourceType, memberRoleEList, returnList);
             if (!ownRoleIds.isEmpty()) {
-                userMemberEventMsg.setRoleLabels(labelRepository.selectLabelNamesInRoleIds(ownRoleIds));
+                userMemberEventMsg.setRoleLabels(roleLabelCache.labelNames(ownRoleIds));
             }
             userMemberEventPayloads.add(userMemberEventMsg);
             sendEvent(userMemberEventPayloads);
+            cacheEventPublisher.publish(CacheEvent.memberRoleChanged(memberId, sourceType, sourceId));
             return returnList;
         } else {
             insertOrUpdateRolesByMemberIdExecute(isEdit,
@@ -131,10 +130,97 @@ public class IRoleMemberServiceImpl extends BaseServiceImpl<MemberRoleDO> implem
                     sourceType,
                     memberRoleEList,
                     returnList);
+            cacheEventPublisher.publish(CacheEvent.memberRoleChanged(memberId, sourceType, sourceId));
             return returnList;
         }
     }
 
+    @Override
+    @Transactional
+    public List<MemberRoleE> insertOrUpdateRolesByMemberIds(Boolean isEdit, Long sourceId,
+                                                            List<Long> memberIds, List<Long> roleIds,
+                                                            String sourceType) {
+        List<Long> distinctMemberIds = memberIds.stream().distinct().collect(Collectors.toList());
+        if (distinctMemberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, String> loginNames = selectLoginNames(distinctMemberIds);
+        Set<Long> newRoleIds = new LinkedHashSet<>(roleIds);
+        Map<Long, List<MemberRoleDO>> existing = memberRoleRepository
+                .selectByMemberIds(distinctMemberIds, "user", sourceId, sourceType)
+                .stream().collect(Collectors.groupingBy(MemberRoleDO::getMemberId));
+        List<MemberRoleDO> insertList = new ArrayList<>();
+        List<Long> deleteList = new ArrayList<>();
+        for (Long memberId : distinctMemberIds) {
+            List<MemberRoleDO> memberRoles = existing.getOrDefault(memberId, Collections.emptyList());
+            Set<Long> existingRoleIds = memberRoles.stream().map(MemberRoleDO::getRoleId).collect(Collectors.toSet());
+            newRoleIds.stream().filter(roleId -> !existingRoleIds.contains(roleId)).forEach(roleId -> {
+                MemberRoleDO memberRole = new MemberRoleDO();
+                memberRole.setRoleId(roleId);
+                memberRole.setMemberId(memberId);
+                memberRole.setMemberType("user");
+                memberRole.setSourceId(sourceId);
+                memberRole.setSourceType(sourceType);
+                insertList.add(memberRole);
+            });
+            if (isEdit != null && isEdit) {
+                memberRoles.stream().filter(mr -> !newRoleIds.contains(mr.getRoleId()))
+                        .forEach(mr -> deleteList.add(mr.getId()));
+            }
+        }
+        if (!insertList.isEmpty()) {
+            memberRoleRepository.insertList(insertList);
+        }
+        if (!deleteList.isEmpty()) {
+            memberRoleRepository.deleteByIds(deleteList);
+        }
+        //插入的记录需要id，重新查一次当前的member_role
+        List<MemberRoleDO> current =
+                memberRoleRepository.selectByMemberIds(distinctMemberIds, "user", sourceId, sourceType);
+        distinctMemberIds.forEach(memberId ->
+                cacheEventPublisher.publish(CacheEvent.memberRoleChanged(memberId, sourceType, sourceId)));
+        if (devopsMessage) {
+            sendEvents(current, distinctMemberIds, loginNames, sourceId, sourceType);
+        }
+        return current.stream().map(mr -> new MemberRoleE(mr.getId(), mr.getRoleId(), mr.getMemberId(),
+                mr.getMemberType(), mr.getSourceId(), mr.getSourceType())).collect(Collectors.toList());
+    }
+
+    private Map<Long, String> selectLoginNames(List<Long> memberIds) {
+        Map<Long, String> loginNames = new HashMap<>();
+        for (List<Long> batch : CollectionUtils.subList(memberIds, SAGA_BATCH_SIZE)) {
+            for (UserDO user : userRepository.listUsersByIds(batch.toArray(new Long[0]))) {
+                loginNames.put(user.getId(), user.getLoginName());
+            }
+        }
+        for (Long memberId : memberIds) {
+            if (!loginNames.containsKey(memberId)) {
+                throw new CommonException("error.user.not.exist", memberId);
+            }
+        }
+        return loginNames;
+    }
+
+    private void sendEvents(List<MemberRoleDO> memberRoles, List<Long> memberIds, Map<Long, String> loginNames,
+                            Long sourceId, String sourceType) {
+        Map<Long, List<Long>> ownRoleIds = memberRoles.stream().collect(Collectors.groupingBy(
+                MemberRoleDO::getMemberId, Collectors.mapping(MemberRoleDO::getRoleId, Collectors.toList())));
+        List<UserMemberEventPayload> userMemberEventPayloads = new ArrayList<>();
+        for (Long memberId : memberIds) {
+            UserMemberEventPayload userMemberEventMsg = new UserMemberEventPayload();
+            userMemberEventMsg.setResourceId(sourceId);
+            userMemberEventMsg.setUserId(memberId);
+            userMemberEventMsg.setResourceType(sourceType);
+            userMemberEventMsg.setUsername(loginNames.get(memberId));
+            List<Long> roleIds = ownRoleIds.get(memberId);
+            if (roleIds != null && !roleIds.isEmpty()) {
+                userMemberEventMsg.setRoleLabels(roleLabelCache.labelNames(roleIds));
+            }
+            userMemberEventPayloads.add(userMemberEventMsg);
+        }
+        CollectionUtils.subList(userMemberEventPayloads, SAGA_BATCH_SIZE).forEach(this::sendEvent);
+    }
+
     private void sendEvent(List<UserMemberEventPayload> userMemberEventPayloads) {
         try {
             String input = mapper.writeValueAsString(userMemberEventPayloads);
@@ -174,64 +260,50 @@ public class IRoleMemberServiceImpl extends BaseServiceImpl<MemberRoleDO> implem
         String view = roleAssignmentDeleteDTO.getView();
         Long sourceId = roleAssignmentDeleteDTO.getSourceId();
         Map<Long, List<Long>> data = roleAssignmentDeleteDTO.getData();
+        //统一转换成(userId, roleId)对
+        List<Long[]> pairs = new ArrayList<>();
         if (RoleAssignmentViewValidator.USER_VIEW.equalsIgnoreCase(view)) {
-            for (Map.Entry<Long, List<Long>> entry : data.entrySet()) {
-                Long userId = entry.getKey();
-                List<Long> roleIds = entry.getValue();
-                if (roleIds != null && !roleIds.isEmpty()) {
-                    roleIds.forEach(roleId -> {
-                        UserMemberEventPayload userMemberEventPayload =
-                                delete(roleId, userId, memberType, sourceId, sourceType, doSendEvent);
-                        if (userMemberEventPayload != null) {
-                            userMemberEventPayloads.add(userMemberEventPayload);
-                        }
-                    });
+            data.forEach((userId, roleIds) -> {
+                if (roleIds != null) {
+                    roleIds.forEach(roleId -> pairs.add(new Long[]{userId, roleId}));
                 }
-            }
+            });
         } else if (RoleAssignmentViewValidator.ROLE_VIEW.equalsIgnoreCase(view)) {
-            for (Map.Entry<Long, List<Long>> entry : data.entrySet()) {
-                Long roleId = entry.getKey();
-                List<Long> userIds = entry.getValue();
-                if (userIds != null && !userIds.isEmpty()) {
-                    userIds.forEach(userId -> {
-                        UserMemberEventPayload payload =
-                                delete(roleId, userId, memberType, sourceId, sourceType, doSendEvent);
-                        if (payload != null) {
-                            userMemberEventPayloads.add(payload);
-                        }
-                    });
+            data.forEach((roleId, userIds) -> {
+                if (userIds != null) {
+                    userIds.forEach(userId -> pairs.add(new Long[]{userId, roleId}));
                 }
-            }
+            });
         }
-    }
-
-    private UserMemberEventPayload delete(Long roleId, Long memberId, String memberType,
-                                          Long sourceId, String sourceType, boolean doSendEvent) {
-        MemberRoleDO memberRole = new MemberRoleDO();
-        memberRole.setRoleId(roleId);
-        memberRole.setMemberId(memberId);
-        memberRole.setMemberType(memberType);
-        memberRole.setSourceId(sourceId);
-        memberRole.setSourceType(sourceType);
-        MemberRoleDO mr = memberRoleRepository.selectOne(memberRole);
-        if (mr == null) {
-            throw new CommonException(MEMBER_ROLE_NOT_EXIST_EXCEPTION, roleId, memberId);
+        if (pairs.isEmpty()) {
+            return;
         }
-        memberRoleRepository.deleteById(mr.getId());
-        UserMemberEventPayload userMemberEventMsg = null;
-        //查询移除的role所包含的所有Label
+        List<Long> memberIds = pairs.stream().map(pair -> pair[0]).distinct().collect(Collectors.toList());
+        Map<String, Long> existing = new HashMap<>();
+        memberRoleRepository.selectByMemberIds(memberIds, memberType, sourceId, sourceType)
+                .forEach(mr -> existing.put(mr.getMemberId() + ":" + mr.getRoleId(), mr.getId()));
+        Set<Long> deleteIds = new LinkedHashSet<>();
+        for (Long[] pair : pairs) {
+            Long id = existing.get(pair[0] + ":" + pair[1]);
+            if (id == null) {
+                throw new CommonException(MEMBER_ROLE_NOT_EXIST_EXCEPTION, pair[1], pair[0]);
+            }
+            deleteIds.add(id);
+        }
+        memberRoleRepository.deleteByIds(new ArrayList<>(deleteIds));
+        memberIds.forEach(memberId ->
+                cacheEventPublisher.publish(CacheEvent.memberRoleChanged(memberId, sourceType, sourceId)));
         if (doSendEvent) {
-            userMemberEventMsg = new UserMemberEventPayload();
-            userMemberEventMsg.setResourceId(sourceId);
-            userMemberEventMsg.setResourceType(sourceType);
-            UserE user = userRepository.selectByPrimaryKey(memberId);
-            if (user == null) {
-                throw new CommonException("error.user.not.exist", memberId);
+            Map<Long, String> loginNames = selectLoginNames(memberIds);
+            for (Long[] pair : pairs) {
+                UserMemberEventPayload userMemberEventMsg = new UserMemberEventPayload();
+                userMemberEventMsg.setResourceId(sourceId);
+                userMemberEventMsg.setResourceType(sourceType);
+                userMemberEventMsg.setUsername(loginNames.get(pair[0]));
+                userMemberEventMsg.setUserId(pair[0]);
+                userMemberEventPayloads.add(userMemberEventMsg);
             }
-            userMemberEventMsg.setUsername(user.getLoginName());
-            userMemberEventMsg.setUserId(memberId);
         }
-        return userMemberEventMsg;
     }
 
     private List<Long> insertOrUpdateRolesByMemberIdExecute(Boolean isEdit, Long sourceId,
@@ -12,6 +12,8 @@ import io.choerodon.iam.domain.iam.entity.RoleE;
 import io.choerodon.iam.domain.iam.entity.RolePermissionE;
 import io.choerodon.iam.domain.repository.*;
 import io.choerodon.iam.domain.service.IRoleService;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
 import io.choerodon.iam.infra.dataobject.LabelDO;
 import io.choerodon.iam.infra.dataobject.RoleDO;
 import io.choerodon.iam.infra.dataobject.RoleLabelDO;
@@ -58,6 +60,8 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
 
     private SagaClient sagaClient;
 
+    private CacheEventPublisher cacheEventPublisher;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     private static final String ROLE_NOT_EXIST_EXCEPTION = "error.role.not.exist";
@@ -68,7 +72,8 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
                             LabelRepository labelRepository,
                             RoleLabelRepository roleLabelRepository,
                             UserRepository userRepository,
-                            SagaClient sagaClient) {
+                            SagaClient sagaClient,
+                            CacheEventPublisher cacheEventPublisher) {
         this.roleRepository = roleRepository;
         this.rolePermissionRepository = rolePermissionRepository;
         this.permissionRepository = permissionRepository;
@@ -76,7 +81,7 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
         this.roleLabelRepository = roleLabelRepository;
         this.userRepository = userRepository;
         this.sagaClient = sagaClient;
-
+        this.cacheEventPublisher = cacheEventPublisher;
     }
 
     @Override
@@ -91,6 +96,7 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
         insertRolePermission(role);
         //维护role_label表
         insertRoleLabel(role);
+        cacheEventPublisher.publish(CacheEvent.rolePermissionChanged(role.getId()));
         return role;
     }
 
@@ -139,6 +145,7 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
             role.copyPermissionsAndLabels(roleE);
             //维护role_permission关系
             updateRolePermission(role);
+            cacheEventPublisher.publish(CacheEvent.rolePermissionChanged(role.getId()));
             //维护role_label表
             updateRoleLabel(role);
             return role;
@@ -191,6 +198,9 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
     }
 
     private void doUpdateAndDelete(RoleE roleE, List<Long> insertList, List<Long> deleteList) {
+        if (!insertList.isEmpty() || !deleteList.isEmpty()) {
+            cacheEventPublisher.publish(CacheEvent.roleLabelChanged(roleE.getId()));
+        }
         insertList.forEach(labelId -> {
             checkLabelId(labelId);
             RoleLabelDO rl = new RoleLabelDO();
@@ -286,6 +296,8 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
         RoleLabelDO roleLabelDO = new RoleLabelDO();
         roleLabelDO.setRoleId(id);
         roleLabelRepository.delete(roleLabelDO);
+        cacheEventPublisher.publish(CacheEvent.rolePermissionChanged(id));
+        cacheEventPublisher.publish(CacheEvent.roleLabelChanged(id));
     }
 
     @Override
@@ -295,7 +307,9 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
             throw new CommonException(ROLE_NOT_EXIST_EXCEPTION);
         }
         roleE.enable();
-        return roleRepository.updateSelective(roleE);
+        RoleE role = roleRepository.updateSelective(roleE);
+        cacheEventPublisher.publish(CacheEvent.rolePermissionChanged(id));
+        return role;
     }
 
     @Override
@@ -305,6 +319,8 @@ public class IRoleServiceImpl extends BaseServiceImpl<RoleDO> implements IRoleSe
             throw new CommonException(ROLE_NOT_EXIST_EXCEPTION);
         }
         roleE.disable();
-        return roleRepository.updateSelective(roleE);
+        RoleE role = roleRepository.updateSelective(roleE);
+        cacheEventPublisher.publish(CacheEvent.rolePermissionChanged(id));
+        return role;
     }
 }
@@ -3,24 +3,33 @@ package io.choerodon.iam.domain.service.impl;
 import java.io.IOException;
 import java.util.*;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.core.swagger.PermissionData;
 import io.choerodon.core.swagger.SwaggerExtraData;
 import io.choerodon.iam.domain.iam.entity.InstanceE;
-import io.choerodon.iam.domain.iam.entity.PermissionE;
-import io.choerodon.iam.domain.iam.entity.RolePermissionE;
 import io.choerodon.iam.domain.repository.PermissionRepository;
 import io.choerodon.iam.domain.repository.RolePermissionRepository;
 import io.choerodon.iam.domain.repository.RoleRepository;
+import io.choerodon.iam.domain.repository.SwaggerFingerprintRepository;
 import io.choerodon.iam.domain.service.ParsePermissionService;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.common.utils.swagger.SwaggerOperation;
+import io.choerodon.iam.infra.common.utils.swagger.SwaggerOperationReader;
+import io.choerodon.iam.infra.dataobject.PermissionDO;
 import io.choerodon.iam.infra.dataobject.RoleDO;
+import io.choerodon.iam.infra.dataobject.RolePermissionDO;
+import io.choerodon.iam.infra.dataobject.SwaggerFingerprintDO;
 import io.choerodon.iam.infra.enums.RoleCode;
 
 /**
@@ -42,15 +51,24 @@ public class ParsePermissionServiceImpl implements ParsePermissionService {
 
     private RoleRepository roleRepository;
 
+    private CacheEventPublisher cacheEventPublisher;
+
+    private SwaggerFingerprintRepository swaggerFingerprintRepository;
+
     public ParsePermissionServiceImpl(PermissionRepository permissionRepository,
                                       RolePermissionRepository rolePermissionRepository,
-                                      RoleRepository roleRepository) {
+                                      RoleRepository roleRepository,
+                                      CacheEventPublisher cacheEventPublisher,
+                                      SwaggerFingerprintRepository swaggerFingerprintRepository) {
         this.permissionRepository = permissionRepository;
         this.rolePermissionRepository = rolePermissionRepository;
         this.roleRepository = roleRepository;
+        this.cacheEventPublisher = cacheEventPublisher;
+        this.swaggerFingerprintRepository = swaggerFingerprintRepository;
     }
 
     @Override
+    @Transactional(rollbackFor = CommonException.class)
     public void parser(String message) {
         try {
             InstanceE instanceE = objectMapper.readValue(message, InstanceE.class);
@@ -59,13 +77,41 @@ public class ParsePermissionServiceImpl implements ParsePermissionService {
                     serviceName, instanceE.getVersion(), instanceE.getInstanceAddress());
             String json = instanceE.getApiData();
             if (!StringUtils.isEmpty(serviceName) && !StringUtils.isEmpty(json)) {
-                JsonNode node = objectMapper.readTree(json);
-                Iterator<Map.Entry<String, JsonNode>> pathIterator = node.get("paths").fields();
+                String version = instanceE.getVersion() == null ? "" : instanceE.getVersion();
+                List<SwaggerOperation> swaggerOperations = SwaggerOperationReader.read(json);
+                //只对接口计算指纹，host等字段每个实例都不相同
+                String fingerprint = SwaggerOperationReader.fingerprint(swaggerOperations);
+                //与该服务最近一次解析的文档比较，不区分版本，回滚到旧版本时同样按差异解析
+                SwaggerFingerprintDO lastApplied = swaggerFingerprintRepository.selectByServiceName(serviceName);
+                if (lastApplied != null && fingerprint.equals(lastApplied.getFingerprint())) {
+                    logger.info("swagger document of service: {}, version: {} is unchanged, skip parsing", serviceName, version);
+                    return;
+                }
+                Map<String, String> previousOperations = readOperations(lastApplied);
+                Map<String, String> operations = new HashMap<>();
                 Map<String, RoleDO> initRoleMap = queryInitRoleByCode();
-                while (pathIterator.hasNext()) {
-                    Map.Entry<String, JsonNode> pathNode = pathIterator.next();
-                    Iterator<Map.Entry<String, JsonNode>> methodIterator = pathNode.getValue().fields();
-                    parserMethod(methodIterator, pathNode, serviceName, initRoleMap);
+                //先收集变化的接口，再与数据库中该服务的权限整体比对后批量写入
+                Map<String, ParsedPermission> parsedPermissions = new LinkedHashMap<>();
+                for (SwaggerOperation operation : swaggerOperations) {
+                    String key = operation.getMethod() + " " + operation.getPath();
+                    operations.put(key, operation.getHash());
+                    if (!operation.getHash().equals(previousOperations.get(key))) {
+                        ParsedPermission parsed = parserMethod(operation, serviceName);
+                        if (parsed != null) {
+                            parsedPermissions.put(parsed.permission.getCode(), parsed);
+                        }
+                    }
+                }
+                if (!parsedPermissions.isEmpty()) {
+                    syncPermissions(serviceName, parsedPermissions, initRoleMap);
+                    //事务提交后重建权限索引和code集合
+                    cacheEventPublisher.publish(CacheEvent.permissionChanged());
+                }
+                logger.info("swagger document of service: {}, version: {} parsed, operations: {}, changed: {}",
+                        serviceName, version, operations.size(), parsedPermissions.size());
+                //初始化角色不全时role_permission没有完整写入，不记录指纹，下次重新解析
+                if (!initRoleMap.containsValue(null)) {
+                    saveFingerprint(lastApplied, serviceName, version, fingerprint, operations);
                 }
             }
         } catch (IOException e) {
@@ -74,148 +120,196 @@ public class ParsePermissionServiceImpl implements ParsePermissionService {
         }
     }
 
-    /**
-     * 解析文档树某个路径的所有方法
-     *
-     * @param methodIterator 所有方法
-     * @param pathNode       路径
-     * @param serviceName    服务名
-     */
-    private void parserMethod(Iterator<Map.Entry<String, JsonNode>> methodIterator,
-                              Map.Entry<String, JsonNode> pathNode, String serviceName,
-                              Map<String, RoleDO> initRoleMap) {
-        while (methodIterator.hasNext()) {
-            Map.Entry<String, JsonNode> methodNode = methodIterator.next();
-            JsonNode tags = methodNode.getValue().get("tags");
-            SwaggerExtraData extraData = null;
-            String resourceCode = null;
-            for (int i = 0; i < tags.size(); i++) {
-                String tag = tags.get(i).asText();
-                if (tag.endsWith("-controller")) {
-                    resourceCode = tag.substring(0, tag.length() - "-controller".length());
-                }
-            }
-            try {
-                JsonNode extraDataNode = methodNode.getValue().get("description");
-                if (extraDataNode == null) {
-                    continue;
-                }
-                extraData = objectMapper.readValue(extraDataNode.asText(), SwaggerExtraData.class);
-            } catch (IOException e) {
-                logger.info("extraData read failed.", e);
-            }
-            if (extraData == null || resourceCode == null) {
-                continue;
-            }
-            String description = methodNode.getValue().get("summary").asText();
-            String[] roles = null;
-            if (extraData.getPermission() != null) {
-                roles = extraData.getPermission().getRoles();
-            }
-            processPermission(extraData, pathNode.getKey(),
-                    methodNode.getKey(), serviceName, resourceCode, description, initRoleMap, roles);
+    private Map<String, String> readOperations(SwaggerFingerprintDO fingerprint) {
+        if (fingerprint == null || StringUtils.isEmpty(fingerprint.getOperations())) {
+            return Collections.emptyMap();
+        }
+        try {
+            return objectMapper.readValue(fingerprint.getOperations(), new TypeReference<Map<String, String>>() {
+            });
+        } catch (IOException e) {
+            logger.info("read operations of swagger fingerprint failed, id: {}", fingerprint.getId(), e);
+            return Collections.emptyMap();
+        }
+    }
 
+    private void saveFingerprint(SwaggerFingerprintDO lastApplied, String serviceName, String version,
+                                 String fingerprint, Map<String, String> operations) throws IOException {
+        SwaggerFingerprintDO fingerprintDO = lastApplied == null ? new SwaggerFingerprintDO() : lastApplied;
+        fingerprintDO.setServiceName(serviceName);
+        fingerprintDO.setVersion(version);
+        fingerprintDO.setFingerprint(fingerprint);
+        fingerprintDO.setOperations(objectMapper.writeValueAsString(operations));
+        if (lastApplied != null) {
+            swaggerFingerprintRepository.updateByPrimaryKeySelective(fingerprintDO);
+            return;
+        }
+        try {
+            swaggerFingerprintRepository.insertSelective(fingerprintDO);
+        } catch (DuplicateKeyException e) {
+            //同一服务的多个实例同时启动，已由其他消息写入
+            logger.info("swagger fingerprint of service: {} already exists", serviceName);
         }
     }
 
-    private void processPermission(SwaggerExtraData extraData, String path, String method,
-                                   String serviceName, String resourceCode, String description,
-                                   Map<String, RoleDO> initRoleMap, String[] roles) {
-        /**
-         * 关于permission目前只有插入和更新操作，没有删除废弃的permission。因为目前的从swagger拿到的permission json无法判断是否与数据库中已存在的permission一致
-         * 后续如果想通过parse的方式删除废弃的permission，目前的想法是只能在每个接口上加一个不变且各不相同的唯一标识，通过标识判断到底是删除了接口还是更新了接口
-         */
+    /**
+     * 解析文档中的一个接口
+     *
+     * @param operation   接口
+     * @param serviceName 服务名
+     * @return 接口对应的权限，没有权限描述时返回null
+     */
+    private ParsedPermission parserMethod(SwaggerOperation operation, String serviceName) {
+        String resourceCode = operation.getResourceCode();
+        if (resourceCode == null) {
+            return null;
+        }
+        SwaggerExtraData extraData = SwaggerOperationReader.readExtraData(operation);
+        if (extraData == null || extraData.getPermission() == null) {
+            return null;
+        }
+        String description = operation.getSummary();
         PermissionData permission = extraData.getPermission();
         String action = permission.getAction();
-        String code = serviceName + "." + resourceCode + "." + action;
-        PermissionE permissionE = permissionRepository.selectByCode(code);
-        if (permissionE == null) {
-            //插入操作
-            PermissionE p =
-                    new PermissionE(code, path, method, permission.getPermissionLevel(), description, action,
-                            resourceCode, permission.isPermissionPublic(), permission.isPermissionLogin(), permission.isPermissionWithin(), serviceName, null);
-            PermissionE permissionE1 = permissionRepository.insertSelective(p);
-            if (permissionE1 != null) {
-                insertRolePermission(permissionE1, initRoleMap, roles);
-                logger.debug("url: {} method: {} permission: {}",
-                        path,
-                        method,
-                        permissionE1.getCode());
+        PermissionDO permissionDO = new PermissionDO();
+        permissionDO.setCode(serviceName + "." + resourceCode + "." + action);
+        permissionDO.setPath(operation.getPath());
+        permissionDO.setMethod(operation.getMethod());
+        permissionDO.setLevel(permission.getPermissionLevel());
+        permissionDO.setDescription(description);
+        permissionDO.setAction(action);
+        permissionDO.setResource(resourceCode);
+        permissionDO.setPublicAccess(permission.isPermissionPublic());
+        permissionDO.setLoginAccess(permission.isPermissionLogin());
+        permissionDO.setWithin(permission.isPermissionWithin());
+        permissionDO.setServiceName(serviceName);
+        return new ParsedPermission(permissionDO, permission.getRoles());
+    }
+
+    /**
+     * 与数据库中该服务已有的permission和role_permission比对，批量写入差异
+     * 关于permission目前只有插入和更新操作，没有删除废弃的permission。因为目前的从swagger拿到的permission json无法判断是否与数据库中已存在的permission一致
+     * 后续如果想通过parse的方式删除废弃的permission，目前的想法是只能在每个接口上加一个不变且各不相同的唯一标识，通过标识判断到底是删除了接口还是更新了接口
+     */
+    private void syncPermissions(String serviceName, Map<String, ParsedPermission> parsedPermissions,
+                                 Map<String, RoleDO> initRoleMap) {
+        Map<String, PermissionDO> existing = new HashMap<>();
+        permissionRepository.selectByServiceName(serviceName).forEach(p -> existing.put(p.getCode(), p));
+        List<PermissionDO> upsertList = new ArrayList<>();
+        boolean inserted = false;
+        for (ParsedPermission parsed : parsedPermissions.values()) {
+            PermissionDO old = existing.get(parsed.permission.getCode());
+            if (old == null) {
+                inserted = true;
+                upsertList.add(parsed.permission);
+            } else if (!samePermission(old, parsed.permission)) {
+                upsertList.add(parsed.permission);
             }
+        }
+        permissionRepository.upsertList(upsertList);
+        Map<String, Long> permissionIds = new HashMap<>();
+        if (inserted) {
+            //取回新插入权限的id
+            permissionRepository.selectByServiceName(serviceName).forEach(p -> permissionIds.put(p.getCode(), p.getId()));
         } else {
-            //更新操作
-            PermissionE p =
-                    new PermissionE(code, path, method, permission.getPermissionLevel(), description, action,
-                            resourceCode, permission.isPermissionPublic(), permission.isPermissionLogin(), permission.isPermissionWithin(), serviceName, permissionE.getObjectVersionNumber());
-            p.setId(permissionE.getId());
-            if (!permissionE.equals(p)) {
-                permissionRepository.updateSelective(p);
-            }
-            updateRolePermission(p, initRoleMap, roles);
-            logger.debug("url: {} method: {} permission: {}",
-                    path,
-                    method,
-                    p.getCode());
+            existing.forEach((code, p) -> permissionIds.put(code, p.getId()));
         }
-    }
 
-    private void updateRolePermission(PermissionE permission, Map<String, RoleDO> initRoleMap, String[] roles) {
-        Long permissionId = permission.getId();
-        String level = permission.getLevel();
-        RoleDO role = getRoleByLevel(initRoleMap, level);
-        if (role != null) {
-            RolePermissionE rp = new RolePermissionE(null, role.getId(), permissionId);
-            if (rolePermissionRepository.selectOne(rp) == null) {
-                rolePermissionRepository.insert(rp);
+        Map<Long, Map<Long, Long>> rolePermissions = new HashMap<>();
+        rolePermissionRepository.selectByServiceName(serviceName).forEach(rp ->
+                rolePermissions.computeIfAbsent(rp.getPermissionId(), k -> new HashMap<>()).put(rp.getRoleId(), rp.getId()));
+        Set<Long> deletableRoleIds = queryDeletableRoleIds(initRoleMap);
+        List<RolePermissionDO> insertList = new ArrayList<>();
+        List<Long> deleteList = new ArrayList<>();
+        for (ParsedPermission parsed : parsedPermissions.values()) {
+            String code = parsed.permission.getCode();
+            Long permissionId = permissionIds.get(code);
+            if (permissionId == null) {
+                throw new CommonException("error.permission.insert");
             }
-        }
-        List<RoleDO> roleList = roleRepository.selectInitRolesByPermissionId(permissionId);
-        //删掉除去SITE_ADMINISTRATOR，ORGANIZATION_ADMINISTRATOR，PROJECT_ADMINISTRATOR的所有role_permission关系
-        for (RoleDO roleDO : roleList) {
-            String code = roleDO.getCode();
-            if (!RoleCode.SITE_ADMINISTRATOR.equals(code)
-                    && !RoleCode.PROJECT_ADMINISTRATOR.equals(code)
-                    && !RoleCode.ORGANIZATION_ADMINISTRATOR.equals(code)) {
-                RolePermissionE rolePermission = new RolePermissionE(null, roleDO.getId(), permissionId);
-                rolePermissionRepository.delete(rolePermission);
+            Set<Long> roleIds = resolveRoleIds(parsed, initRoleMap);
+            Map<Long, Long> current = rolePermissions.getOrDefault(permissionId, Collections.emptyMap());
+            for (Long roleId : roleIds) {
+                if (!current.containsKey(roleId)) {
+                    RolePermissionDO rp = new RolePermissionDO();
+                    rp.setRoleId(roleId);
+                    rp.setPermissionId(permissionId);
+                    insertList.add(rp);
+                }
+            }
+            //已存在的权限删掉除去SITE_ADMINISTRATOR，ORGANIZATION_ADMINISTRATOR，PROJECT_ADMINISTRATOR和声明的角色之外的预置角色关系
+            if (existing.containsKey(code)) {
+                current.forEach((roleId, id) -> {
+                    if (deletableRoleIds.contains(roleId) && !roleIds.contains(roleId)) {
+                        deleteList.add(id);
+                    }
+                });
             }
         }
-        processRolePermission(initRoleMap, roles, permissionId);
+        rolePermissionRepository.insertList(insertList);
+        rolePermissionRepository.deleteByIds(deleteList);
+        logger.debug("service: {} permissions upserted: {}, role permissions inserted: {}, deleted: {}",
+                serviceName, upsertList.size(), insertList.size(), deleteList.size());
     }
 
-    private void insertRolePermission(PermissionE permission, Map<String, RoleDO> initRoleMap, String[] roles) {
-        Long permissionId = permission.getId();
-        String level = permission.getLevel();
-        /**
-         * 先根据permission level关联相应层级的管理员角色
-         * level=site -> SITE_ADMINISTRATOR
-         * level=organization -> ORGANIZATION_ADMINISTRATOR
-         * level=project -> PROJECT_ADMINISTRATOR
-         */
-        RoleDO role = getRoleByLevel(initRoleMap, level);
-        if (role != null) {
-            rolePermissionRepository.insert(new RolePermissionE(null, role.getId(), permissionId));
-        }
-        //roles不为空，关联自定义角色
-        processRolePermission(initRoleMap, roles, permissionId);
-    }
-
-    private void processRolePermission(Map<String, RoleDO> initRoleMap, String[] roles, Long permissionId) {
-        if (roles != null) {
-            Set<String> roleSet = new HashSet<>(Arrays.asList(roles));
-            for (String roleCode : roleSet) {
+    /**
+     * 先根据permission level关联相应层级的管理员角色
+     * level=site -> SITE_ADMINISTRATOR
+     * level=organization -> ORGANIZATION_ADMINISTRATOR
+     * level=project -> PROJECT_ADMINISTRATOR
+     * roles不为空，再关联声明的角色
+     */
+    private Set<Long> resolveRoleIds(ParsedPermission parsed, Map<String, RoleDO> initRoleMap) {
+        Set<Long> roleIds = new HashSet<>();
+        RoleDO admin = getRoleByLevel(initRoleMap, parsed.permission.getLevel());
+        if (admin != null) {
+            roleIds.add(admin.getId());
+        }
+        if (parsed.roles != null) {
+            for (String roleCode : new HashSet<>(Arrays.asList(parsed.roles))) {
                 RoleDO role = initRoleMap.get(roleCode);
                 if (role == null) {
                     //找不到code，说明没有初始化进去角色或者角色code拼错了
                     logger.info("can not find the role, role code is : {}", roleCode);
                 } else {
-                    RolePermissionE rp = new RolePermissionE(null, role.getId(), permissionId);
-                    if (rolePermissionRepository.selectOne(rp) == null) {
-                        rolePermissionRepository.insert(rp);
-                    }
+                    roleIds.add(role.getId());
                 }
             }
         }
+        return roleIds;
+    }
+
+    /**
+     * 预置角色中除三个管理员之外的角色，其role_permission由swagger文档维护
+     */
+    private Set<Long> queryDeletableRoleIds(Map<String, RoleDO> initRoleMap) {
+        Set<Long> adminIds = new HashSet<>();
+        for (String code : new String[]{RoleCode.SITE_ADMINISTRATOR, RoleCode.ORGANIZATION_ADMINISTRATOR, RoleCode.PROJECT_ADMINISTRATOR}) {
+            RoleDO admin = initRoleMap.get(code);
+            if (admin != null) {
+                adminIds.add(admin.getId());
+            }
+        }
+        RoleDO example = new RoleDO();
+        example.setBuiltIn(true);
+        Set<Long> roleIds = new HashSet<>();
+        roleRepository.select(example).stream()
+                .map(RoleDO::getId)
+                .filter(id -> !adminIds.contains(id))
+                .forEach(roleIds::add);
+        return roleIds;
+    }
+
+    private boolean samePermission(PermissionDO old, PermissionDO parsed) {
+        return Objects.equals(old.getPath(), parsed.getPath())
+                && Objects.equals(old.getMethod(), parsed.getMethod())
+                && Objects.equals(old.getLevel(), parsed.getLevel())
+                && Objects.equals(old.getDescription(), parsed.getDescription())
+                && Objects.equals(old.getAction(), parsed.getAction())
+                && Objects.equals(old.getResource(), parsed.getResource())
+                && Objects.equals(old.getPublicAccess(), parsed.getPublicAccess())
+                && Objects.equals(old.getLoginAccess(), parsed.getLoginAccess())
+                && Objects.equals(old.getWithin(), parsed.getWithin());
     }
 
     private RoleDO getRoleByLevel(Map<String, RoleDO> initRoleMap, String level) {
@@ -245,4 +339,19 @@ public class ParsePermissionServiceImpl implements ParsePermissionService {
         return map;
     }
 
+    /**
+     * swagger文档中解析出的一个权限及其声明的角色
+     */
+    private static final class ParsedPermission {
+
+        private final PermissionDO permission;
+
+        private final String[] roles;
+
+        private ParsedPermission(PermissionDO permission, String[] roles) {
+            this.permission = permission;
+            this.roles = roles;
+        }
+    }
+
 }
@@ -0,0 +1,154 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.Objects;
+
+import io.choerodon.iam.infra.enums.CacheEventType;
+
+/**
+ * 缓存失效事件，本地通过spring事件分发，跨节点通过kafka广播
+ *
+ * @author superlee
+ */
+public class CacheEvent {
+
+    private CacheEventType type;
+
+    private Long id;
+
+    private String sourceType;
+
+    private Long sourceId;
+
+    private String code;
+
+    /**
+     * 发出事件的节点，收到自己发出的事件时忽略
+     */
+    private String origin;
+
+    public CacheEvent() {
+    }
+
+    public CacheEvent(CacheEventType type, Long id, String sourceType, Long sourceId) {
+        this.type = type;
+        this.id = id;
+        this.sourceType = sourceType;
+        this.sourceId = sourceId;
+    }
+
+    public static CacheEvent permissionChanged() {
+        return new CacheEvent(CacheEventType.PERMISSION_CHANGED, null, null, null);
+    }
+
+    public static CacheEvent rolePermissionChanged(Long roleId) {
+        return new CacheEvent(CacheEventType.ROLE_PERMISSION_CHANGED, roleId, null, null);
+    }
+
+    public static CacheEvent memberRoleChanged(Long userId, String sourceType, Long sourceId) {
+        return new CacheEvent(CacheEventType.MEMBER_ROLE_CHANGED, userId, sourceType, sourceId);
+    }
+
+    public static CacheEvent roleLabelChanged(Long roleId) {
+        return new CacheEvent(CacheEventType.ROLE_LABEL_CHANGED, roleId, null, null);
+    }
+
+    public static CacheEvent userChanged(Long userId) {
+        return new CacheEvent(CacheEventType.USER_CHANGED, userId, null, null);
+    }
+
+    /**
+     * level为null表示所有层级的菜单
+     */
+    public static CacheEvent menuChanged(String level) {
+        return new CacheEvent(CacheEventType.MENU_CHANGED, null, level, null);
+    }
+
+    public static CacheEvent lookupChanged(String code) {
+        CacheEvent event = new CacheEvent(CacheEventType.LOOKUP_CHANGED, null, null, null);
+        event.setCode(code);
+        return event;
+    }
+
+    public static CacheEvent languageChanged() {
+        return new CacheEvent(CacheEventType.LANGUAGE_CHANGED, null, null, null);
+    }
+
+    public static CacheEvent refresh() {
+        return new CacheEvent(CacheEventType.REFRESH, null, null, null);
+    }
+
+    public CacheEventType getType() {
+        return type;
+    }
+
+    public void setType(CacheEventType type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSourceType() {
+        return sourceType;
+    }
+
+    public void setSourceType(String sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    public Long getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheEvent)) {
+            return false;
+        }
+        CacheEvent that = (CacheEvent) o;
+        return type == that.type
+                && Objects.equals(id, that.id)
+                && Objects.equals(sourceType, that.sourceType)
+                && Objects.equals(sourceId, that.sourceId)
+                && Objects.equals(code, that.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, id, sourceType, sourceId, code);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheEvent{type=" + type + ", id=" + id + ", sourceType=" + sourceType
+                + ", sourceId=" + sourceId + ", code=" + code + "}";
+    }
+}
@@ -0,0 +1,108 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 发布缓存失效事件
+ * 事务中发布的事件去重后在提交后统一分发，回滚则丢弃；
+ * 先通过spring事件通知本节点的缓存，再由CacheEventSender广播给其他节点；
+ * 广播可能丢失，各节点定时整体刷新缓存，过期时间不超过一个刷新周期
+ *
+ * @author superlee
+ */
+@Component
+public class CacheEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheEventPublisher.class);
+
+    public static final String TOPIC = "iam-cache-invalidation";
+
+    /**
+     * 当前节点的标识，每次启动生成
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
+    private String nodeId = NODE_ID;
+
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private ObjectProvider<CacheEventSender> cacheEventSender;
+
+    public CacheEventPublisher(ApplicationEventPublisher applicationEventPublisher,
+                               ObjectProvider<CacheEventSender> cacheEventSender) {
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.cacheEventSender = cacheEventSender;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void publish(CacheEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(Collections.singletonList(event));
+            return;
+        }
+        Set<CacheEvent> pending = (Set<CacheEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<CacheEvent> events = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    dispatch(new ArrayList<>(events));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheEventPublisher.this);
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+
+    public void publishAll(Collection<CacheEvent> events) {
+        events.forEach(this::publish);
+    }
+
+    /**
+     * 收到其他节点广播的事件，只通知本节点
+     */
+    public void receive(List<CacheEvent> events) {
+        events.stream()
+                .filter(e -> !nodeId.equals(e.getOrigin()))
+                .forEach(applicationEventPublisher::publishEvent);
+    }
+
+    /**
+     * 定时整体刷新本节点的缓存，每个节点各自执行，不广播
+     */
+    @Scheduled(initialDelayString = "${choerodon.cache.refresh-millis:300000}",
+            fixedDelayString = "${choerodon.cache.refresh-millis:300000}")
+    public void refresh() {
+        applicationEventPublisher.publishEvent(CacheEvent.refresh());
+    }
+
+    private void dispatch(List<CacheEvent> events) {
+        events.forEach(applicationEventPublisher::publishEvent);
+        CacheEventSender sender = cacheEventSender.getIfAvailable();
+        if (sender == null) {
+            return;
+        }
+        events.forEach(e -> e.setOrigin(nodeId));
+        try {
+            sender.send(events);
+        } catch (Exception e) {
+            //事务已经提交，广播失败只记录日志，其他节点的缓存在下次定时刷新时更新
+            logger.warn("send cache events failed, events: {}, exception: {}", events, e.getMessage());
+        }
+    }
+}
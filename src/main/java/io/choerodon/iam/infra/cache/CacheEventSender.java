@@ -0,0 +1,13 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.List;
+
+/**
+ * 把缓存失效事件广播给其他节点，未配置时只在本节点生效
+ *
+ * @author superlee
+ */
+public interface CacheEventSender {
+
+    void send(List<CacheEvent> events);
+}
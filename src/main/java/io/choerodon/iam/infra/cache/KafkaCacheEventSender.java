@@ -0,0 +1,34 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 通过kafka topic广播缓存失效事件，一条消息包含一个事务内的全部事件
+ *
+ * @author superlee
+ */
+public class KafkaCacheEventSender implements CacheEventSender {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    public KafkaCacheEventSender(KafkaTemplate<String, String> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public void send(List<CacheEvent> events) {
+        try {
+            kafkaTemplate.send(CacheEventPublisher.TOPIC, objectMapper.writeValueAsString(events));
+        } catch (JsonProcessingException e) {
+            throw new CommonException("error.cache.event.serialize", e);
+        }
+    }
+}
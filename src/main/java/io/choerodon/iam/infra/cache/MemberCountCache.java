@@ -0,0 +1,109 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO;
+import io.choerodon.iam.infra.common.utils.ParamUtils;
+import io.choerodon.iam.infra.mapper.UserMapper;
+
+/**
+ * 某层级下拥有角色的用户数的近似计数，供游标分页按需返回总数
+ * 分配或删除角色时由MEMBER_ROLE_CHANGED事件失效对应的source，用户和角色名称的变化只靠过期时间兜底
+ *
+ * @author superlee
+ */
+@Component
+public class MemberCountCache {
+
+    private static final long EXPIRE_MILLIS = 60 * 1000L;
+
+    /**
+     * 缓存的source数量上限，超过后整体丢弃
+     */
+    private static final int MAX_SOURCES = 4096;
+
+    /**
+     * 每个source缓存的搜索条件数量上限，写入时先清理过期的条件，仍然超过则丢弃该source的所有条件
+     */
+    private static final int MAX_FILTERS = 64;
+
+    private UserMapper userMapper;
+
+    private final Map<String, Map<List<String>, Entry>> counts = new ConcurrentHashMap<>();
+
+    public MemberCountCache(UserMapper userMapper) {
+        this.userMapper = userMapper;
+    }
+
+    /**
+     * 与UserMapper.selectCountUsers语义一致，结果最多延迟EXPIRE_MILLIS
+     */
+    public int countUsers(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId, String sourceType) {
+        String param = roleAssignmentSearchDTO == null ? null : ParamUtils.arrToStr(roleAssignmentSearchDTO.getParam());
+        List<String> filter = filterKey(roleAssignmentSearchDTO, param);
+        String source = sourceKey(sourceType, sourceId);
+        long now = System.currentTimeMillis();
+        Map<List<String>, Entry> bySource = counts.get(source);
+        Entry entry = bySource == null ? null : bySource.get(filter);
+        if (entry != null && entry.expireAt > now) {
+            return entry.count;
+        }
+        int count = userMapper.selectCountUsers(roleAssignmentSearchDTO, sourceId, sourceType, param);
+        if (counts.size() >= MAX_SOURCES) {
+            counts.clear();
+        }
+        bySource = counts.computeIfAbsent(source, k -> new ConcurrentHashMap<>());
+        if (bySource.size() >= MAX_FILTERS && !bySource.containsKey(filter)) {
+            bySource.values().removeIf(e -> e.expireAt <= now);
+            if (bySource.size() >= MAX_FILTERS) {
+                bySource.clear();
+            }
+        }
+        bySource.put(filter, new Entry(count, now + EXPIRE_MILLIS));
+        return count;
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case MEMBER_ROLE_CHANGED:
+                if (event.getSourceType() == null) {
+                    counts.clear();
+                } else {
+                    counts.remove(sourceKey(event.getSourceType(), event.getSourceId()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String sourceKey(String sourceType, Long sourceId) {
+        return sourceType + ":" + sourceId;
+    }
+
+    private static List<String> filterKey(RoleAssignmentSearchDTO roleAssignmentSearchDTO, String param) {
+        if (roleAssignmentSearchDTO == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(roleAssignmentSearchDTO.getLoginName(), roleAssignmentSearchDTO.getRealName(),
+                roleAssignmentSearchDTO.getRoleName(), param);
+    }
+
+    private static class Entry {
+        private final int count;
+        private final long expireAt;
+
+        Entry(int count, long expireAt) {
+            this.count = count;
+            this.expireAt = expireAt;
+        }
+    }
+}
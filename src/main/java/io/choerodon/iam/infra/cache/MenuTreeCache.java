@@ -0,0 +1,160 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.api.dto.MenuDTO;
+import io.choerodon.iam.infra.dataobject.MenuDO;
+import io.choerodon.iam.infra.dataobject.PermissionDO;
+import io.choerodon.iam.infra.mapper.MenuMapper;
+import io.choerodon.mybatis.helper.LanguageHelper;
+
+/**
+ * 每个层级、每种语言的菜单及其权限code的快照，用户可见的菜单由快照与PermissionIndex的权限求交得到
+ * menu和menu_permission变化时丢弃快照，role_permission和member_role的变化由PermissionIndex维护
+ *
+ * @author superlee
+ */
+@Component
+public class MenuTreeCache {
+
+    private static final String[] IGNORE_PROPERTIES = {"subMenus", "permissions"};
+
+    private static final String ALL_LEVELS = "";
+
+    private MenuMapper menuMapper;
+
+    private PermissionIndex permissionIndex;
+
+    /**
+     * key为层级:语言，菜单名称是多语言的
+     */
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 每个层级的版本号，该层级菜单变化时递增，空字符串表示所有层级
+     */
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public MenuTreeCache(MenuMapper menuMapper, PermissionIndex permissionIndex) {
+        this.menuMapper = menuMapper;
+        this.permissionIndex = permissionIndex;
+    }
+
+    /**
+     * 用户可见的菜单列表，语义与MenuMapper.queryMenusWithPermissionByTestPermission一致：
+     * 菜单的任一权限通过校验，或菜单类型为root/dir
+     *
+     * @return 新创建的MenuDTO，调用方可以修改
+     */
+    public List<MenuDTO> listMenus(String level, Long memberId, String sourceType, Long sourceId) {
+        Snapshot snapshot = snapshotOf(level);
+        Predicate<String> filter = permissionIndex.menuPermissionFilter(memberId, sourceType, sourceId);
+        List<MenuDTO> menus = new ArrayList<>();
+        for (Entry entry : snapshot.entries) {
+            if (entry.directory || Arrays.stream(entry.permissionCodes).anyMatch(filter)) {
+                MenuDTO menuDTO = new MenuDTO();
+                BeanUtils.copyProperties(entry.menu, menuDTO, IGNORE_PROPERTIES);
+                menuDTO.setPermissions(new ArrayList<>());
+                menus.add(menuDTO);
+            }
+        }
+        return menus;
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case MENU_CHANGED:
+                if (event.getSourceType() == null) {
+                    invalidateAll();
+                } else {
+                    //所有层级的快照包含该层级的菜单
+                    invalidate(event.getSourceType());
+                    invalidate(ALL_LEVELS);
+                }
+                break;
+            case PERMISSION_CHANGED:
+            case REFRESH:
+                invalidateAll();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void invalidate(String level) {
+        versionOf(level).incrementAndGet();
+        String prefix = level + ":";
+        snapshots.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void invalidateAll() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        snapshots.clear();
+    }
+
+    private AtomicLong versionOf(String level) {
+        return versions.computeIfAbsent(level, k -> new AtomicLong());
+    }
+
+    private Snapshot snapshotOf(String level) {
+        String levelKey = level == null ? ALL_LEVELS : level;
+        AtomicLong version = versionOf(levelKey);
+        String key = levelKey + ":" + LanguageHelper.language();
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.version == version.get()) {
+            return snapshot;
+        }
+        long stamp = version.get();
+        List<Entry> entries = new ArrayList<>();
+        for (MenuDO menu : menuMapper.queryMenusWithPermissions(level, null)) {
+            entries.add(new Entry(menu));
+        }
+        snapshot = new Snapshot(stamp, Collections.unmodifiableList(entries));
+        //加载期间菜单发生变化则不缓存，下次重新加载
+        if (version.get() == stamp) {
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+
+        private final List<Entry> entries;
+
+        private Snapshot(long version, List<Entry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Entry {
+
+        private final MenuDO menu;
+
+        private final boolean directory;
+
+        private final String[] permissionCodes;
+
+        private Entry(MenuDO menu) {
+            this.menu = menu;
+            this.directory = "root".equals(menu.getType()) || "dir".equals(menu.getType());
+            List<PermissionDO> permissions = menu.getPermissions() == null ? Collections.emptyList() : menu.getPermissions();
+            this.permissionCodes = permissions.stream()
+                    .map(PermissionDO::getCode)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toArray(String[]::new);
+            menu.setPermissions(null);
+        }
+    }
+}
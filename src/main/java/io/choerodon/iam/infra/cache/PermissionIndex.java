@@ -0,0 +1,372 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.infra.dataobject.MemberRoleDO;
+import io.choerodon.iam.infra.dataobject.PermissionDO;
+import io.choerodon.iam.infra.dataobject.RoleDO;
+import io.choerodon.iam.infra.dataobject.RolePermissionDO;
+import io.choerodon.iam.infra.mapper.MemberRoleMapper;
+import io.choerodon.iam.infra.mapper.PermissionMapper;
+import io.choerodon.iam.infra.mapper.RoleMapper;
+import io.choerodon.iam.infra.mapper.RolePermissionMapper;
+
+/**
+ * checkPermission的内存索引，语义与PermissionMapper.checkPermission一致
+ * 权限code映射为连续的int id，每个启用的角色对应一个BitSet，
+ * 用户的角色按(sourceType, sourceId)懒加载缓存
+ * 写操作通过CacheEventPublisher发布事件，各节点在事务提交后维护自己的索引，并定时整体重建
+ *
+ * @author superlee
+ */
+@Component
+public class PermissionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionIndex.class);
+
+    private static final String MEMBER_TYPE_USER = "user";
+
+    /**
+     * 缓存的用户数上限，超过后整体清空重新加载
+     */
+    private static final int MAX_CACHED_MEMBERS = 20000;
+
+    private PermissionMapper permissionMapper;
+
+    private RolePermissionMapper rolePermissionMapper;
+
+    private RoleMapper roleMapper;
+
+    private MemberRoleMapper memberRoleMapper;
+
+    private volatile Snapshot snapshot;
+
+    private final Map<Long, Map<String, long[]>> memberRoles = new ConcurrentHashMap<>();
+
+    /**
+     * 每次失效都递增，加载期间若发生失效则不写入缓存，避免旧数据覆盖
+     */
+    private final AtomicLong structureStamp = new AtomicLong();
+
+    private final AtomicLong memberStamp = new AtomicLong();
+
+    public PermissionIndex(PermissionMapper permissionMapper,
+                           RolePermissionMapper rolePermissionMapper,
+                           RoleMapper roleMapper,
+                           MemberRoleMapper memberRoleMapper) {
+        this.permissionMapper = permissionMapper;
+        this.rolePermissionMapper = rolePermissionMapper;
+        this.roleMapper = roleMapper;
+        this.memberRoleMapper = memberRoleMapper;
+    }
+
+    /**
+     * 返回codes中用户在该source下拥有的权限code
+     *
+     * @param memberId   用户id
+     * @param sourceType site/organization/project
+     * @param sourceId   site层为0
+     * @param codes      待校验的权限code
+     * @return 通过校验的code
+     */
+    public Set<String> checkPermission(Long memberId, String sourceType, Long sourceId, Set<String> codes) {
+        Set<String> approved = new HashSet<>();
+        if (codes == null || codes.isEmpty()) {
+            return approved;
+        }
+        Snapshot current = currentSnapshot();
+        long[] roleIds = rolesOf(memberId).get(sourceKey(sourceType, sourceId));
+        BitSet granted = current.grantedBy(roleIds, sourceType);
+        for (String code : codes) {
+            Integer index = current.codeIds.get(code);
+            if (index != null && (current.openPermissions.get(index) || granted.get(index))) {
+                approved.add(code);
+            }
+        }
+        return approved;
+    }
+
+    /**
+     * 菜单可见性的权限过滤，语义与MenuMapper.queryMenusWithPermissionByTestPermission一致：
+     * 不区分权限层级，用户在source下启用角色的权限以及public/login权限均通过
+     *
+     * @param memberId   用户id
+     * @param sourceType 为null时只按sourceId匹配用户的角色
+     * @param sourceId   sourceType和sourceId都为null时匹配用户的所有角色
+     */
+    public Predicate<String> menuPermissionFilter(Long memberId, String sourceType, Long sourceId) {
+        Snapshot current = currentSnapshot();
+        BitSet granted = (BitSet) current.openPermissions.clone();
+        for (Map.Entry<String, long[]> entry : rolesOf(memberId).entrySet()) {
+            if (matchSource(entry.getKey(), sourceType, sourceId)) {
+                for (long roleId : entry.getValue()) {
+                    BitSet bits = current.rolePermissions.get(roleId);
+                    if (bits != null) {
+                        granted.or(bits);
+                    }
+                }
+            }
+        }
+        return code -> {
+            Integer index = current.codeIds.get(code);
+            return index != null && granted.get(index);
+        };
+    }
+
+    /**
+     * 全部权限code的集合，permission表变化后重建，不查库
+     */
+    public boolean containsCode(String code) {
+        return currentSnapshot().codeIds.containsKey(code);
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case MEMBER_ROLE_CHANGED:
+                evictMember(event.getId());
+                break;
+            case ROLE_PERMISSION_CHANGED:
+                refreshRole(event.getId());
+                break;
+            case PERMISSION_CHANGED:
+                invalidatePermissions();
+                break;
+            case REFRESH:
+                rebuild();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 用户的member_role发生变化
+     */
+    private void evictMember(Long memberId) {
+        memberStamp.incrementAndGet();
+        memberRoles.remove(memberId);
+    }
+
+    /**
+     * 角色的role_permission或启用状态发生变化，只重建该角色的BitSet
+     */
+    private synchronized void refreshRole(Long roleId) {
+        structureStamp.incrementAndGet();
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.withRole(roleId, loadRolePermissionIds(roleId));
+        }
+    }
+
+    /**
+     * permission表发生变化，下次校验时整体重建
+     */
+    private synchronized void invalidatePermissions() {
+        structureStamp.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * 定时刷新，清空用户的角色并在刷新线程中重建快照，未使用过的索引不加载
+     * 重建期间结构发生变化则丢弃快照，下次校验时重新加载
+     */
+    private void rebuild() {
+        memberStamp.incrementAndGet();
+        memberRoles.clear();
+        if (snapshot == null) {
+            return;
+        }
+        long stamp = structureStamp.get();
+        Snapshot loaded = loadSnapshot();
+        synchronized (this) {
+            snapshot = structureStamp.get() == stamp ? loaded : null;
+        }
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                long stamp = structureStamp.get();
+                long begin = System.currentTimeMillis();
+                Snapshot loaded = loadSnapshot();
+                logger.info("permission index built, permissions: {}, roles: {}, cost {} millisecond",
+                        loaded.codeIds.size(), loaded.rolePermissions.size(), System.currentTimeMillis() - begin);
+                if (structureStamp.get() != stamp) {
+                    return loaded;
+                }
+                snapshot = loaded;
+            }
+            return snapshot;
+        }
+    }
+
+    private Map<String, long[]> rolesOf(Long memberId) {
+        Map<String, long[]> roles = memberRoles.get(memberId);
+        if (roles != null) {
+            return roles;
+        }
+        long stamp = memberStamp.get();
+        MemberRoleDO example = new MemberRoleDO();
+        example.setMemberId(memberId);
+        example.setMemberType(MEMBER_TYPE_USER);
+        Map<String, List<Long>> grouped = new HashMap<>();
+        memberRoleMapper.select(example).forEach(mr ->
+                grouped.computeIfAbsent(sourceKey(mr.getSourceType(), mr.getSourceId()), k -> new ArrayList<>())
+                        .add(mr.getRoleId()));
+        roles = new HashMap<>(grouped.size());
+        for (Map.Entry<String, List<Long>> entry : grouped.entrySet()) {
+            roles.put(entry.getKey(), entry.getValue().stream().mapToLong(Long::longValue).toArray());
+        }
+        if (memberStamp.get() == stamp) {
+            if (memberRoles.size() >= MAX_CACHED_MEMBERS) {
+                memberRoles.clear();
+            }
+            memberRoles.put(memberId, roles);
+        }
+        return roles;
+    }
+
+    private Snapshot loadSnapshot() {
+        Map<String, Integer> codeIds = new HashMap<>();
+        Map<Long, Integer> permissionIds = new HashMap<>();
+        Map<String, BitSet> levelPermissions = new HashMap<>();
+        BitSet publicOrLogin = new BitSet();
+        for (PermissionDO permission : permissionMapper.selectAll()) {
+            int index = codeIds.size();
+            codeIds.put(permission.getCode(), index);
+            permissionIds.put(permission.getId(), index);
+            if (permission.getLevel() != null) {
+                levelPermissions.computeIfAbsent(permission.getLevel(), k -> new BitSet()).set(index);
+            }
+            if (Boolean.TRUE.equals(permission.getPublicAccess()) || Boolean.TRUE.equals(permission.getLoginAccess())) {
+                publicOrLogin.set(index);
+            }
+        }
+        Set<Long> enabledRoles = new HashSet<>();
+        roleMapper.selectAll().stream()
+                .filter(r -> Boolean.TRUE.equals(r.getEnabled()))
+                .map(RoleDO::getId)
+                .forEach(enabledRoles::add);
+        Map<Long, BitSet> rolePermissions = new HashMap<>();
+        for (RolePermissionDO rp : rolePermissionMapper.selectAll()) {
+            Integer index = permissionIds.get(rp.getPermissionId());
+            if (index != null && enabledRoles.contains(rp.getRoleId())) {
+                rolePermissions.computeIfAbsent(rp.getRoleId(), k -> new BitSet()).set(index);
+            }
+        }
+        return new Snapshot(codeIds, permissionIds, levelPermissions, publicOrLogin, rolePermissions);
+    }
+
+    /**
+     * 角色不存在或已禁用时返回null
+     */
+    private List<Long> loadRolePermissionIds(Long roleId) {
+        RoleDO role = roleMapper.selectByPrimaryKey(roleId);
+        if (role == null || !Boolean.TRUE.equals(role.getEnabled())) {
+            return null;
+        }
+        RolePermissionDO example = new RolePermissionDO();
+        example.setRoleId(roleId);
+        List<Long> permissionIds = new ArrayList<>();
+        rolePermissionMapper.select(example).forEach(rp -> permissionIds.add(rp.getPermissionId()));
+        return permissionIds;
+    }
+
+    private static String sourceKey(String sourceType, Long sourceId) {
+        return sourceType + ":" + sourceId;
+    }
+
+    private static boolean matchSource(String key, String sourceType, Long sourceId) {
+        if (sourceType != null) {
+            return sourceId != null && key.equals(sourceKey(sourceType, sourceId));
+        }
+        return sourceId == null || key.endsWith(":" + sourceId);
+    }
+
+    /**
+     * 不可变的权限结构快照，角色变化时复制一份替换
+     */
+    private static final class Snapshot {
+
+        private static final BitSet EMPTY = new BitSet();
+
+        private final Map<String, Integer> codeIds;
+
+        private final Map<Long, Integer> permissionIds;
+
+        private final Map<String, BitSet> levelPermissions;
+
+        private final BitSet publicOrLogin;
+
+        private final Map<Long, BitSet> rolePermissions;
+
+        /**
+         * public或login的权限，只要关联了任一启用的角色即通过校验
+         */
+        private final BitSet openPermissions;
+
+        private Snapshot(Map<String, Integer> codeIds, Map<Long, Integer> permissionIds,
+                         Map<String, BitSet> levelPermissions, BitSet publicOrLogin,
+                         Map<Long, BitSet> rolePermissions) {
+            this.codeIds = codeIds;
+            this.permissionIds = permissionIds;
+            this.levelPermissions = levelPermissions;
+            this.publicOrLogin = publicOrLogin;
+            this.rolePermissions = rolePermissions;
+            BitSet open = new BitSet();
+            rolePermissions.values().forEach(open::or);
+            open.and(publicOrLogin);
+            this.openPermissions = open;
+        }
+
+        private BitSet grantedBy(long[] roleIds, String level) {
+            BitSet levelBits = levelPermissions.get(level);
+            if (roleIds == null || levelBits == null) {
+                return EMPTY;
+            }
+            BitSet granted = new BitSet();
+            for (long roleId : roleIds) {
+                BitSet bits = rolePermissions.get(roleId);
+                if (bits != null) {
+                    granted.or(bits);
+                }
+            }
+            granted.and(levelBits);
+            return granted;
+        }
+
+        /**
+         * 未知的permission id说明permission表有新数据，返回null触发整体重建
+         */
+        private Snapshot withRole(Long roleId, List<Long> rolePermissionIds) {
+            Map<Long, BitSet> roles = new HashMap<>(rolePermissions);
+            if (rolePermissionIds == null) {
+                roles.remove(roleId);
+            } else {
+                BitSet bits = new BitSet();
+                for (Long permissionId : rolePermissionIds) {
+                    Integer index = permissionIds.get(permissionId);
+                    if (index == null) {
+                        return null;
+                    }
+                    bits.set(index);
+                }
+                roles.put(roleId, bits);
+            }
+            return new Snapshot(codeIds, permissionIds, levelPermissions, publicOrLogin, roles);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.mybatis.helper.LanguageHelper;
+
+/**
+ * 读多写少的接口的ETag，取响应内容的md5，内容相同的节点之间以及重启前后ETag一致
+ * 计算过的ETag按接口缓存，由缓存失效事件清除，命中时不查询也不序列化响应
+ *
+ * @author superlee
+ */
+@Component
+public class ResponseVersions {
+
+    private static final String MENU = "menu:";
+
+    private static final String LOOKUP = "lookup:";
+
+    private static final String LANGUAGE = "language";
+
+    /**
+     * 缓存的ETag数量上限，按用户的菜单树较多，超过后整体清空
+     */
+    private static final int MAX_ETAGS = 10000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, String> eTags = new ConcurrentHashMap<>();
+
+    /**
+     * 每次失效递增，计算期间发生失效的ETag不缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public static String menuTreeKey(String level, boolean testPermission, Long userId) {
+        return MENU + level + ":" + (testPermission ? userId : "all");
+    }
+
+    public static String lookupKey(String code) {
+        return LOOKUP + code;
+    }
+
+    public static String languageKey() {
+        return LANGUAGE;
+    }
+
+    /**
+     * 缓存的ETag与请求一致时返回null，由WebRequest写入304；否则查询响应并按内容计算ETag
+     *
+     * @param key  menuTreeKey、lookupKey或languageKey
+     * @param body 查询响应内容
+     */
+    public <T> ResponseEntity<T> conditional(WebRequest request, String key, Supplier<T> body) {
+        String cacheKey = key + ":" + LanguageHelper.language();
+        String eTag = eTags.get(cacheKey);
+        if (eTag != null) {
+            //不一致时ETag响应头已经写入，直接返回响应
+            return request.checkNotModified(eTag) ? null : new ResponseEntity<>(body.get(), HttpStatus.OK);
+        }
+        long current = generation.get();
+        T value = body.get();
+        eTag = eTag(value);
+        if (generation.get() == current) {
+            if (eTags.size() >= MAX_ETAGS) {
+                eTags.clear();
+            }
+            eTags.put(cacheKey, eTag);
+        }
+        return request.checkNotModified(eTag) ? null : new ResponseEntity<>(value, HttpStatus.OK);
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case MENU_CHANGED:
+                evict(event.getSourceType() == null ? MENU : MENU + event.getSourceType() + ":");
+                break;
+            case PERMISSION_CHANGED:
+                //菜单树中带有权限
+                evict(MENU);
+                break;
+            case ROLE_PERMISSION_CHANGED:
+            case MEMBER_ROLE_CHANGED:
+                //按用户过滤的菜单树
+                generation.incrementAndGet();
+                eTags.keySet().removeIf(key -> key.startsWith(MENU) && !key.contains(":all:"));
+                break;
+            case LOOKUP_CHANGED:
+                evict(LOOKUP + event.getCode() + ":");
+                break;
+            case LANGUAGE_CHANGED:
+                evict(LANGUAGE + ":");
+                break;
+            case REFRESH:
+                generation.incrementAndGet();
+                eTags.clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evict(String prefix) {
+        generation.incrementAndGet();
+        eTags.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private String eTag(Object value) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(value)) + "\"";
+        } catch (JsonProcessingException e) {
+            throw new CommonException("error.response.serialize", e);
+        }
+    }
+}
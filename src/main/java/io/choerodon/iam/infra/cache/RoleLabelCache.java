@@ -0,0 +1,103 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.infra.mapper.LabelMapper;
+
+/**
+ * 角色id到label名称的缓存，用于构造member_role相关的saga消息
+ * role_label只在编辑或删除角色时变化，由ROLE_LABEL_CHANGED事件失效，定时刷新时整体清空
+ *
+ * @author superlee
+ */
+@Component
+public class RoleLabelCache {
+
+    /**
+     * 角色组合的并集缓存上限，超过后整体丢弃
+     */
+    private static final int MAX_UNIONS = 1024;
+
+    private LabelMapper labelMapper;
+
+    private final Map<Long, Set<String>> labelsByRole = new ConcurrentHashMap<>();
+
+    private final Map<Set<Long>, Set<String>> unions = new ConcurrentHashMap<>();
+
+    /**
+     * 每次失效递增，加载期间发生失效的结果不放入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public RoleLabelCache(LabelMapper labelMapper) {
+        this.labelMapper = labelMapper;
+    }
+
+    /**
+     * 角色集合拥有的所有label名称，语义与LabelMapper.selectLabelNamesInRoleIds一致
+     *
+     * @return 新创建的集合，调用方可以修改
+     */
+    public Set<String> labelNames(Collection<Long> roleIds) {
+        if (roleIds == null || roleIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<Long> key = Collections.unmodifiableSet(new HashSet<>(roleIds));
+        Set<String> union = unions.get(key);
+        if (union == null) {
+            long current = generation.get();
+            Set<String> names = new HashSet<>();
+            key.forEach(roleId -> names.addAll(labelsOf(roleId, current)));
+            union = Collections.unmodifiableSet(names);
+            if (unions.size() >= MAX_UNIONS) {
+                unions.clear();
+            }
+            if (generation.get() == current) {
+                unions.put(key, union);
+            }
+        }
+        return new HashSet<>(union);
+    }
+
+    private Set<String> labelsOf(Long roleId, long current) {
+        Set<String> labels = labelsByRole.get(roleId);
+        if (labels == null) {
+            labels = Collections.unmodifiableSet(
+                    new HashSet<>(labelMapper.selectLabelNamesInRoleIds(Collections.singletonList(roleId))));
+            if (generation.get() == current) {
+                labelsByRole.put(roleId, labels);
+            }
+        }
+        return labels;
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case ROLE_LABEL_CHANGED:
+                evictRole(event.getId());
+                break;
+            case REFRESH:
+                evictRole(null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evictRole(Long roleId) {
+        generation.incrementAndGet();
+        if (roleId == null) {
+            labelsByRole.clear();
+            unions.clear();
+        } else {
+            labelsByRole.remove(roleId);
+            unions.keySet().removeIf(key -> key.contains(roleId));
+        }
+    }
+}
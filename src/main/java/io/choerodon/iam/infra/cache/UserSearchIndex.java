@@ -0,0 +1,273 @@
+package io.choerodon.iam.infra.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
+import io.choerodon.iam.infra.dataobject.UserDO;
+import io.choerodon.iam.infra.mapper.UserMapper;
+
+/**
+ * 用户login_name、email、real_name的三元组倒排索引，用来代替LIKE '%x%'的全表扫描
+ * 启动后在后台加载，加载完成前、条件不足三个字符或包含LIKE通配符时返回null，调用方回退到SQL
+ * 用户变化通过USER_CHANGED事件标记，下次查询前从库里重新加载
+ *
+ * @author superlee
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    /**
+     * 命中的用户超过该数量时回退到SQL，避免过长的IN列表
+     */
+    private static final int MAX_CANDIDATES = 999;
+
+    private static final int GRAM = 3;
+
+    public enum Field {
+        LOGIN_NAME, EMAIL, REAL_NAME
+    }
+
+    private UserMapper userMapper;
+
+    @Value("${choerodon.user.search.index.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean ready;
+
+    /**
+     * 用户id到小写的[login_name, email, real_name]
+     */
+    private final Map<Long, String[]> documents = new HashMap<>();
+
+    /**
+     * 三元组到用户id，用户更新时只追加不删除，查询时用documents校验
+     */
+    private final Map<Long, Posting> postings = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private long stale;
+
+    public UserSearchIndex(UserMapper userMapper) {
+        this.userMapper = userMapper;
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (enabled) {
+            Thread loader = new Thread(this::load, "user-search-index");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    void load() {
+        long begin = System.currentTimeMillis();
+        try {
+            List<UserDO> batch = new ArrayList<>();
+            userMapper.selectSearchFields(context -> {
+                batch.add(context.getResultObject());
+                if (batch.size() >= 1000) {
+                    putAll(batch);
+                    batch.clear();
+                }
+            });
+            putAll(batch);
+            ready = true;
+            LOGGER.info("user search index loaded {} users in {} millisecond",
+                    documents.size(), System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            LOGGER.warn("load user search index failed, fulltext search falls back to sql", e);
+        }
+    }
+
+    /**
+     * 按包含语义查询用户，所有条件之间为与的关系，大小写不敏感
+     *
+     * @param conditions  字段必须包含对应的值
+     * @param param       paramFields中任一字段包含param即可，为null表示没有该条件
+     * @param paramFields param匹配的字段
+     * @return 满足条件的用户id，返回null表示索引无法处理，需要走SQL
+     */
+    public List<Long> search(Map<Field, String> conditions, String param, Set<Field> paramFields) {
+        if (!ready) {
+            return null;
+        }
+        Map<Field, String> musts = new EnumMap<>(Field.class);
+        conditions.forEach((field, value) -> {
+            if (value != null) {
+                musts.put(field, value.toLowerCase());
+            }
+        });
+        String any = param == null ? null : param.toLowerCase();
+        List<String> values = new ArrayList<>(musts.values());
+        if (any != null) {
+            values.add(any);
+        }
+        //SQL的LIKE中_和%为通配符，包含通配符的条件交给SQL处理，两种方式的结果保持一致
+        if (values.stream().noneMatch(s -> s.length() >= GRAM) || values.stream().anyMatch(UserSearchIndex::hasWildcard)) {
+            return null;
+        }
+        refreshDirty();
+        lock.readLock().lock();
+        try {
+            Posting smallest = null;
+            for (String value : values) {
+                for (long key : grams(value)) {
+                    Posting posting = postings.get(key);
+                    if (posting == null) {
+                        return new ArrayList<>();
+                    }
+                    if (smallest == null || posting.size < smallest.size) {
+                        smallest = posting;
+                    }
+                }
+            }
+            Set<Long> matched = new TreeSet<>();
+            for (int i = 0; i < smallest.size; i++) {
+                long id = smallest.ids[i];
+                String[] document = documents.get(id);
+                if (document != null && matches(document, musts, any, paramFields) && matched.add(id)
+                        && matched.size() > MAX_CANDIDATES) {
+                    return null;
+                }
+            }
+            return new ArrayList<>(matched);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onCacheEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case USER_CHANGED:
+                dirty.add(event.getId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void refreshDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(dirty);
+        dirty.removeAll(ids);
+        for (List<Long> batch : CollectionUtils.subList(ids, 999)) {
+            List<UserDO> users = userMapper.listUsersByIds(batch.toArray(new Long[0]));
+            lock.writeLock().lock();
+            try {
+                Set<Long> found = new HashSet<>();
+                users.forEach(user -> found.add(user.getId()));
+                batch.stream().filter(id -> !found.contains(id)).forEach(id -> {
+                    if (documents.remove(id) != null) {
+                        stale++;
+                    }
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            putAll(users);
+        }
+    }
+
+    private void putAll(List<UserDO> users) {
+        lock.writeLock().lock();
+        try {
+            for (UserDO user : users) {
+                String[] document = {lower(user.getLoginName()), lower(user.getEmail()), lower(user.getRealName())};
+                String[] old = documents.put(user.getId(), document);
+                if (old != null) {
+                    if (Arrays.equals(old, document)) {
+                        continue;
+                    }
+                    stale++;
+                }
+                Set<Long> keys = new HashSet<>();
+                for (String value : document) {
+                    keys.addAll(grams(value));
+                }
+                keys.forEach(key -> postings.computeIfAbsent(key, k -> new Posting()).add(user.getId()));
+            }
+            //更新累积的无效记录过多时在内存中重建
+            if (stale > documents.size() / 5 + 1000) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuild() {
+        postings.clear();
+        documents.forEach((id, document) -> {
+            Set<Long> keys = new HashSet<>();
+            for (String value : document) {
+                keys.addAll(grams(value));
+            }
+            keys.forEach(key -> postings.computeIfAbsent(key, k -> new Posting()).add(id));
+        });
+        stale = 0;
+    }
+
+    private boolean matches(String[] document, Map<Field, String> musts, String any, Set<Field> paramFields) {
+        for (Map.Entry<Field, String> entry : musts.entrySet()) {
+            if (!document[entry.getKey().ordinal()].contains(entry.getValue())) {
+                return false;
+            }
+        }
+        if (any == null) {
+            return true;
+        }
+        for (Field field : paramFields) {
+            if (document[field.ordinal()].contains(any)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Long> grams(String value) {
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            keys.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+        return keys;
+    }
+
+    private static boolean hasWildcard(String value) {
+        return value.indexOf('_') >= 0 || value.indexOf('%') >= 0;
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase();
+    }
+
+    private static class Posting {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
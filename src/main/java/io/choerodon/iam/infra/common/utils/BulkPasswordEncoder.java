@@ -0,0 +1,120 @@
+package io.choerodon.iam.infra.common.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.iam.infra.dataobject.UserDO;
+
+/**
+ * 批量创建用户时的密码加密
+ * BCrypt在独立的password-hash-executor中执行，不占用公共的ForkJoinPool
+ * 默认密码等常量只加密一次，之后复用同一个密文
+ *
+ * @author superlee
+ */
+@Component
+public class BulkPasswordEncoder implements PublicMetrics {
+
+    /**
+     * excel导入时密码为空的用户使用的默认密码
+     */
+    public static final String DEFAULT_PASSWORD = "abcd1234";
+
+    /**
+     * ldap用户在ldap中认证，数据库中只放一个占位密码
+     */
+    public static final String LDAP_PASSWORD = "unknown password";
+
+    private static final Set<String> CONSTANTS = new HashSet<>(Arrays.asList(DEFAULT_PASSWORD, LDAP_PASSWORD));
+
+    private static final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private final Map<String, String> placeholders = new ConcurrentHashMap<>();
+
+    private final AtomicLong encoded = new AtomicLong();
+
+    private final AtomicLong placeholderHits = new AtomicLong();
+
+    private final AtomicLong encodeNanos = new AtomicLong();
+
+    public BulkPasswordEncoder(@Qualifier("password-hash-executor") ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 常量密码的密文，同一个常量始终返回同一个密文
+     *
+     * @param rawPassword 只能是DEFAULT_PASSWORD或LDAP_PASSWORD
+     */
+    public String placeholder(String rawPassword) {
+        if (!CONSTANTS.contains(rawPassword)) {
+            throw new IllegalArgumentException("not a constant password");
+        }
+        placeholderHits.incrementAndGet();
+        return placeholders.computeIfAbsent(rawPassword, ENCODER::encode);
+    }
+
+    /**
+     * 把用户的明文密码替换为密文，密码为空的使用默认密码
+     * 按线程池大小切分后并行加密，调用线程等待全部完成
+     */
+    public void encode(List<UserDO> users) {
+        List<UserDO> plains = new ArrayList<>();
+        for (UserDO user : users) {
+            if (StringUtils.isEmpty(user.getPassword())) {
+                user.setPassword(placeholder(DEFAULT_PASSWORD));
+            } else {
+                plains.add(user);
+            }
+        }
+        if (plains.isEmpty()) {
+            return;
+        }
+        long begin = System.nanoTime();
+        int volume = (plains.size() + executor.getMaxPoolSize() - 1) / executor.getMaxPoolSize();
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<UserDO> slice : CollectionUtils.subList(plains, volume)) {
+            futures.add(executor.submit(() -> slice.forEach(user -> user.setPassword(ENCODER.encode(user.getPassword())))));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("error.password.encode", e);
+        } catch (ExecutionException e) {
+            throw new CommonException("error.password.encode", e.getCause());
+        }
+        encoded.addAndGet(plains.size());
+        encodeNanos.addAndGet(System.nanoTime() - begin);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long count = encoded.get();
+        long nanos = encodeNanos.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("password.hash.count", count));
+        metrics.add(new Metric<>("password.hash.placeholder.hits", placeholderHits.get()));
+        metrics.add(new Metric<>("password.hash.rate", nanos == 0 ? 0 : count * 1000000000L / nanos));
+        metrics.add(new Metric<>("password.hash.pool.size", executor.getMaxPoolSize()));
+        metrics.add(new Metric<>("password.hash.pool.active", executor.getActiveCount()));
+        metrics.add(new Metric<>("password.hash.queue.depth", executor.getThreadPoolExecutor().getQueue().size()));
+        return metrics;
+    }
+}
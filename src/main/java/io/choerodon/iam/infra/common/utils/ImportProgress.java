@@ -0,0 +1,76 @@
+package io.choerodon.iam.infra.common.utils;
+
+import java.util.function.Consumer;
+
+import io.choerodon.iam.api.dto.ImportProgressDTO;
+
+/**
+ * 一次excel导入或ldap同步的进度计数，只由执行导入的线程修改
+ * 通过ImportProgressRegistry.start创建
+ *
+ * @author superlee
+ */
+public class ImportProgress {
+
+    private final String key;
+
+    private final Consumer<ImportProgressDTO> checkpoint;
+
+    private final long beginTime = System.currentTimeMillis();
+
+    private volatile long readCount;
+
+    private volatile long validatedCount;
+
+    private volatile long insertedCount;
+
+    private volatile long failedCount;
+
+    long lastPushTime;
+
+    long lastCheckpointTime = beginTime;
+
+    ImportProgressRegistry.Mailbox broadcast;
+
+    ImportProgress(String key, Consumer<ImportProgressDTO> checkpoint) {
+        this.key = key;
+        this.checkpoint = checkpoint;
+    }
+
+    public void addRead(long count) {
+        readCount += count;
+    }
+
+    public void addValidated(long count) {
+        validatedCount += count;
+    }
+
+    public void addInserted(long count) {
+        insertedCount += count;
+    }
+
+    public void setFailed(long count) {
+        failedCount = count;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Consumer<ImportProgressDTO> getCheckpoint() {
+        return checkpoint;
+    }
+
+    ImportProgressDTO toDTO(boolean finished) {
+        ImportProgressDTO dto = new ImportProgressDTO();
+        long read = readCount;
+        long millis = System.currentTimeMillis() - beginTime;
+        dto.setReadCount(read);
+        dto.setValidatedCount(validatedCount);
+        dto.setInsertedCount(insertedCount);
+        dto.setFailedCount(failedCount);
+        dto.setRate(millis == 0 ? 0 : read * 1000 / millis);
+        dto.setFinished(finished);
+        return dto;
+    }
+}
@@ -0,0 +1,52 @@
+package io.choerodon.iam.infra.common.utils;
+
+import io.choerodon.iam.api.dto.ImportProgressDTO;
+
+/**
+ * 执行导入的节点广播的进度，与缓存失效事件分开，使用单独的topic
+ *
+ * @author superlee
+ */
+public class ImportProgressEvent {
+
+    private String key;
+
+    private ImportProgressDTO progress;
+
+    /**
+     * 发出事件的节点，收到自己发出的事件时忽略
+     */
+    private String origin;
+
+    public ImportProgressEvent() {
+    }
+
+    public ImportProgressEvent(String key, ImportProgressDTO progress) {
+        this.key = key;
+        this.progress = progress;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public ImportProgressDTO getProgress() {
+        return progress;
+    }
+
+    public void setProgress(ImportProgressDTO progress) {
+        this.progress = progress;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+}
@@ -0,0 +1,301 @@
+package io.choerodon.iam.infra.common.utils;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.choerodon.iam.api.dto.ImportProgressDTO;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+
+/**
+ * excel导入和ldap同步的进度，通过Server-Sent Events推送给前端
+ * 执行导入的实例通过ImportProgressSender在单独的topic上广播进度，不经过缓存失效事件总线，
+ * 每个实例推送给自己的订阅者，订阅请求落在哪个实例上都能收到实时进度；
+ * 进度每CHECKPOINT_MILLIS写一次历史记录，订阅时导入不在本实例执行，先推送历史记录中的检查点，
+ * 历史记录已结束或不存在，或者没有配置广播时推送后断开，客户端按retry时间重连
+ * 广播和推送都在import-progress-executor中执行，只保留最新的进度，慢的客户端只会少收到中间进度，不会阻塞导入
+ *
+ * @author superlee
+ */
+@Component
+public class ImportProgressRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportProgressRegistry.class);
+
+    public static final String TOPIC = "iam-import-progress";
+
+    private static final long PUSH_MILLIS = 500L;
+
+    private static final long CHECKPOINT_MILLIS = 5 * 1000L;
+
+    private static final long RETRY_MILLIS = 3 * 1000L;
+
+    private static final long EMITTER_TIMEOUT = 10 * 60 * 1000L;
+
+    private static final String EVENT_NAME = "progress";
+
+    private final Map<String, ImportProgress> running = new ConcurrentHashMap<>();
+
+    private final Map<String, List<Subscriber>> subscribers = new HashMap<>();
+
+    /**
+     * 与缓存事件使用同一个节点标识
+     */
+    private String nodeId = CacheEventPublisher.NODE_ID;
+
+    private ObjectProvider<ImportProgressSender> importProgressSender;
+
+    private Executor executor;
+
+    public ImportProgressRegistry(ObjectProvider<ImportProgressSender> importProgressSender,
+                                  @Qualifier("import-progress-executor") AsyncTaskExecutor executor) {
+        this.importProgressSender = importProgressSender;
+        this.executor = executor;
+    }
+
+    public static String uploadKey(Long uploadHistoryId) {
+        return "upload:" + uploadHistoryId;
+    }
+
+    public static String ldapKey(Long ldapId) {
+        return "ldap:" + ldapId;
+    }
+
+    /**
+     * 开始一次导入，同一个key同时只有一个导入
+     *
+     * @param key        uploadKey或ldapKey
+     * @param checkpoint 把进度写入历史记录，在导入线程中调用
+     */
+    public ImportProgress start(String key, Consumer<ImportProgressDTO> checkpoint) {
+        ImportProgress progress = new ImportProgress(key, checkpoint);
+        progress.broadcast = new Mailbox(executor) {
+            @Override
+            boolean deliver(ImportProgressDTO dto) {
+                push(key, dto);
+                broadcast(key, dto);
+                return !Boolean.TRUE.equals(dto.getFinished());
+            }
+        };
+        running.put(key, progress);
+        return progress;
+    }
+
+    /**
+     * 计数变化后调用，按间隔广播和写检查点
+     */
+    public void report(ImportProgress progress) {
+        long now = System.currentTimeMillis();
+        if (now - progress.lastPushTime >= PUSH_MILLIS) {
+            progress.lastPushTime = now;
+            progress.broadcast.offer(progress.toDTO(false));
+        }
+        if (now - progress.lastCheckpointTime >= CHECKPOINT_MILLIS) {
+            progress.lastCheckpointTime = now;
+            try {
+                progress.getCheckpoint().accept(progress.toDTO(false));
+            } catch (Exception e) {
+                //检查点失败不影响导入，结束时会写最终结果
+                LOGGER.warn("checkpoint progress {} failed, exception: {}", progress.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 导入结束，广播最终进度，各实例推送后断开所有订阅
+     */
+    public void finish(ImportProgress progress) {
+        running.remove(progress.getKey(), progress);
+        progress.broadcast.offer(progress.toDTO(true));
+    }
+
+    /**
+     * @param snapshot 导入不在本实例运行时，从历史记录构造进度，可以返回null
+     */
+    public SseEmitter subscribe(String key, Supplier<ImportProgressDTO> snapshot) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscriber subscriber = new Subscriber(key, emitter, executor);
+        ImportProgress progress;
+        //先订阅再读取检查点，读取期间结束的导入也会收到最终进度
+        synchronized (subscribers) {
+            subscribers.computeIfAbsent(key, k -> new ArrayList<>()).add(subscriber);
+            progress = running.get(key);
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        ImportProgressDTO dto = progress == null ? snapshot.get() : progress.toDTO(false);
+        boolean live = progress != null || importProgressSender.getIfAvailable() != null;
+        if (dto == null || Boolean.TRUE.equals(dto.getFinished()) || !live) {
+            unsubscribe(subscriber);
+            if (subscriber.close() && dto != null) {
+                send(emitter, dto);
+            }
+            emitter.complete();
+            return emitter;
+        }
+        //已经收到更新的进度时不再推送检查点
+        subscriber.offerIfEmpty(dto);
+        return emitter;
+    }
+
+    /**
+     * 收到其他实例广播的进度，推送给本实例的订阅者
+     */
+    public void receive(ImportProgressEvent event) {
+        if (!nodeId.equals(event.getOrigin()) && event.getProgress() != null) {
+            push(event.getKey(), event.getProgress());
+        }
+    }
+
+    private void broadcast(String key, ImportProgressDTO dto) {
+        ImportProgressSender sender = importProgressSender.getIfAvailable();
+        if (sender == null) {
+            return;
+        }
+        ImportProgressEvent event = new ImportProgressEvent(key, dto);
+        event.setOrigin(nodeId);
+        try {
+            sender.send(event);
+        } catch (Exception e) {
+            //其他实例的订阅者会在下一次进度或重连时拿到最新进度
+            LOGGER.warn("send import progress {} failed, exception: {}", key, e.getMessage());
+        }
+    }
+
+    private void push(String key, ImportProgressDTO dto) {
+        boolean complete = Boolean.TRUE.equals(dto.getFinished());
+        List<Subscriber> list;
+        synchronized (subscribers) {
+            list = complete ? subscribers.remove(key) : subscribers.get(key);
+            if (list == null) {
+                return;
+            }
+            list = new ArrayList<>(list);
+        }
+        list.forEach(s -> s.offer(dto));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        synchronized (subscribers) {
+            List<Subscriber> list = subscribers.get(subscriber.key);
+            if (list != null && list.remove(subscriber) && list.isEmpty()) {
+                subscribers.remove(subscriber.key);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, ImportProgressDTO dto) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).reconnectTime(RETRY_MILLIS).data(dto));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            //客户端已断开
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private final class Subscriber extends Mailbox {
+
+        private final String key;
+
+        private final SseEmitter emitter;
+
+        Subscriber(String key, SseEmitter emitter, Executor executor) {
+            super(executor);
+            this.key = key;
+            this.emitter = emitter;
+        }
+
+        @Override
+        boolean deliver(ImportProgressDTO dto) {
+            if (!send(emitter, dto)) {
+                unsubscribe(this);
+                return false;
+            }
+            if (Boolean.TRUE.equals(dto.getFinished())) {
+                emitter.complete();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 只保留最新一条进度，在executor中按顺序投递，同一时刻最多一个线程在投递
+     */
+    abstract static class Mailbox {
+
+        private final AtomicReference<ImportProgressDTO> pending = new AtomicReference<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private final Executor executor;
+
+        Mailbox(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * @return false表示不再投递
+         */
+        abstract boolean deliver(ImportProgressDTO dto);
+
+        void offer(ImportProgressDTO dto) {
+            pending.set(dto);
+            schedule();
+        }
+
+        void offerIfEmpty(ImportProgressDTO dto) {
+            if (pending.compareAndSet(null, dto)) {
+                schedule();
+            }
+        }
+
+        /**
+         * @return 是否由本次调用关闭
+         */
+        boolean close() {
+            return closed.compareAndSet(false, true);
+        }
+
+        private void schedule() {
+            if (!closed.get() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            ImportProgressDTO dto;
+            while (!closed.get() && (dto = pending.getAndSet(null)) != null) {
+                try {
+                    if (!deliver(dto)) {
+                        close();
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("deliver import progress failed, exception: {}", e.getMessage());
+                }
+            }
+            scheduled.set(false);
+            //投递期间放入的进度
+            if (pending.get() != null) {
+                schedule();
+            }
+        }
+    }
+}
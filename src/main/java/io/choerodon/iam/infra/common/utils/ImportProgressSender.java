@@ -0,0 +1,11 @@
+package io.choerodon.iam.infra.common.utils;
+
+/**
+ * 把导入进度广播给其他节点，未配置时只推送给本节点的订阅者
+ *
+ * @author superlee
+ */
+public interface ImportProgressSender {
+
+    void send(ImportProgressEvent event);
+}
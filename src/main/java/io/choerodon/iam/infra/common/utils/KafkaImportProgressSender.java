@@ -0,0 +1,32 @@
+package io.choerodon.iam.infra.common.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 通过kafka topic广播导入进度，以进度的key作为消息的key
+ *
+ * @author superlee
+ */
+public class KafkaImportProgressSender implements ImportProgressSender {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    public KafkaImportProgressSender(KafkaTemplate<String, String> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public void send(ImportProgressEvent event) {
+        try {
+            kafkaTemplate.send(ImportProgressRegistry.TOPIC, event.getKey(), objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new CommonException("error.import.progress.serialize", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.choerodon.iam.infra.common.utils.excel;
 
 import io.choerodon.core.excel.ExcelExportHelper;
+import io.choerodon.core.excel.ExcelReadConfig;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.iam.api.dto.ErrorUserDTO;
 import io.choerodon.iam.api.dto.ExcelMemberRoleDTO;
@@ -12,7 +13,10 @@ import io.choerodon.iam.domain.repository.RoleRepository;
 import io.choerodon.iam.domain.repository.UploadHistoryRepository;
 import io.choerodon.iam.domain.repository.UserRepository;
 import io.choerodon.iam.domain.service.IRoleMemberService;
+import io.choerodon.iam.infra.common.utils.BulkPasswordEncoder;
 import io.choerodon.iam.infra.common.utils.CollectionUtils;
+import io.choerodon.iam.infra.common.utils.ImportProgress;
+import io.choerodon.iam.infra.common.utils.ImportProgressRegistry;
 import io.choerodon.iam.infra.common.utils.MockMultipartFile;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
 import io.choerodon.iam.infra.dataobject.RoleDO;
@@ -27,15 +31,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -48,6 +51,7 @@ import java.util.stream.Collectors;
 public class ExcelImportUserTask {
     private static final Logger logger = LoggerFactory.getLogger(ExcelImportUserTask.class);
     private static final String ADD_USER = "addUser";
+    private static final int BATCH_SIZE = 1000;
 
     private UserRepository userRepository;
     private RoleRepository roleRepository;
@@ -56,10 +60,11 @@ public class ExcelImportUserTask {
     private OrganizationUserService organizationUserService;
     private FileFeignClient fileFeignClient;
     private NotifyFeignClient notifyFeignClient;
-    private final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder();
+    private BulkPasswordEncoder bulkPasswordEncoder;
+    private ImportProgressRegistry importProgressRegistry;
 
 
-    public ExcelImportUserTask(UserRepository userRepository, RoleRepository roleRepository, MemberRoleRepository memberRoleRepository, IRoleMemberService iRoleMemberService, OrganizationUserService organizationUserService, FileFeignClient fileFeignClient, NotifyFeignClient notifyFeignClient) {
+    public ExcelImportUserTask(UserRepository userRepository, RoleRepository roleRepository, MemberRoleRepository memberRoleRepository, IRoleMemberService iRoleMemberService, OrganizationUserService organizationUserService, FileFeignClient fileFeignClient, NotifyFeignClient notifyFeignClient, BulkPasswordEncoder bulkPasswordEncoder, ImportProgressRegistry importProgressRegistry) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.memberRoleRepository = memberRoleRepository;
@@ -67,32 +72,65 @@ public class ExcelImportUserTask {
         this.organizationUserService = organizationUserService;
         this.fileFeignClient = fileFeignClient;
         this.notifyFeignClient = notifyFeignClient;
+        this.bulkPasswordEncoder = bulkPasswordEncoder;
+        this.importProgressRegistry = importProgressRegistry;
     }
 
+    /**
+     * 边读excel边导入，每读到BATCH_SIZE行就校验、去重并入库，导入结束后删除文件
+     */
     @Async("excel-executor")
-    public void importUsers(Long userId, List<UserDO> users, Long organizationId, UploadHistoryDO uploadHistory, FinishFallback fallback) {
-        logger.info("### begin to import users from excel, total size : {}", users.size());
-        //线程安全arrayList，parallelStream并行处理过程中防止扩容数组越界
-        List<UserDO> validateUsers = new CopyOnWriteArrayList<>();
-        List<ErrorUserDTO> errorUsers = new CopyOnWriteArrayList<>();
+    public void importUsers(Long userId, File file, String suffix, ExcelReadConfig excelReadConfig,
+                            Long organizationId, UploadHistoryDO uploadHistory, FinishFallback fallback) {
+        ImportProgress progress = startProgress(uploadHistory, fallback);
+        try {
+            doImportUsers(userId, file, suffix, excelReadConfig, organizationId, uploadHistory, fallback, progress);
+        } finally {
+            importProgressRegistry.finish(progress);
+        }
+    }
+
+    private void doImportUsers(Long userId, File file, String suffix, ExcelReadConfig excelReadConfig, Long organizationId,
+                               UploadHistoryDO uploadHistory, FinishFallback fallback, ImportProgress progress) {
+        logger.info("### begin to import users from excel, file size : {}", file.length());
+        List<ErrorUserDTO> errorUsers = new ArrayList<>();
+        //去重状态跨批次保留
+        ExcelUserDeduplicator deduplicator = new ExcelUserDeduplicator();
+        int[] inserted = {0};
         long begin = System.currentTimeMillis();
-        users.parallelStream().forEach(u -> {
+        try {
+            int total = ExcelStreamReader.read(file, suffix, excelReadConfig, UserDO.class, BATCH_SIZE, users -> {
+                //每个线程写自己的ValidateResult，最后按顺序合并，不需要线程安全的list
+                ValidateResult validateResult = users.parallelStream().collect(ValidateResult::new, (result, u) -> {
                     u.setOrganizationId(organizationId);
-                    processUsers(u, errorUsers, validateUsers);
+                    processUsers(u, result.errorUsers, result.users);
+                }, ValidateResult::merge);
+                errorUsers.addAll(validateResult.errorUsers);
+                progress.addRead(users.size());
+                progress.addValidated(validateResult.users.size());
+                //根据loginName和email去重，返回
+                List<UserDO> distinctUsers = deduplicator.distinct(validateResult.users, errorUsers);
+                List<UserDO> insertUsers = compareWithDb(distinctUsers, errorUsers);
+                if (!insertUsers.isEmpty()) {
+                    //只加密最终要插入的用户
+                    bulkPasswordEncoder.encode(insertUsers);
+                    organizationUserService.batchCreateUsers(insertUsers);
                 }
-        );
-        //根据loginName和email去重，返回
-        List<UserDO> distinctUsers = distinct(validateUsers, errorUsers);
-        List<UserDO> insertUsers = compareWithDb(distinctUsers, errorUsers);
-        long end = System.currentTimeMillis();
-        logger.info("process user for {} millisecond", (end - begin));
-        List<List<UserDO>> list = CollectionUtils.subList(insertUsers, 1000);
-        list.forEach(l -> {
-            if (!l.isEmpty()) {
-                organizationUserService.batchCreateUsers(l);
-            }
-        });
-        Integer successCount = insertUsers.size();
+                inserted[0] += insertUsers.size();
+                progress.addInserted(insertUsers.size());
+                progress.setFailed(errorUsers.size());
+                importProgressRegistry.report(progress);
+            });
+            logger.info("import {} users for {} millisecond", total, (System.currentTimeMillis() - begin));
+        } catch (IOException | IllegalArgumentException e) {
+            uploadHistory.setSuccessfulCount(inserted[0]);
+            uploadHistory.setFailedCount(errorUsers.size());
+            failAndFallback(uploadHistory, fallback);
+            throw new CommonException("error.excel.read", e);
+        } finally {
+            ExcelStreamReader.deleteTemp(file);
+        }
+        Integer successCount = inserted[0];
         Integer failedCount = errorUsers.size();
         uploadHistory.setSuccessfulCount(successCount);
         uploadHistory.setFailedCount(failedCount);
@@ -102,6 +140,25 @@ public class ExcelImportUserTask {
         }
     }
 
+    /**
+     * 开始记录导入进度，导入过程中定期把成功和失败数量写入上传历史
+     */
+    private ImportProgress startProgress(UploadHistoryDO uploadHistory, FinishFallback fallback) {
+        return importProgressRegistry.start(ImportProgressRegistry.uploadKey(uploadHistory.getId()), dto -> {
+            UploadHistoryDO checkpoint = new UploadHistoryDO();
+            checkpoint.setId(uploadHistory.getId());
+            checkpoint.setSuccessfulCount(dto.getInsertedCount().intValue());
+            checkpoint.setFailedCount(dto.getFailedCount().intValue());
+            fallback.checkpoint(checkpoint);
+        });
+    }
+
+    private void failAndFallback(UploadHistoryDO uploadHistory, FinishFallback fallback) {
+        uploadHistory.setUrl("");
+        uploadHistory.setFinished(false);
+        fallback.callback(uploadHistory);
+    }
+
     private void sendStationLetter(Integer successCount, Long userId) {
         WsSendDTO wsSendDTO = new WsSendDTO();
         wsSendDTO.setCode(ADD_USER);
@@ -138,48 +195,39 @@ public class ExcelImportUserTask {
         }
     }
 
+    /**
+     * 边读excel边导入，每读到BATCH_SIZE行就校验、去重并分配角色，导入结束后删除文件
+     */
     @Async("excel-executor")
-    public void importMemberRole(List<ExcelMemberRoleDTO> memberRoles, UploadHistoryDO uploadHistory,
-                                 FinishFallback finishFallback) {
-        Integer total = memberRoles.size();
-        logger.info("### begin to import member-role from excel, total size : {}", total);
-        List<ExcelMemberRoleDTO> errorMemberRoles = new CopyOnWriteArrayList<>();
-        List<ExcelMemberRoleDTO> validateMemberRoles = new CopyOnWriteArrayList<>();
-        memberRoles.parallelStream().forEach(mr -> {
-            if (StringUtils.isEmpty(mr.getLoginName())) {
-                mr.setCause("用户名为空");
-                errorMemberRoles.add(mr);
-            } else if (StringUtils.isEmpty(mr.getRoleCode())) {
-                mr.setCause("角色编码为空");
-                errorMemberRoles.add(mr);
-            } else {
-                validateMemberRoles.add(mr);
-            }
-        });
-        //去重
-        List<ExcelMemberRoleDTO> distinctList = distinctExcel(validateMemberRoles, errorMemberRoles);
-        //***优化查询次数
-        distinctList.parallelStream().forEach(emr -> {
-            String loginName = emr.getLoginName().trim();
-            String code = emr.getRoleCode().trim();
-            //检查loginName是否存在
-            UserDO userDO = getUser(errorMemberRoles, emr, loginName);
-            if (userDO == null) return;
-            Long userId = userDO.getId();
-            //检查role code是否存在
-            RoleDO role = getRole(errorMemberRoles, emr, code);
-            if (role == null) return;
-            if (!uploadHistory.getSourceType().equals(role.getLevel())) {
-                emr.setCause("导入角色层级与导入所在界面的层级不匹配");
-                errorMemberRoles.add(emr);
-                return;
-            }
-            Long roleId = role.getId();
-            //检查memberRole是否存在
-            MemberRoleDO memberRole = getMemberRole(uploadHistory.getSourceId(), uploadHistory.getSourceType(), errorMemberRoles, emr, userId, roleId);
-            if (memberRole == null) return;
-            iRoleMemberService.insertAndSendEvent(memberRole, loginName);
-        });
+    public void importMemberRole(File file, String suffix, ExcelReadConfig excelReadConfig,
+                                 UploadHistoryDO uploadHistory, FinishFallback finishFallback) {
+        ImportProgress progress = startProgress(uploadHistory, finishFallback);
+        try {
+            doImportMemberRole(file, suffix, excelReadConfig, uploadHistory, finishFallback, progress);
+        } finally {
+            importProgressRegistry.finish(progress);
+        }
+    }
+
+    private void doImportMemberRole(File file, String suffix, ExcelReadConfig excelReadConfig,
+                                    UploadHistoryDO uploadHistory, FinishFallback finishFallback, ImportProgress progress) {
+        logger.info("### begin to import member-role from excel, file size : {}", file.length());
+        List<ExcelMemberRoleDTO> errorMemberRoles = new ArrayList<>();
+        //之前批次中出现过的登录名和角色编码
+        Set<String> existedRows = new HashSet<>();
+        //角色数量有限，查过的角色在整个导入过程中复用
+        Map<String, RoleDO> roles = new HashMap<>();
+        int total;
+        try {
+            total = ExcelStreamReader.read(file, suffix, excelReadConfig, ExcelMemberRoleDTO.class, BATCH_SIZE,
+                    memberRoles -> importMemberRole(memberRoles, uploadHistory, existedRows, roles, errorMemberRoles, progress));
+        } catch (IOException | IllegalArgumentException e) {
+            failAndFallback(uploadHistory, finishFallback);
+            throw new CommonException("error.excel.read", e);
+        } finally {
+            ExcelStreamReader.deleteTemp(file);
+        }
+        logger.info("### import member-role from excel, total size : {}", total);
         Integer failedCount = errorMemberRoles.size();
         Integer successfulCount = total - failedCount;
         uploadHistory.setFailedCount(failedCount);
@@ -203,63 +251,91 @@ public class ExcelImportUserTask {
         }
     }
 
-    private MemberRoleDO getMemberRole(Long sourceId, String sourceType, List<ExcelMemberRoleDTO> errorMemberRoles, ExcelMemberRoleDTO emr, Long userId, Long roleId) {
-        MemberRoleDO memberRole = new MemberRoleDO();
-        memberRole.setSourceType(sourceType);
-        memberRole.setSourceId(sourceId);
-        memberRole.setMemberType("user");
-        memberRole.setMemberId(userId);
-        memberRole.setRoleId(roleId);
-        if (memberRoleRepository.selectOne(memberRole) != null) {
-            emr.setCause("该用户已经被分配了该角色，sourceId={" + sourceId + "}");
+    private void importMemberRole(List<ExcelMemberRoleDTO> memberRoles, UploadHistoryDO uploadHistory,
+                                  Set<String> existedRows, Map<String, RoleDO> roles,
+                                  List<ExcelMemberRoleDTO> errorMemberRoles, ImportProgress progress) {
+        List<ExcelMemberRoleDTO> validateMemberRoles = new ArrayList<>();
+        memberRoles.forEach(mr -> {
+            if (StringUtils.isEmpty(mr.getLoginName())) {
+                mr.setCause("用户名为空");
+                errorMemberRoles.add(mr);
+            } else if (StringUtils.isEmpty(mr.getRoleCode())) {
+                mr.setCause("角色编码为空");
+                errorMemberRoles.add(mr);
+            } else {
+                validateMemberRoles.add(mr);
+            }
+        });
+        //去重
+        List<ExcelMemberRoleDTO> distinctList = distinctExcel(validateMemberRoles, existedRows, errorMemberRoles);
+        //按loginName和role code分批查出用户和角色，之后在内存中关联
+        Map<String, UserDO> users = selectUsers(distinctList);
+        selectRoles(distinctList, roles);
+        Long sourceId = uploadHistory.getSourceId();
+        String sourceType = uploadHistory.getSourceType();
+        List<Long> userIds = users.values().stream().map(UserDO::getId).collect(Collectors.toList());
+        Set<String> existedMemberRoles = memberRoleRepository.selectByMemberIds(userIds, "user", sourceId, sourceType)
+                .stream().map(mr -> mr.getMemberId() + ":" + mr.getRoleId()).collect(Collectors.toSet());
+        List<MemberRoleDO> insertList = new ArrayList<>();
+        Map<Long, String> loginNames = new HashMap<>();
+        for (ExcelMemberRoleDTO emr : distinctList) {
+            UserDO user = users.get(emr.getLoginName().trim().toLowerCase());
+            RoleDO role = roles.get(emr.getRoleCode().trim().toLowerCase());
+            if (user == null) {
+                emr.setCause("用户名不存在");
+            } else if (role == null) {
+                emr.setCause("角色编码不存在");
+            } else if (!sourceType.equals(role.getLevel())) {
+                emr.setCause("导入角色层级与导入所在界面的层级不匹配");
+            } else if (!existedMemberRoles.add(user.getId() + ":" + role.getId())) {
+                emr.setCause("该用户已经被分配了该角色，sourceId={" + sourceId + "}");
+            } else {
+                MemberRoleDO memberRole = new MemberRoleDO();
+                memberRole.setSourceType(sourceType);
+                memberRole.setSourceId(sourceId);
+                memberRole.setMemberType("user");
+                memberRole.setMemberId(user.getId());
+                memberRole.setRoleId(role.getId());
+                insertList.add(memberRole);
+                loginNames.put(user.getId(), user.getLoginName());
+                continue;
+            }
             errorMemberRoles.add(emr);
-            return null;
         }
-        return memberRole;
+        iRoleMemberService.insertListAndSendEvent(insertList, loginNames);
+        progress.addRead(memberRoles.size());
+        progress.addValidated(distinctList.size());
+        progress.addInserted(insertList.size());
+        progress.setFailed(errorMemberRoles.size());
+        importProgressRegistry.report(progress);
     }
 
-    private RoleDO getRole(List<ExcelMemberRoleDTO> errorMemberRoles, ExcelMemberRoleDTO emr, String code) {
-        RoleDO roleDO = new RoleDO();
-        roleDO.setCode(code);
-        RoleDO role = roleRepository.selectOne(roleDO);
-        if (role == null) {
-            emr.setCause("角色编码不存在");
-            errorMemberRoles.add(emr);
-            return null;
-        }
-        return role;
+    private Map<String, UserDO> selectUsers(List<ExcelMemberRoleDTO> memberRoles) {
+        Set<String> nameSet = memberRoles.stream().map(emr -> emr.getLoginName().trim()).collect(Collectors.toSet());
+        Map<String, UserDO> users = new HashMap<>();
+        //oracle In-list上限为1000，这里List size要小于1000
+        CollectionUtils.subSet(nameSet, 999).forEach(set ->
+                userRepository.selectByLoginNames(set).forEach(user -> users.put(user.getLoginName().toLowerCase(), user)));
+        return users;
     }
 
-    private UserDO getUser(List<ExcelMemberRoleDTO> errorMemberRoles, ExcelMemberRoleDTO emr, String loginName) {
-        UserDO user = new UserDO();
-        user.setLoginName(loginName);
-        UserDO userDO = userRepository.selectOne(user);
-        if (userDO == null) {
-            emr.setCause("用户名不存在");
-            errorMemberRoles.add(emr);
-            return null;
-        }
-        return userDO;
+    private void selectRoles(List<ExcelMemberRoleDTO> memberRoles, Map<String, RoleDO> roles) {
+        Set<String> codeSet = memberRoles.stream().map(emr -> emr.getRoleCode().trim())
+                .filter(code -> !roles.containsKey(code.toLowerCase())).collect(Collectors.toSet());
+        CollectionUtils.subSet(codeSet, 999).forEach(set ->
+                roleRepository.selectByCodes(set).forEach(role -> roles.put(role.getCode().toLowerCase(), role)));
     }
 
-    private List<ExcelMemberRoleDTO> distinctExcel(List<ExcelMemberRoleDTO> validateMemberRoles, List<ExcelMemberRoleDTO> errorMemberRoles) {
+    private List<ExcelMemberRoleDTO> distinctExcel(List<ExcelMemberRoleDTO> validateMemberRoles, Set<String> existedRows,
+                                                   List<ExcelMemberRoleDTO> errorMemberRoles) {
         List<ExcelMemberRoleDTO> distinctList = new ArrayList<>();
-        //excel内去重
-        Map<Map<String, String>, List<ExcelMemberRoleDTO>> distinctMap =
-                validateMemberRoles.stream().collect(Collectors.groupingBy(m -> {
-                    Map<String, String> map = new HashMap<>();
-                    map.put(m.getLoginName(), m.getRoleCode());
-                    return map;
-                }));
-        for (Map.Entry<Map<String, String>, List<ExcelMemberRoleDTO>> entry : distinctMap.entrySet()) {
-            List<ExcelMemberRoleDTO> list = entry.getValue();
-            distinctList.add(list.get(0));
-            if (list.size() > 1) {
-                for (int i = 1; i < list.size(); i++) {
-                    ExcelMemberRoleDTO dto = list.get(i);
-                    dto.setCause("excel中存在重复的数据");
-                    errorMemberRoles.add(dto);
-                }
+        //excel内去重，包括之前批次中的数据
+        for (ExcelMemberRoleDTO dto : validateMemberRoles) {
+            if (existedRows.add(dto.getLoginName() + "\u0000" + dto.getRoleCode())) {
+                distinctList.add(dto);
+            } else {
+                dto.setCause("excel中存在重复的数据");
+                errorMemberRoles.add(dto);
             }
         }
         return distinctList;
@@ -312,108 +388,6 @@ public class ExcelImportUserTask {
         return insertList;
     }
 
-    private List<UserDO> distinct(List<UserDO> users, List<ErrorUserDTO> errorUsers) {
-        List<UserDO> distinctNameAndEmail = distinctNameAndEmail(users, errorUsers);
-        Map<String, List<UserDO>> loginNameMap =
-                distinctNameAndEmail.stream().collect(Collectors.groupingBy(UserDO::getLoginName));
-        Map<String, List<UserDO>> emailMap =
-                distinctNameAndEmail.stream().collect(Collectors.groupingBy(UserDO::getEmail));
-        List<UserDO> distinct = new ArrayList<>();
-        //去除loginName和email与其他对象相同的情况
-        for (Map.Entry<String, List<UserDO>> entry : loginNameMap.entrySet()) {
-            List<UserDO> list = entry.getValue();
-            if (list.size() > 1) {
-                for (UserDO user : list) {
-                    String email = user.getEmail();
-                    if (emailMap.get(email).size() > 1) {
-                        ErrorUserDTO dto = new ErrorUserDTO();
-                        BeanUtils.copyProperties(user, dto);
-                        dto.setCause("Excel中存在重复的用户名和密码");
-                        errorUsers.add(dto);
-                    } else {
-                        distinct.add(user);
-                    }
-
-                }
-            } else {
-                distinct.add(list.get(0));
-            }
-        }
-        //loginName去重
-        List<UserDO> distinctNameList = distinctLoginName(errorUsers, distinct);
-        //email去重
-        List<UserDO> returnList = distinctEmail(errorUsers, distinctNameList);
-        return returnList;
-    }
-
-    private List<UserDO> distinctLoginName(List<ErrorUserDTO> errorUsers, List<UserDO> distinct) {
-        List<UserDO> distinctNameList = new ArrayList<>();
-        Map<String, List<UserDO>> loginNameMap = distinct.stream().collect(Collectors.groupingBy(UserDO::getLoginName));
-        for (Map.Entry<String, List<UserDO>> entry : loginNameMap.entrySet()) {
-            List<UserDO> list = entry.getValue();
-            distinctNameList.add(list.get(0));
-            if (list.size() > 1) {
-                for (int i = 1; i < list.size(); i++) {
-                    ErrorUserDTO dto = new ErrorUserDTO();
-                    BeanUtils.copyProperties(list.get(i), dto);
-                    dto.setCause("Excel中存在重复的用户名");
-                    errorUsers.add(dto);
-                }
-            }
-        }
-        return distinctNameList;
-    }
-
-    private List<UserDO> distinctEmail(List<ErrorUserDTO> errorUsers, List<UserDO> distinctNameList) {
-        List<UserDO> returnList = new ArrayList<>();
-        Map<String, List<UserDO>> emailMap
-                = distinctNameList.stream().collect(Collectors.groupingBy(UserDO::getEmail));
-        for (Map.Entry<String, List<UserDO>> entry : emailMap.entrySet()) {
-            List<UserDO> list = entry.getValue();
-            returnList.add(list.get(0));
-            if (list.size() > 1) {
-                for (int i = 1; i < list.size(); i++) {
-                    ErrorUserDTO dto = new ErrorUserDTO();
-                    BeanUtils.copyProperties(list.get(i), dto);
-                    dto.setCause("Excel中存在重复的邮箱");
-                    errorUsers.add(dto);
-                }
-            }
-        }
-        return returnList;
-    }
-
-    /**
-     * 去除同一个对象loginName和email完全相同的对象
-     *
-     * @param users
-     * @param errorUsers
-     * @return
-     */
-    private List<UserDO> distinctNameAndEmail(List<UserDO> users, List<ErrorUserDTO> errorUsers) {
-        List<UserDO> distinctNameAndEmail = new ArrayList<>();
-        Map<Map<String, String>, List<UserDO>> nameAndEmailMap =
-                users.stream().collect(Collectors.groupingBy(u -> {
-                    Map<String, String> map = new HashMap<>();
-                    map.put(u.getLoginName(), u.getEmail());
-                    return map;
-                }));
-        //去掉两个字段全重复的对象
-        for (Map.Entry<Map<String, String>, List<UserDO>> entry : nameAndEmailMap.entrySet()) {
-            List<UserDO> list = entry.getValue();
-            distinctNameAndEmail.add(list.get(0));
-            if (list.size() > 1) {
-                for (int i = 1; i < list.size(); i++) {
-                    ErrorUserDTO dto = new ErrorUserDTO();
-                    BeanUtils.copyProperties(list.get(i), dto);
-                    dto.setCause("Excel中存在重复的用户名和邮箱");
-                    errorUsers.add(dto);
-                }
-            }
-        }
-        return distinctNameAndEmail;
-    }
-
     private String exportAndUpload(List<ErrorUserDTO> errorUsers) {
         Map<String, String> propertyMap = new LinkedHashMap<>();
         propertyMap.put("loginName", "登录名*");
@@ -474,13 +448,8 @@ public class ExcelImportUserTask {
     private void processUsers(UserDO user, List<ErrorUserDTO> errorUsers, List<UserDO> validateUsers) {
         //只有校验通过的用户才进行其他字段设置
         if (validateUsers(user, errorUsers, validateUsers)) {
-            //excel中用户密码为空，设置默认密码为abcd1234
+            //密码在入库前由BulkPasswordEncoder加密，excel中密码为空的使用默认密码
             user.setOriginalPassword(user.getPassword());
-            if (StringUtils.isEmpty(user.getPassword())) {
-                user.setPassword("abcd1234");
-            }
-            //加密
-            user.setPassword(ENCODER.encode(user.getPassword()));
             if (StringUtils.isEmpty(user.getLanguage())) {
                 user.setLanguage("zh_CN");
             }
@@ -544,6 +513,19 @@ public class ExcelImportUserTask {
     }
 
 
+    /**
+     * parallelStream中每个线程的校验结果
+     */
+    private static class ValidateResult {
+        private List<UserDO> users = new ArrayList<>();
+        private List<ErrorUserDTO> errorUsers = new ArrayList<>();
+
+        void merge(ValidateResult other) {
+            users.addAll(other.users);
+            errorUsers.addAll(other.errorUsers);
+        }
+    }
+
     public interface FinishFallback {
         /**
          * 同步完成后回调
@@ -551,6 +533,13 @@ public class ExcelImportUserTask {
          * @param uploadHistoryDO 历史纪录
          */
         void callback(UploadHistoryDO uploadHistoryDO);
+
+        /**
+         * 导入过程中保存进度，只更新成功和失败数量
+         *
+         * @param uploadHistoryDO 历史纪录
+         */
+        void checkpoint(UploadHistoryDO uploadHistoryDO);
     }
 
 
@@ -575,5 +564,13 @@ public class ExcelImportUserTask {
             history.setSourceType(uploadHistoryDO.getSourceType());
             uploadHistoryRepository.updateByPrimaryKeySelective(history);
         }
+
+        @Override
+        public void checkpoint(UploadHistoryDO uploadHistoryDO) {
+            UploadHistoryDO history = uploadHistoryRepository.selectByPrimaryKey(uploadHistoryDO.getId());
+            history.setSuccessfulCount(uploadHistoryDO.getSuccessfulCount());
+            history.setFailedCount(uploadHistoryDO.getFailedCount());
+            uploadHistoryRepository.updateByPrimaryKeySelective(history);
+        }
     }
 }
@@ -0,0 +1,374 @@
+package io.choerodon.iam.infra.common.utils.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Consumer;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.hssf.eventusermodel.*;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import io.choerodon.core.excel.ExcelReadConfig;
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.iam.infra.enums.ExcelSuffix;
+
+/**
+ * 基于poi事件模型的excel读取，xlsx使用SAX解析sheet，xls使用HSSF监听器，
+ * 不构建workbook，读到的行按chunkSize分批交给consumer，内存占用与文件大小无关
+ * <p>
+ * 每个sheet的第一行为表头，表头通过ExcelReadConfig的propertyMap映射为对象的属性，
+ * skipSheetNames中的sheet(不区分大小写)不读取，空行忽略
+ *
+ * @author superlee
+ */
+public class ExcelStreamReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExcelStreamReader.class);
+
+    /**
+     * 读到第一行数据后停止读取，只用于validate
+     */
+    private static final RuntimeException FIRST_ROW = new RuntimeException("first row", null, false, false) {
+    };
+
+    private ExcelStreamReader() {
+    }
+
+    /**
+     * @param suffix 文件后缀，xls或xlsx
+     * @return 读取的行数
+     * @throws IllegalArgumentException 后缀不支持或表头不在propertyMap中
+     */
+    public static <T> int read(File file, String suffix, ExcelReadConfig config, Class<T> clazz,
+                               int chunkSize, Consumer<List<T>> consumer) throws IOException {
+        RowCollector<T> collector = new RowCollector<>(config, clazz, chunkSize, consumer);
+        if (ExcelSuffix.XLSX.value().equalsIgnoreCase(suffix)) {
+            readXlsx(file, collector);
+        } else if (ExcelSuffix.XLS.value().equalsIgnoreCase(suffix)) {
+            readXls(file, collector);
+        } else {
+            throw new IllegalArgumentException("unsupported excel suffix: " + suffix);
+        }
+        collector.flush();
+        return collector.total;
+    }
+
+    /**
+     * 在异步导入前检查上传的文件，只读到第一行数据为止
+     *
+     * @param emptyCode 没有数据行时的错误码
+     * @throws CommonException 表头不在propertyMap中，读取失败或没有数据行
+     */
+    public static <T> void validate(File file, String suffix, ExcelReadConfig config, Class<T> clazz,
+                                    String emptyCode) {
+        boolean hasRows;
+        try {
+            hasRows = hasRows(file, suffix, config, clazz);
+        } catch (IllegalArgumentException e) {
+            throw new CommonException("error.excel.illegal.column", e);
+        } catch (IOException e) {
+            throw new CommonException("error.excel.read", e);
+        }
+        if (!hasRows) {
+            throw new CommonException(emptyCode);
+        }
+    }
+
+    private static <T> boolean hasRows(File file, String suffix, ExcelReadConfig config, Class<T> clazz)
+            throws IOException {
+        try {
+            return read(file, suffix, config, clazz, 1, rows -> {
+                throw FIRST_ROW;
+            }) > 0;
+        } catch (IOException | RuntimeException e) {
+            if (causedByFirstRow(e)) {
+                return true;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean causedByFirstRow(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause == FIRST_ROW) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 上传文件的后缀，不是xls或xlsx时抛出异常
+     */
+    public static String suffix(MultipartFile file) {
+        String suffix = StringUtils.getFilenameExtension(file.getOriginalFilename());
+        if (!ExcelSuffix.XLS.value().equalsIgnoreCase(suffix) && !ExcelSuffix.XLSX.value().equalsIgnoreCase(suffix)) {
+            throw new CommonException("error.excel.suffix.illegal");
+        }
+        return suffix;
+    }
+
+    /**
+     * 把上传的文件保存到临时目录，由调用方负责删除
+     */
+    public static File saveTemp(MultipartFile file, String suffix) {
+        try {
+            File temp = File.createTempFile("excel-import-", "." + suffix);
+            file.transferTo(temp);
+            return temp;
+        } catch (IOException e) {
+            throw new CommonException("error.excel.read", e);
+        }
+    }
+
+    public static void deleteTemp(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            logger.warn("delete excel file {} failed, exception: {}", file, e.getMessage());
+        }
+    }
+
+    private static void readXlsx(File file, RowCollector<?> collector) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException(e);
+        }
+        try {
+            //不包含注音，否则表头会带上拼音
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (!collector.startSheet(sheets.getSheetName())) {
+                        continue;
+                    }
+                    XMLReader parser = factory.newSAXParser().getXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            styles, null, strings, new XlsxSheetHandler(collector), new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static void readXls(File file, RowCollector<?> collector) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file, true)) {
+            XlsListener listener = new XlsListener(collector);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener.formatListener);
+            new HSSFEventFactory().processWorkbookEvents(request, fs);
+        }
+    }
+
+    private static class XlsxSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private RowCollector<?> collector;
+        private int column;
+
+        XlsxSheetHandler(RowCollector<?> collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            column = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            collector.endRow();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            column = cellReference == null ? column + 1 : new CellReference(cellReference).getCol();
+            collector.cell(column, formattedValue);
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            //表头表尾不需要
+        }
+    }
+
+    private static class XlsListener implements HSSFListener {
+
+        private RowCollector<?> collector;
+        private FormatTrackingHSSFListener formatListener;
+        private List<String> sheetNames = new ArrayList<>();
+        private int sheetIndex = -1;
+        private boolean reading;
+        private SSTRecord sst;
+
+        XlsListener(RowCollector<?> collector) {
+            this.collector = collector;
+            this.formatListener = new FormatTrackingHSSFListener(new MissingRecordAwareHSSFListener(this));
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    sheetNames.add(((BoundSheetRecord) record).getSheetname());
+                    break;
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        sheetIndex++;
+                        reading = collector.startSheet(sheetNames.get(sheetIndex));
+                    }
+                    break;
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    break;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord labelSST = (LabelSSTRecord) record;
+                    cell(labelSST.getColumn(), sst.getString(labelSST.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord label = (LabelRecord) record;
+                    cell(label.getColumn(), label.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    cell(number.getColumn(), formatListener.formatNumberDateCell(number));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    if (boolErr.isBoolean()) {
+                        cell(boolErr.getColumn(), String.valueOf(boolErr.getBooleanValue()));
+                    }
+                    break;
+                default:
+                    if (record instanceof LastCellOfRowDummyRecord && reading) {
+                        collector.endRow();
+                    }
+                    break;
+            }
+        }
+
+        private void cell(int column, String value) {
+            if (reading) {
+                collector.cell(column, value);
+            }
+        }
+    }
+
+    /**
+     * 把单元格组装成对象，攒够chunkSize个后交给consumer
+     */
+    private static class RowCollector<T> {
+
+        private Set<String> skipSheetNames = new HashSet<>();
+        private Map<String, String> propertyMap;
+        private Class<T> clazz;
+        private int chunkSize;
+        private Consumer<List<T>> consumer;
+
+        private Map<Integer, String> properties;
+        private Map<Integer, String> cells = new HashMap<>();
+        private List<T> chunk = new ArrayList<>();
+        private int total;
+
+        RowCollector(ExcelReadConfig config, Class<T> clazz, int chunkSize, Consumer<List<T>> consumer) {
+            if (config.getSkipSheetNames() != null) {
+                Arrays.stream(config.getSkipSheetNames()).forEach(name -> skipSheetNames.add(name.toLowerCase()));
+            }
+            this.propertyMap = config.getPropertyMap();
+            this.clazz = clazz;
+            this.chunkSize = chunkSize;
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return 该sheet是否需要读取
+         */
+        boolean startSheet(String sheetName) {
+            properties = null;
+            cells.clear();
+            return !skipSheetNames.contains(sheetName.toLowerCase());
+        }
+
+        void cell(int column, String value) {
+            if (!StringUtils.isEmpty(value)) {
+                cells.put(column, value);
+            }
+        }
+
+        void endRow() {
+            if (cells.isEmpty()) {
+                return;
+            }
+            if (properties == null) {
+                properties = new HashMap<>();
+                cells.forEach((column, header) -> {
+                    String property = propertyMap.get(header.trim());
+                    if (property == null) {
+                        throw new IllegalArgumentException("illegal excel column: " + header);
+                    }
+                    properties.put(column, property);
+                });
+            } else {
+                T object = BeanUtils.instantiateClass(clazz);
+                BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(object);
+                cells.forEach((column, value) -> {
+                    String property = properties.get(column);
+                    if (property != null) {
+                        wrapper.setPropertyValue(property, value);
+                    }
+                });
+                chunk.add(object);
+                total++;
+                if (chunk.size() >= chunkSize) {
+                    flush();
+                }
+            }
+            cells.clear();
+        }
+
+        void flush() {
+            if (!chunk.isEmpty()) {
+                List<T> rows = chunk;
+                chunk = new ArrayList<>();
+                consumer.accept(rows);
+            }
+        }
+    }
+}
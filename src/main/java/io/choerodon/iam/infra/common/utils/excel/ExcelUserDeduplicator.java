@@ -0,0 +1,200 @@
+package io.choerodon.iam.infra.common.utils.excel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.BeanUtils;
+
+import io.choerodon.iam.api.dto.ErrorUserDTO;
+import io.choerodon.iam.infra.dataobject.UserDO;
+
+/**
+ * excel导入用户时按登录名和邮箱去重，每批两次遍历，错误原因只取决于批次内容，与行的顺序无关
+ * 第一次遍历统计每个登录名和邮箱出现在几组不同的(登录名, 邮箱)中，第二次遍历按顺序确定原因：
+ * 登录名和邮箱完全相同的重复行为"重复的用户名和邮箱"；登录名和邮箱都与其他行重复的行全部为"重复的用户名和密码"；
+ * 其余行中登录名重复的保留第一行，其他为"重复的用户名"，然后邮箱重复的保留第一行，其他为"重复的邮箱"
+ * 保留的用户在整个导入过程中都会记录下来，后面批次的用户也会和之前批次的用户比较
+ * 非线程安全，每次导入使用一个实例
+ *
+ * @author superlee
+ */
+public class ExcelUserDeduplicator {
+
+    /**
+     * 批次内一个登录名（邮箱）出现在多组不同的(登录名, 邮箱)中，校验通过的登录名和邮箱不会包含空字符
+     */
+    private static final String MULTIPLE = "\u0000";
+
+    /**
+     * 拼接登录名和邮箱
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * 之前批次保留的登录名到邮箱
+     */
+    private final StringHashMap loginNames = new StringHashMap();
+
+    /**
+     * 之前批次保留的邮箱到登录名
+     */
+    private final StringHashMap emails = new StringHashMap();
+
+    /**
+     * @param users      校验通过的用户，登录名和邮箱不为空
+     * @param errorUsers 重复的用户加上原因后放到这里
+     * @return 去重后的用户，顺序与users一致
+     */
+    public List<UserDO> distinct(List<UserDO> users, List<ErrorUserDTO> errorUsers) {
+        //第一次遍历，标记完全相同的重复行，统计登录名和邮箱
+        StringHashMap pairs = new StringHashMap();
+        StringHashMap batchLoginNames = new StringHashMap();
+        StringHashMap batchEmails = new StringHashMap();
+        boolean[] duplicated = new boolean[users.size()];
+        int index = 0;
+        for (UserDO user : users) {
+            String loginName = user.getLoginName();
+            String email = user.getEmail();
+            String pair = loginName + SEPARATOR + email;
+            if (pairs.get(pair) != null) {
+                duplicated[index] = true;
+            } else {
+                pairs.put(pair, loginName);
+                batchLoginNames.put(loginName, batchLoginNames.get(loginName) == null ? email : MULTIPLE);
+                batchEmails.put(email, batchEmails.get(email) == null ? loginName : MULTIPLE);
+            }
+            index++;
+        }
+        //第二次遍历，按顺序确定原因
+        StringHashMap keptLoginNames = new StringHashMap();
+        StringHashMap keptEmails = new StringHashMap();
+        List<UserDO> distinct = new ArrayList<>(users.size());
+        index = 0;
+        for (UserDO user : users) {
+            String loginName = user.getLoginName();
+            String email = user.getEmail();
+            String cause = null;
+            if (duplicated[index++]) {
+                cause = "Excel中存在重复的用户名和邮箱";
+            } else if (MULTIPLE.equals(batchLoginNames.get(loginName)) && MULTIPLE.equals(batchEmails.get(email))) {
+                //登录名和邮箱分别与不同的行重复
+                cause = "Excel中存在重复的用户名和密码";
+            } else if (keptLoginNames.get(loginName) != null) {
+                cause = "Excel中存在重复的用户名";
+            } else {
+                keptLoginNames.put(loginName, email);
+                if (keptEmails.get(email) != null) {
+                    cause = "Excel中存在重复的邮箱";
+                } else {
+                    keptEmails.put(email, loginName);
+                    cause = previousCause(loginName, email);
+                }
+            }
+            if (cause == null) {
+                loginNames.put(loginName, email);
+                emails.put(email, loginName);
+                distinct.add(user);
+            } else {
+                ErrorUserDTO dto = new ErrorUserDTO();
+                BeanUtils.copyProperties(user, dto);
+                dto.setCause(cause);
+                errorUsers.add(dto);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * 与之前批次比较，之前批次中出现过的登录名或邮箱视为excel中重复
+     */
+    private String previousCause(String loginName, String email) {
+        boolean loginNameExisted = loginNames.get(loginName) != null;
+        boolean emailExisted = emails.get(email) != null;
+        if (loginNameExisted && emailExisted) {
+            return "Excel中存在重复的用户名和邮箱";
+        } else if (loginNameExisted) {
+            return "Excel中存在重复的用户名";
+        } else if (emailExisted) {
+            return "Excel中存在重复的邮箱";
+        }
+        return null;
+    }
+
+    public int size() {
+        return loginNames.size;
+    }
+
+    /**
+     * 开放寻址（线性探测）的字符串map，key和value放在平行数组里，不为每个entry创建对象
+     * 只支持put和get，key不能为null
+     */
+    static final class StringHashMap {
+
+        private String[] keys = new String[16];
+        private String[] values = new String[16];
+        private int[] hashes = new int[16];
+        private int size;
+
+        String get(String key) {
+            int hash = hash(key);
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && keys[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        void put(String key, String value) {
+            //负载因子0.5，探测链保持很短
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int hash = hash(key);
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (keys[i] != null) {
+                if (hashes[i] == hash && keys[i].equals(key)) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            hashes[i] = hash;
+            size++;
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+            int capacity = oldKeys.length * 2;
+            keys = new String[capacity];
+            values = new String[capacity];
+            hashes = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = oldHashes[j] & mask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+
+        /**
+         * String.hashCode的低位分布不均匀，乘黄金分割常数后再混合高位
+         */
+        private static int hash(String key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -13,14 +13,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import io.choerodon.iam.app.service.OrganizationUserService;
 import io.choerodon.iam.domain.iam.entity.UserE;
 import io.choerodon.iam.domain.repository.LdapHistoryRepository;
 import io.choerodon.iam.domain.repository.UserRepository;
+import io.choerodon.iam.infra.common.utils.BulkPasswordEncoder;
 import io.choerodon.iam.infra.common.utils.CollectionUtils;
+import io.choerodon.iam.infra.common.utils.ImportProgress;
+import io.choerodon.iam.infra.common.utils.ImportProgressRegistry;
 import io.choerodon.iam.infra.dataobject.LdapDO;
 import io.choerodon.iam.infra.dataobject.LdapHistoryDO;
 import io.choerodon.iam.infra.dataobject.UserDO;
@@ -36,20 +38,26 @@ public class LdapSyncUserTask {
 
     private static final String DIMISSION_VALUE = "1";
 
-    private static final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder();
-
     private UserRepository userRepository;
 
     private OrganizationUserService organizationUserService;
 
     private LdapHistoryRepository ldapHistoryRepository;
 
+    private BulkPasswordEncoder bulkPasswordEncoder;
+
+    private ImportProgressRegistry importProgressRegistry;
+
     public LdapSyncUserTask(UserRepository userRepository,
                             OrganizationUserService organizationUserService,
-                            LdapHistoryRepository ldapHistoryRepository) {
+                            LdapHistoryRepository ldapHistoryRepository,
+                            BulkPasswordEncoder bulkPasswordEncoder,
+                            ImportProgressRegistry importProgressRegistry) {
         this.userRepository = userRepository;
         this.organizationUserService = organizationUserService;
         this.ldapHistoryRepository = ldapHistoryRepository;
+        this.bulkPasswordEncoder = bulkPasswordEncoder;
+        this.importProgressRegistry = importProgressRegistry;
     }
 
     @Async("ldap-executor")
@@ -73,34 +81,43 @@ public class LdapSyncUserTask {
         ldapHistory.setLdapId(ldap.getId());
         ldapHistory.setSyncBeginTime(ldapSyncReport.getStartTime());
         LdapHistoryDO ldapHistoryDO = ldapHistoryRepository.insertSelective(ldapHistory);
-        List<UserDO> users = new ArrayList<>();
-        while (namingEnumeration != null && namingEnumeration.hasMoreElements()) {
-            //maybe more than one element
-            SearchResult searchResult = (SearchResult) namingEnumeration.nextElement();
-            Attributes attributes = searchResult.getAttributes();
-            UserDO user = extractUser(attributes, organizationId, ldap);
-            if (user == null) {
-                continue;
-            }
-            ldapSyncReport.incrementCount();
-            users.add(user);
-        }
-        logger.info("###total user count : {}", ldapSyncReport.getCount());
-        //写入
-        if (!users.isEmpty()) {
-            compareWithDbAndInsert(users, ldapSyncReport);
-        }
-        ldapSyncReport.setEndTime(new Date(System.currentTimeMillis()));
-        logger.info("async finished : {}", ldapSyncReport);
+        //检查点更新了版本号，最终回调前同步到ldapHistoryDO
+        ImportProgress progress = importProgressRegistry.start(ImportProgressRegistry.ldapKey(ldap.getId()), dto ->
+                ldapHistoryDO.setObjectVersionNumber(fallback.checkpoint(ldapSyncReport, ldapHistoryDO).getObjectVersionNumber()));
         try {
-            ldapContext.close();
-        } catch (NamingException e) {
-            logger.warn("error.close.ldap.connect");
+            List<UserDO> users = new ArrayList<>();
+            while (namingEnumeration != null && namingEnumeration.hasMoreElements()) {
+                //maybe more than one element
+                SearchResult searchResult = (SearchResult) namingEnumeration.nextElement();
+                Attributes attributes = searchResult.getAttributes();
+                UserDO user = extractUser(attributes, organizationId, ldap);
+                if (user == null) {
+                    continue;
+                }
+                ldapSyncReport.incrementCount();
+                users.add(user);
+                progress.addRead(1);
+                importProgressRegistry.report(progress);
+            }
+            logger.info("###total user count : {}", ldapSyncReport.getCount());
+            //写入
+            if (!users.isEmpty()) {
+                compareWithDbAndInsert(users, ldapSyncReport, progress);
+            }
+            ldapSyncReport.setEndTime(new Date(System.currentTimeMillis()));
+            logger.info("async finished : {}", ldapSyncReport);
+            try {
+                ldapContext.close();
+            } catch (NamingException e) {
+                logger.warn("error.close.ldap.connect");
+            }
+            fallback.callback(ldapSyncReport, ldapHistoryDO);
+        } finally {
+            importProgressRegistry.finish(progress);
         }
-        fallback.callback(ldapSyncReport, ldapHistoryDO);
     }
 
-    private void compareWithDbAndInsert(List<UserDO> users, LdapSyncReport ldapSyncReport) {
+    private void compareWithDbAndInsert(List<UserDO> users, LdapSyncReport ldapSyncReport, ImportProgress progress) {
         List<UserDO> insertUsers = new ArrayList<>();
         Set<String> nameSet = users.stream().map(UserDO::getLoginName).collect(Collectors.toSet());
         Set<String> emailSet = users.stream().map(UserDO::getEmail).collect(Collectors.toSet());
@@ -123,7 +140,7 @@ public class LdapSyncUserTask {
                     //可以插入
                     u.setLanguage("zh_CN");
                     u.setTimeZone("CTT");
-                    u.setPassword(ENCODER.encode("unknown password"));
+                    u.setPassword(bulkPasswordEncoder.placeholder(BulkPasswordEncoder.LDAP_PASSWORD));
                     u.setLocked(false);
                     u.setLdap(true);
                     u.setAdmin(false);
@@ -142,10 +159,14 @@ public class LdapSyncUserTask {
                 //更新,目前不做更新操作
             }
         });
+        progress.addValidated(insertUsers.size());
+        progress.setFailed(ldapSyncReport.getError());
         List<List<UserDO>> list = CollectionUtils.subList(insertUsers, 1000);
         list.forEach(l -> {
             if (!l.isEmpty()) {
                 organizationUserService.batchCreateUsers(l);
+                progress.addInserted(l.size());
+                importProgressRegistry.report(progress);
             }
         });
     }
@@ -193,6 +214,14 @@ public class LdapSyncUserTask {
          * @param ldapSyncReport 同步结果
          */
         LdapHistoryDO callback(LdapSyncReport ldapSyncReport, LdapHistoryDO ldapHistoryDO);
+
+        /**
+         * 同步过程中保存进度
+         *
+         * @param ldapSyncReport 当前的同步结果
+         * @return 更新后的历史记录
+         */
+        LdapHistoryDO checkpoint(LdapSyncReport ldapSyncReport, LdapHistoryDO ldapHistoryDO);
     }
 
 
@@ -213,5 +242,13 @@ public class LdapSyncUserTask {
             ldapHistoryDO.setErrorUserCount(ldapSyncReport.getError());
             return ldapHistoryRepository.updateByPrimaryKeySelective(ldapHistoryDO);
         }
+
+        @Override
+        public LdapHistoryDO checkpoint(LdapSyncReport ldapSyncReport, LdapHistoryDO ldapHistoryDO) {
+            ldapHistoryDO.setNewUserCount(ldapSyncReport.getInsert());
+            ldapHistoryDO.setUpdateUserCount(ldapSyncReport.getUpdate());
+            ldapHistoryDO.setErrorUserCount(ldapSyncReport.getError());
+            return ldapHistoryRepository.updateByPrimaryKeySelective(ldapHistoryDO);
+        }
     }
 }
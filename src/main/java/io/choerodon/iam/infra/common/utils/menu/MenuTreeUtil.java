@@ -2,12 +2,11 @@ package io.choerodon.iam.infra.common.utils.menu;
 
 import io.choerodon.iam.api.dto.MenuDTO;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
- * 递归解析菜单列表为菜单树的形式
+ * 解析菜单列表为菜单树的形式
+ * 先按parentId为每个菜单建立子菜单列表，再对每个列表排序一次，复杂度为O(n log n)
  *
  * @author wuguokai
  */
@@ -19,12 +18,20 @@ public class MenuTreeUtil {
     //将菜单格式化成树形
     public static List<MenuDTO> formatMenu(List<MenuDTO> entryList) {
         List<MenuDTO> displayMenus = new ArrayList<>();
+        Map<Long, List<MenuDTO>> children = new HashMap<>(entryList.size() * 2);
         for (MenuDTO menuDTO : entryList) {
-            if ((menuDTO.getParentId() == null || menuDTO.getParentId() == 0)
+            Long parentId = menuDTO.getParentId();
+            if ((parentId == null || parentId == 0)
                     && ("root".equals(menuDTO.getType()) || "dir".equals(menuDTO.getType()))) {
-                menuDTO.setSubMenus(processMenu(menuDTO.getId(), entryList));
                 displayMenus.add(menuDTO);
             }
+            if (parentId != null) {
+                children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(menuDTO);
+            }
+        }
+        for (MenuDTO menuDTO : entryList) {
+            List<MenuDTO> subMenus = children.get(menuDTO.getId());
+            menuDTO.setSubMenus(subMenus == null ? null : sortMenu(subMenus));
         }
         if (!displayMenus.isEmpty()) {
             return sortMenu(displayMenus);
@@ -32,37 +39,25 @@ public class MenuTreeUtil {
         return displayMenus;
     }
 
-    //递归将菜单格式化成树形
-    private static List<MenuDTO> processMenu(Long id, List<MenuDTO> menus) {
-        List<MenuDTO> subMenus = null;
-        for (MenuDTO menu : menus) {
-            if (menu.getParentId().equals(id)) {
-                if (subMenus == null) {
-                    subMenus = new ArrayList<>();
-                }
-                menu.setSubMenus(processMenu(menu.getId(), menus));
-                subMenus.add(menu);
-            }
+    /**
+     * 按sort升序稳定排序，sort为空的排在最前
+     * 排序键的高32位为sort，低32位为原列表中的位置，排序long数组避免装箱比较
+     */
+    private static List<MenuDTO> sortMenu(List<MenuDTO> entryList) {
+        int size = entryList.size();
+        if (size < 2) {
+            return entryList;
         }
-        if (subMenus != null) {
-            return sortMenu(subMenus);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            Integer sort = entryList.get(i).getSort();
+            keys[i] = ((long) (sort == null ? Integer.MIN_VALUE : sort) << 32) | i;
         }
-        return subMenus;
-    }
-
-    private static List<MenuDTO> sortMenu(List<MenuDTO> entryList) {
-        Collections.sort(entryList, (MenuDTO m1, MenuDTO m2) -> {
-            if (m1.getSort() == null) {
-                return -1;
-            }
-            if (m2.getSort() == null || m1.getSort() > m2.getSort()) {
-                return 1;
-            }
-            if (m1.getSort().equals(m2.getSort())) {
-                return 0;
-            }
-            return -1;
-        });
-        return entryList;
+        Arrays.sort(keys);
+        List<MenuDTO> sorted = new ArrayList<>(size);
+        for (long key : keys) {
+            sorted.add(entryList.get((int) key));
+        }
+        return sorted;
     }
 }
@@ -0,0 +1,64 @@
+package io.choerodon.iam.infra.common.utils.swagger;
+
+/**
+ * swagger文档中的一个接口，只保留解析权限需要的字段
+ *
+ * @author superlee
+ */
+public class SwaggerOperation {
+
+    private String path;
+
+    private String method;
+
+    /**
+     * 以-controller结尾的tag去掉后缀，没有时为null
+     */
+    private String resourceCode;
+
+    private String summary;
+
+    /**
+     * SwaggerExtraData的json字符串
+     */
+    private String description;
+
+    /**
+     * 以上字段的md5，用于判断接口是否变化
+     */
+    private String hash;
+
+    public SwaggerOperation(String path, String method, String resourceCode,
+                            String summary, String description, String hash) {
+        this.path = path;
+        this.method = method;
+        this.resourceCode = resourceCode;
+        this.summary = summary;
+        this.description = description;
+        this.hash = hash;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getResourceCode() {
+        return resourceCode;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+}
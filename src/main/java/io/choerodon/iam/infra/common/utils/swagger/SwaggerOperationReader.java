@@ -0,0 +1,136 @@
+package io.choerodon.iam.infra.common.utils.swagger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
+
+import io.choerodon.core.swagger.SwaggerExtraData;
+
+/**
+ * 流式读取swagger文档的paths -> method -> tags/summary/description，不构建整棵JsonNode树
+ *
+ * @author superlee
+ */
+public final class SwaggerOperationReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SwaggerOperationReader.class);
+
+    private static final String CONTROLLER_SUFFIX = "-controller";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ObjectReader EXTRA_DATA_READER = new ObjectMapper().readerFor(SwaggerExtraData.class);
+
+    private SwaggerOperationReader() {
+    }
+
+    /**
+     * 读取文档中的所有接口，按文档中的顺序返回
+     *
+     * @param json swagger文档
+     */
+    public static List<SwaggerOperation> read(String json) throws IOException {
+        List<SwaggerOperation> operations = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return operations;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if ("paths".equals(field) && parser.nextToken() == JsonToken.START_OBJECT) {
+                    readPaths(parser, operations);
+                } else {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * 接口的SwaggerExtraData，没有或读取失败时返回null
+     */
+    public static SwaggerExtraData readExtraData(SwaggerOperation operation) {
+        if (operation.getDescription() == null) {
+            return null;
+        }
+        try {
+            return EXTRA_DATA_READER.readValue(operation.getDescription());
+        } catch (IOException e) {
+            logger.info("extraData read failed.", e);
+            return null;
+        }
+    }
+
+    /**
+     * 所有接口hash的md5，作为整个文档的指纹
+     */
+    public static String fingerprint(List<SwaggerOperation> operations) {
+        StringBuilder builder = new StringBuilder(operations.size() * 33);
+        operations.forEach(o -> builder.append(o.getHash()).append('\n'));
+        return md5(builder.toString());
+    }
+
+    private static void readPaths(JsonParser parser, List<SwaggerOperation> operations) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String path = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String method = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    operations.add(readOperation(parser, path, method));
+                } else {
+                    //path层级的parameters等
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static SwaggerOperation readOperation(JsonParser parser, String path, String method) throws IOException {
+        String resourceCode = null;
+        String summary = null;
+        String description = null;
+        StringBuilder tags = new StringBuilder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("tags".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    String tag = parser.getValueAsString();
+                    tags.append(tag).append(',');
+                    if (tag != null && tag.endsWith(CONTROLLER_SUFFIX)) {
+                        resourceCode = tag.substring(0, tag.length() - CONTROLLER_SUFFIX.length());
+                    }
+                    parser.skipChildren();
+                }
+            } else if ("summary".equals(field)) {
+                summary = parser.getValueAsString();
+            } else if ("description".equals(field)) {
+                description = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        String hash = md5(path + '\n' + method + '\n' + tags + '\n' + summary + '\n' + description);
+        return new SwaggerOperation(path, method, resourceCode, summary, description, hash);
+    }
+
+    private static String md5(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
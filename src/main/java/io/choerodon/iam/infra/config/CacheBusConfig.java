@@ -0,0 +1,85 @@
+package io.choerodon.iam.infra.config;
+
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import io.choerodon.iam.infra.cache.CacheEventSender;
+import io.choerodon.iam.infra.cache.KafkaCacheEventSender;
+import io.choerodon.iam.infra.common.utils.ImportProgressSender;
+import io.choerodon.iam.infra.common.utils.KafkaImportProgressSender;
+
+/**
+ * 缓存失效事件和导入进度的kafka配置，两者使用不同的topic和consumer group
+ * 每个节点使用独立的consumer group，保证所有节点都能收到广播，
+ * group按节点的固定标识命名，重启后沿用，不会每次启动留下新的group；
+ * 生产者和消费者单独创建，不影响其他kafka配置
+ *
+ * @author superlee
+ */
+@Configuration
+@ConditionalOnProperty(value = "choerodon.cache.bus.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheBusConfig {
+
+    @Value("${spring.application.name:iam-service}")
+    private String applicationName;
+
+    /**
+     * 节点的固定标识，默认为主机名和端口
+     */
+    @Value("${choerodon.cache.bus.instance-id:${spring.cloud.client.hostname:localhost}-${server.port:8030}}")
+    private String instanceId;
+
+    @Bean
+    public CacheEventSender kafkaCacheEventSender(KafkaProperties kafkaProperties) {
+        return new KafkaCacheEventSender(kafkaTemplate(kafkaProperties));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> cacheEventListenerContainerFactory(
+            KafkaProperties kafkaProperties) {
+        return listenerContainerFactory(kafkaProperties, applicationName + "-cache-" + instanceId);
+    }
+
+    @Bean
+    public ImportProgressSender kafkaImportProgressSender(KafkaProperties kafkaProperties) {
+        return new KafkaImportProgressSender(kafkaTemplate(kafkaProperties));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> importProgressListenerContainerFactory(
+            KafkaProperties kafkaProperties) {
+        return listenerContainerFactory(kafkaProperties, applicationName + "-import-progress-" + instanceId);
+    }
+
+    private KafkaTemplate<String, String> kafkaTemplate(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties();
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<String, String>(props));
+    }
+
+    private ConcurrentKafkaListenerContainerFactory<String, String> listenerContainerFactory(
+            KafkaProperties kafkaProperties, String groupId) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<String, String>(props));
+        return factory;
+    }
+}
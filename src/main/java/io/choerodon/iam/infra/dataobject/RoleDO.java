@@ -49,6 +49,9 @@ public class RoleDO extends AuditDomain {
     @Transient
     private String projectName;
 
+    @Transient
+    private Integer userCount;
+
     public List<LabelDO> getLabels() {
         return labels;
     }
@@ -160,4 +163,12 @@ public class RoleDO extends AuditDomain {
     public void setProjectName(String projectName) {
         this.projectName = projectName;
     }
+
+    public Integer getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(Integer userCount) {
+        this.userCount = userCount;
+    }
 }
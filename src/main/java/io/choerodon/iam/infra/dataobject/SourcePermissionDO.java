@@ -0,0 +1,39 @@
+package io.choerodon.iam.infra.dataobject;
+
+/**
+ * 批量权限校验的结果行，sourceType为null表示public/login权限，对所有source都通过
+ *
+ * @author superlee
+ */
+public class SourcePermissionDO {
+
+    private String sourceType;
+
+    private Long sourceId;
+
+    private String code;
+
+    public String getSourceType() {
+        return sourceType;
+    }
+
+    public void setSourceType(String sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    public Long getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
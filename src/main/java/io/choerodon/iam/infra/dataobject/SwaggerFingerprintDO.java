@@ -0,0 +1,75 @@
+package io.choerodon.iam.infra.dataobject;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 服务最近一次解析的swagger文档的指纹，每个服务一条，文档未变化时跳过权限解析
+ *
+ * @author superlee
+ */
+@VersionAudit
+@ModifyAudit
+@Table(name = "iam_swagger_fingerprint")
+public class SwaggerFingerprintDO extends AuditDomain {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String serviceName;
+
+    /**
+     * 最近一次解析的服务版本，只用于排查问题
+     */
+    private String version;
+
+    private String fingerprint;
+
+    private String operations;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String getOperations() {
+        return operations;
+    }
+
+    public void setOperations(String operations) {
+        this.operations = operations;
+    }
+}
@@ -0,0 +1,46 @@
+package io.choerodon.iam.infra.enums;
+
+/**
+ * 集群内缓存失效事件的类型
+ *
+ * @author superlee
+ */
+public enum CacheEventType {
+
+    /**
+     * permission表新增、更新或删除
+     */
+    PERMISSION_CHANGED,
+    /**
+     * 角色的role_permission或启用状态变化，id为角色id
+     */
+    ROLE_PERMISSION_CHANGED,
+    /**
+     * 用户在某个source下的member_role变化，id为用户id
+     */
+    MEMBER_ROLE_CHANGED,
+    /**
+     * 角色的role_label变化或角色被删除，id为角色id
+     */
+    ROLE_LABEL_CHANGED,
+    /**
+     * 用户新增、更新或删除，id为用户id
+     */
+    USER_CHANGED,
+    /**
+     * 菜单或menu_permission变化，sourceType为菜单层级
+     */
+    MENU_CHANGED,
+    /**
+     * lookup或lookup_value变化，code为lookup的code
+     */
+    LOOKUP_CHANGED,
+    /**
+     * 语言变化
+     */
+    LANGUAGE_CHANGED,
+    /**
+     * 定时整体刷新，只在本节点分发，不广播
+     */
+    REFRESH
+}
@@ -3,6 +3,7 @@ package io.choerodon.iam.infra.mapper;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
 import io.choerodon.mybatis.common.BaseMapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -17,4 +18,18 @@ public interface MemberRoleMapper extends BaseMapper<MemberRoleDO> {
 
     int selectCountBySourceId(@Param("id") Long id, @Param("type") String type);
 
+    List<MemberRoleDO> selectByMemberIds(@Param("memberIds") List<Long> memberIds,
+                                         @Param("memberType") String memberType,
+                                         @Param("sourceId") Long sourceId,
+                                         @Param("sourceType") String sourceType);
+
+    int batchInsert(@Param("memberRoles") List<MemberRoleDO> memberRoles);
+
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 以游标方式读取项目层用户的member_role，按(source_id, member_id)排序
+     */
+    void selectProjectUserMemberRoles(ResultHandler<MemberRoleDO> handler);
+
 }
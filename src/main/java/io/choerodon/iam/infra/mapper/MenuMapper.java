@@ -19,4 +19,6 @@ public interface MenuMapper extends BaseMapper<MenuDO> {
                                                           @Param("sourceType") String sourceType, @Param("sourceId") Long sourceId);
 
     void deleteMenusById(@Param("menuIds") List<Long> menuIds);
+
+    int updateParentAndSort(@Param("menus") List<MenuDO> menus, @Param("lastUpdatedBy") Long lastUpdatedBy);
 }
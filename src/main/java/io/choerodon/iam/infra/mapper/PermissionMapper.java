@@ -1,10 +1,12 @@
 package io.choerodon.iam.infra.mapper;
 
 import io.choerodon.iam.infra.dataobject.PermissionDO;
+import io.choerodon.iam.infra.dataobject.SourcePermissionDO;
 import io.choerodon.mybatis.common.BaseMapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -20,4 +22,20 @@ public interface PermissionMapper extends BaseMapper<PermissionDO> {
     Set<String> checkPermission(@Param("member_id") Long memberId, @Param("source_type") String sourceType,
                                 @Param("source_id") Long sourceId, @Param("codes") Set<String> codes);
 
+    /**
+     * 一次查询校验多个source下的权限
+     *
+     * @param memberId 用户id
+     * @param sources  sourceType -> sourceId -> codes
+     * @param codes    所有待校验的code，用于匹配public/login权限
+     */
+    List<SourcePermissionDO> checkPermissionBySources(@Param("member_id") Long memberId,
+                                                      @Param("sources") Map<String, Map<Long, Set<String>>> sources,
+                                                      @Param("codes") Set<String> codes);
+
+    /**
+     * 多行插入，code已存在时更新
+     */
+    int upsertList(@Param("permissions") List<PermissionDO> permissions);
+
 }
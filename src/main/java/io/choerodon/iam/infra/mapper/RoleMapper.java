@@ -33,5 +33,12 @@ public interface RoleMapper extends BaseMapper<RoleDO> {
 
     Set<String> matchCode(@Param("codeSet") Set<String> codeSet);
 
+    List<RoleDO> selectByCodes(@Param("codeSet") Set<String> codeSet);
+
     List<RoleDO> queryRoleByOrgId(@Param("orgId") Long orgId);
+
+    /**
+     * 所有有label的角色，只填充id和labels的id、name
+     */
+    List<RoleDO> selectAllWithLabels();
 }
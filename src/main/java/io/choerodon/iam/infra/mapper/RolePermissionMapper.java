@@ -12,4 +12,10 @@ import java.util.List;
 public interface RolePermissionMapper extends BaseMapper<RolePermissionDO> {
 
     List<Long> queryPermissionIdByRoles(@Param("list") List<Long> roleIds);
+
+    List<RolePermissionDO> selectByServiceName(@Param("serviceName") String serviceName);
+
+    int batchInsert(@Param("rolePermissions") List<RolePermissionDO> rolePermissions);
+
+    int deleteByIds(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,10 @@
+package io.choerodon.iam.infra.mapper;
+
+import io.choerodon.iam.infra.dataobject.SwaggerFingerprintDO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+/**
+ * @author superlee
+ */
+public interface SwaggerFingerprintMapper extends BaseMapper<SwaggerFingerprintDO> {
+}
@@ -1,9 +1,11 @@
 package io.choerodon.iam.infra.mapper;
 
 import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO;
+import io.choerodon.iam.infra.dataobject.RoleDO;
 import io.choerodon.iam.infra.dataobject.UserDO;
 import io.choerodon.mybatis.common.BaseMapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Set;
@@ -14,7 +16,7 @@ import java.util.Set;
  */
 public interface UserMapper extends BaseMapper<UserDO> {
 
-    List<UserDO> fulltextSearch(@Param("userDO") UserDO userDO,
+    List<UserDO> fulltextSearch(@Param("userDO") UserDO userDO, @Param("ids") List<Long> ids,
                                 @Param("param") String param);
 
     List<UserDO> selectUserWithRolesByOption(
@@ -25,6 +27,14 @@ public interface UserMapper extends BaseMapper<UserDO> {
             @Param("size") Integer size,
             @Param("param") String param);
 
+    List<UserDO> selectUserWithRolesByCursor(
+            @Param("roleAssignmentSearchDTO") RoleAssignmentSearchDTO roleAssignmentSearchDTO,
+            @Param("sourceId") Long sourceId,
+            @Param("sourceType") String sourceType,
+            @Param("cursor") Long cursor,
+            @Param("size") Integer size,
+            @Param("param") String param);
+
     int selectCountUsers(@Param("roleAssignmentSearchDTO")
                                  RoleAssignmentSearchDTO roleAssignmentSearchDTO,
                          @Param("sourceId") Long sourceId,
@@ -44,6 +54,25 @@ public interface UserMapper extends BaseMapper<UserDO> {
                                                            RoleAssignmentSearchDTO roleAssignmentSearchDTO,
                                                    @Param("param") String param);
 
+    /**
+     * 多行插入用户，mysql下会回填id
+     */
+    int batchInsert(List<UserDO> users);
+
+    /**
+     * 每个角色在该source下满足条件的用户数，id为角色id，没有用户的角色不返回
+     */
+    List<RoleDO> selectUserCountGroupByRole(@Param("memberType") String memberType,
+                                            @Param("sourceId") Long sourceId,
+                                            @Param("sourceType") String sourceType,
+                                            @Param("roleAssignmentSearchDTO")
+                                                    RoleAssignmentSearchDTO roleAssignmentSearchDTO,
+                                            @Param("param") String param);
+
+    List<UserDO> selectUsersByRoleIds(@Param("roleIds") List<Long> roleIds,
+                                      @Param("sourceId") Long sourceId,
+                                      @Param("sourceType") String sourceType);
+
     List selectUsersFromMemberRoleByOptions(@Param("roleId") Long roleId,
                                             @Param("memberType") String memberType,
                                             @Param("sourceId") Long sourceId,
@@ -55,10 +84,18 @@ public interface UserMapper extends BaseMapper<UserDO> {
 
     List<UserDO> listUsersByIds(@Param("ids") Long[] ids);
 
-    List<UserDO> selectAdminUserPage(@Param("userDO") UserDO userDO, @Param("params") String params);
+    List<UserDO> selectAdminUserPage(@Param("userDO") UserDO userDO, @Param("params") String params,
+                                     @Param("ids") List<Long> ids);
+
+    /**
+     * 以游标方式读取用户的id、login_name、email、real_name，用于加载搜索索引
+     */
+    void selectSearchFields(ResultHandler<UserDO> handler);
 
     Set<String> matchLoginName(@Param("nameSet") Set<String> nameSet);
 
+    List<UserDO> selectByLoginNames(@Param("nameSet") Set<String> nameSet);
+
     Set<String> matchEmail(@Param("emailSet") Set<String> emailSet);
 
     Long[] listUserIds();
@@ -3,8 +3,11 @@ package io.choerodon.iam.infra.repository.impl;
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
+import io.choerodon.core.oauth.CustomUserDetails;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.domain.iam.entity.MemberRoleE;
 import io.choerodon.iam.domain.repository.MemberRoleRepository;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.dataobject.MemberRoleDO;
 import io.choerodon.iam.infra.mapper.MemberRoleMapper;
 import io.choerodon.iam.infra.mapper.OrganizationMapper;
@@ -12,7 +15,7 @@ import io.choerodon.iam.infra.mapper.ProjectMapper;
 import io.choerodon.iam.infra.mapper.RoleMapper;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * @author superlee
@@ -21,6 +24,8 @@ import java.util.List;
 @Component
 public class MemberRoleRepositoryImpl implements MemberRoleRepository {
 
+    private static final int BATCH_SIZE = 1000;
+
     private MemberRoleMapper memberRoleMapper;
 
     private ProjectMapper projectMapper;
@@ -45,17 +50,8 @@ public class MemberRoleRepositoryImpl implements MemberRoleRepository {
         if (memberRoleDO.getMemberType() == null) {
             memberRoleDO.setMemberType("user");
         }
-        if (roleMapper.selectByPrimaryKey(memberRoleDO.getRoleId()) == null) {
-            throw new CommonException("error.member_role.insert.role.not.exist");
-        }
-        if (ResourceLevel.PROJECT.value().equals(memberRoleDO.getSourceType())
-                && projectMapper.selectByPrimaryKey(memberRoleDO.getSourceId()) == null) {
-            throw new CommonException("error.member_role.insert.project.not.exist");
-        }
-        if (ResourceLevel.ORGANIZATION.value().equals(memberRoleDO.getSourceType())
-                && organizationMapper.selectByPrimaryKey(memberRoleDO.getSourceId()) == null) {
-            throw new CommonException("error.member_role.insert.organization.not.exist");
-        }
+        checkRole(memberRoleDO.getRoleId());
+        checkSource(memberRoleDO.getSourceId(), memberRoleDO.getSourceType());
         if (memberRoleMapper.selectOne(memberRoleDO) != null) {
             throw new CommonException("error.member_role.has.existed");
         }
@@ -92,4 +88,68 @@ public class MemberRoleRepositoryImpl implements MemberRoleRepository {
                                        final long sourceId, final String sourceType) {
         return memberRoleMapper.selectDeleteList(memberId, sourceId, sourceType, deleteList);
     }
+
+    @Override
+    public List<MemberRoleDO> selectByMemberIds(List<Long> memberIds, String memberType,
+                                                Long sourceId, String sourceType) {
+        List<MemberRoleDO> memberRoles = new ArrayList<>();
+        for (List<Long> batch : CollectionUtils.subList(memberIds, BATCH_SIZE)) {
+            memberRoles.addAll(memberRoleMapper.selectByMemberIds(batch, memberType, sourceId, sourceType));
+        }
+        return memberRoles;
+    }
+
+    @Override
+    public void insertList(List<MemberRoleDO> memberRoles) {
+        Date now = new Date();
+        Long operator = Optional.ofNullable(DetailsHelper.getUserDetails()).map(CustomUserDetails::getUserId).orElse(0L);
+        Set<Long> roleIds = new HashSet<>();
+        Set<String> sources = new HashSet<>();
+        for (MemberRoleDO memberRole : memberRoles) {
+            if (memberRole.getMemberType() == null) {
+                memberRole.setMemberType("user");
+            }
+            //多行插入不会走审计拦截器
+            memberRole.setCreatedBy(operator);
+            memberRole.setLastUpdatedBy(operator);
+            memberRole.setCreationDate(now);
+            memberRole.setLastUpdateDate(now);
+            memberRole.setObjectVersionNumber(1L);
+            if (roleIds.add(memberRole.getRoleId())) {
+                checkRole(memberRole.getRoleId());
+            }
+            if (sources.add(memberRole.getSourceType() + ":" + memberRole.getSourceId())) {
+                checkSource(memberRole.getSourceId(), memberRole.getSourceType());
+            }
+        }
+        for (List<MemberRoleDO> batch : CollectionUtils.subList(memberRoles, BATCH_SIZE)) {
+            if (memberRoleMapper.batchInsert(batch) != batch.size()) {
+                throw new CommonException("error.member_role.create");
+            }
+        }
+    }
+
+    @Override
+    public void deleteByIds(List<Long> ids) {
+        for (List<Long> batch : CollectionUtils.subList(ids, BATCH_SIZE)) {
+            memberRoleMapper.deleteByIds(batch);
+        }
+    }
+
+    private void checkRole(Long roleId) {
+        if (roleMapper.selectByPrimaryKey(roleId) == null) {
+            throw new CommonException("error.member_role.insert.role.not.exist");
+        }
+    }
+
+    private void checkSource(Long sourceId, String sourceType) {
+        if (ResourceLevel.PROJECT.value().equals(sourceType)
+                && projectMapper.selectByPrimaryKey(sourceId) == null) {
+            throw new CommonException("error.member_role.insert.project.not.exist");
+        }
+        if (ResourceLevel.ORGANIZATION.value().equals(sourceType)
+                && organizationMapper.selectByPrimaryKey(sourceId) == null) {
+            throw new CommonException("error.member_role.insert.organization.not.exist");
+        }
+    }
 }
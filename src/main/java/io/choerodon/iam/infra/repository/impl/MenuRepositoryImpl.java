@@ -2,13 +2,17 @@ package io.choerodon.iam.infra.repository.impl;
 
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.core.oauth.CustomUserDetails;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.domain.iam.entity.MenuE;
 import io.choerodon.iam.domain.repository.MenuRepository;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.dataobject.MenuDO;
 import io.choerodon.iam.infra.mapper.MenuMapper;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author wuguokai
@@ -17,6 +21,8 @@ import java.util.List;
 @Component
 public class MenuRepositoryImpl implements MenuRepository {
 
+    private static final int BATCH_SIZE = 500;
+
     private MenuMapper menuMapper;
 
     public MenuRepositoryImpl(MenuMapper menuMapper) {
@@ -65,6 +71,18 @@ public class MenuRepositoryImpl implements MenuRepository {
         menuMapper.deleteMenusById(menuIds);
     }
 
+    @Override
+    public void updateParentAndSort(List<MenuDO> menus) {
+        //批量更新不会走审计拦截器
+        Long operator = Optional.ofNullable(DetailsHelper.getUserDetails()).map(CustomUserDetails::getUserId).orElse(0L);
+        for (List<MenuDO> batch : CollectionUtils.subList(menus, BATCH_SIZE)) {
+            //影响行数不一致说明有菜单已被删除或已被其他人更新
+            if (menuMapper.updateParentAndSort(batch, operator) != batch.size()) {
+                throw new CommonException("error.objectNumber.update");
+            }
+        }
+    }
+
     @Override
     public List<MenuDO> selectByLevel(String level) {
         MenuDO menuDO = new MenuDO();
@@ -3,17 +3,20 @@ package io.choerodon.iam.infra.repository.impl;
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.core.oauth.CustomUserDetails;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.domain.iam.entity.PermissionE;
 import io.choerodon.iam.domain.repository.PermissionRepository;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.dataobject.PermissionDO;
+import io.choerodon.iam.infra.dataobject.SourcePermissionDO;
 import io.choerodon.iam.infra.mapper.PermissionMapper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.mybatis.pagehelper.domain.Sort;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author wuguokai
@@ -21,6 +24,8 @@ import java.util.Set;
 @Component
 public class PermissionRepositoryImpl implements PermissionRepository {
 
+    private static final int BATCH_SIZE = 500;
+
     private PermissionMapper permissionMapper;
 
     public PermissionRepositoryImpl(PermissionMapper permissionMapper) {
@@ -86,6 +91,16 @@ public class PermissionRepositoryImpl implements PermissionRepository {
         return permissionMapper.checkPermission(memberId, sourceType, sourceId, codes);
     }
 
+    @Override
+    public List<SourcePermissionDO> checkPermissionBySources(Long memberId, Map<String, Map<Long, Set<String>>> sources) {
+        Set<String> codes = new HashSet<>();
+        sources.values().forEach(sourceIds -> sourceIds.values().forEach(codes::addAll));
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return permissionMapper.checkPermissionBySources(memberId, sources, codes);
+    }
+
     @Override
     public List<PermissionE> query(String level, String serviceName, String code) {
         PermissionDO permissionDO = new PermissionDO();
@@ -101,4 +116,28 @@ public class PermissionRepositoryImpl implements PermissionRepository {
         return PageHelper.doPageAndSort(pageRequest,
                 () -> permissionMapper.selectByRoleId(id, params));
     }
+
+    @Override
+    public List<PermissionDO> selectByServiceName(String serviceName) {
+        PermissionDO permissionDO = new PermissionDO();
+        permissionDO.setServiceName(serviceName);
+        return permissionMapper.select(permissionDO);
+    }
+
+    @Override
+    public void upsertList(List<PermissionDO> permissions) {
+        Date now = new Date();
+        Long operator = Optional.ofNullable(DetailsHelper.getUserDetails()).map(CustomUserDetails::getUserId).orElse(0L);
+        //多行插入不会走审计拦截器
+        permissions.forEach(p -> {
+            p.setCreatedBy(operator);
+            p.setLastUpdatedBy(operator);
+            p.setCreationDate(now);
+            p.setLastUpdateDate(now);
+            p.setObjectVersionNumber(1L);
+        });
+        for (List<PermissionDO> batch : CollectionUtils.subList(permissions, BATCH_SIZE)) {
+            permissionMapper.upsertList(batch);
+        }
+    }
 }
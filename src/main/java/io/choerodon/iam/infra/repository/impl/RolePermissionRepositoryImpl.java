@@ -4,6 +4,7 @@ import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.iam.domain.iam.entity.RolePermissionE;
 import io.choerodon.iam.domain.repository.RolePermissionRepository;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.dataobject.RolePermissionDO;
 import io.choerodon.iam.infra.mapper.RolePermissionMapper;
 import org.springframework.stereotype.Component;
@@ -16,6 +17,8 @@ import java.util.List;
 @Component
 public class RolePermissionRepositoryImpl implements RolePermissionRepository {
 
+    private static final int BATCH_SIZE = 1000;
+
     private RolePermissionMapper rolePermissionMapper;
 
     public RolePermissionRepositoryImpl(RolePermissionMapper rolePermissionMapper) {
@@ -54,4 +57,25 @@ public class RolePermissionRepositoryImpl implements RolePermissionRepository {
     public List<Long> queryPermissionIdsByRoles(List<Long> roles) {
         return rolePermissionMapper.queryPermissionIdByRoles(roles);
     }
+
+    @Override
+    public List<RolePermissionDO> selectByServiceName(String serviceName) {
+        return rolePermissionMapper.selectByServiceName(serviceName);
+    }
+
+    @Override
+    public void insertList(List<RolePermissionDO> rolePermissions) {
+        for (List<RolePermissionDO> batch : CollectionUtils.subList(rolePermissions, BATCH_SIZE)) {
+            if (rolePermissionMapper.batchInsert(batch) != batch.size()) {
+                throw new CommonException("error.rolePermission.insert");
+            }
+        }
+    }
+
+    @Override
+    public void deleteByIds(List<Long> ids) {
+        for (List<Long> batch : CollectionUtils.subList(ids, BATCH_SIZE)) {
+            rolePermissionMapper.deleteByIds(batch);
+        }
+    }
 }
@@ -111,6 +111,11 @@ public class RoleRepositoryImpl implements RoleRepository {
         return mapper.matchCode(codeSet);
     }
 
+    @Override
+    public List<RoleDO> selectByCodes(Set<String> codeSet) {
+        return mapper.selectByCodes(codeSet);
+    }
+
     @Override
     public List<RoleDO> queryRoleByOrgId(Long orgId) {
         return mapper.queryRoleByOrgId(orgId);
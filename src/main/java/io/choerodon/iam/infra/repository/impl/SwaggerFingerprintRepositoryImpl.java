@@ -0,0 +1,44 @@
+package io.choerodon.iam.infra.repository.impl;
+
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.iam.domain.repository.SwaggerFingerprintRepository;
+import io.choerodon.iam.infra.dataobject.SwaggerFingerprintDO;
+import io.choerodon.iam.infra.mapper.SwaggerFingerprintMapper;
+
+/**
+ * @author superlee
+ */
+@Component
+public class SwaggerFingerprintRepositoryImpl implements SwaggerFingerprintRepository {
+
+    private SwaggerFingerprintMapper swaggerFingerprintMapper;
+
+    public SwaggerFingerprintRepositoryImpl(SwaggerFingerprintMapper swaggerFingerprintMapper) {
+        this.swaggerFingerprintMapper = swaggerFingerprintMapper;
+    }
+
+    @Override
+    public SwaggerFingerprintDO selectByServiceName(String serviceName) {
+        SwaggerFingerprintDO example = new SwaggerFingerprintDO();
+        example.setServiceName(serviceName);
+        return swaggerFingerprintMapper.selectOne(example);
+    }
+
+    @Override
+    public SwaggerFingerprintDO insertSelective(SwaggerFingerprintDO swaggerFingerprintDO) {
+        if (swaggerFingerprintMapper.insertSelective(swaggerFingerprintDO) != 1) {
+            throw new CommonException("error.swaggerFingerprint.insert");
+        }
+        return swaggerFingerprintDO;
+    }
+
+    @Override
+    public SwaggerFingerprintDO updateByPrimaryKeySelective(SwaggerFingerprintDO swaggerFingerprintDO) {
+        if (swaggerFingerprintMapper.updateByPrimaryKeySelective(swaggerFingerprintDO) != 1) {
+            throw new CommonException("error.swaggerFingerprint.update");
+        }
+        return swaggerFingerprintDO;
+    }
+}
@@ -5,10 +5,18 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.domain.PageInfo;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.ResourceLevel;
+import io.choerodon.core.oauth.CustomUserDetails;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO;
 import io.choerodon.iam.domain.iam.entity.UserE;
 import io.choerodon.iam.domain.repository.UserRepository;
+import io.choerodon.iam.infra.cache.CacheEvent;
+import io.choerodon.iam.infra.cache.CacheEventPublisher;
+import io.choerodon.iam.infra.cache.MemberCountCache;
+import io.choerodon.iam.infra.cache.UserSearchIndex;
+import io.choerodon.iam.infra.common.utils.CollectionUtils;
 import io.choerodon.iam.infra.common.utils.ParamUtils;
+import io.choerodon.iam.infra.dataobject.RoleDO;
 import io.choerodon.iam.infra.dataobject.UserDO;
 import io.choerodon.iam.infra.mapper.UserMapper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -16,6 +24,7 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * @author superlee
@@ -24,10 +33,19 @@ import java.util.*;
 @Component
 public class UserRepositoryImpl implements UserRepository {
 
+    private static final int BATCH_SIZE = 999;
+
     private UserMapper mapper;
+    private UserSearchIndex userSearchIndex;
+    private CacheEventPublisher cacheEventPublisher;
+    private MemberCountCache memberCountCache;
 
-    public UserRepositoryImpl(UserMapper mapper) {
+    public UserRepositoryImpl(UserMapper mapper, UserSearchIndex userSearchIndex,
+                              CacheEventPublisher cacheEventPublisher, MemberCountCache memberCountCache) {
         this.mapper = mapper;
+        this.userSearchIndex = userSearchIndex;
+        this.cacheEventPublisher = cacheEventPublisher;
+        this.memberCountCache = memberCountCache;
     }
 
     @Override
@@ -43,12 +61,17 @@ public class UserRepositoryImpl implements UserRepository {
         if (mapper.insertSelective(userDO) != 1) {
             throw new CommonException("error.user.create");
         }
+        cacheEventPublisher.publish(CacheEvent.userChanged(userDO.getId()));
         return ConvertHelper.convert(mapper.selectByPrimaryKey(userDO.getId()), UserE.class);
     }
 
     @Override
     public Page<UserDO> pagingQuery(PageRequest pageRequest, UserDO userDO, String param) {
-        return PageHelper.doPageAndSort(pageRequest, () -> mapper.fulltextSearch(userDO, param));
+        Map<UserSearchIndex.Field, String> conditions = new EnumMap<>(UserSearchIndex.Field.class);
+        conditions.put(UserSearchIndex.Field.LOGIN_NAME, userDO.getLoginName());
+        conditions.put(UserSearchIndex.Field.EMAIL, userDO.getEmail());
+        List<Long> ids = userSearchIndex.search(conditions, param, EnumSet.allOf(UserSearchIndex.Field.class));
+        return PageHelper.doPageAndSort(pageRequest, () -> mapper.fulltextSearch(userDO, ids, param));
     }
 
     @Override
@@ -74,6 +97,7 @@ public class UserRepositoryImpl implements UserRepository {
         if (mapper.updateByPrimaryKeySelective(userDO) != 1) {
             throw new CommonException("error.user.update");
         }
+        cacheEventPublisher.publish(CacheEvent.userChanged(userDO.getId()));
         return ConvertHelper.convert(mapper.selectByPrimaryKey(userDO.getId()), UserE.class);
     }
 
@@ -84,6 +108,7 @@ public class UserRepositoryImpl implements UserRepository {
         if (mapper.deleteByPrimaryKey(userDO) != 1) {
             throw new CommonException("error.user.delete");
         }
+        cacheEventPublisher.publish(CacheEvent.userChanged(id));
     }
 
     @Override
@@ -152,12 +177,26 @@ public class UserRepositoryImpl implements UserRepository {
         return new Page<>(userDOList, pageInfo, count);
     }
 
+    @Override
+    public List<UserDO> listUsersWithLevelRolesByCursor(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId,
+                                                        String sourceType, Long cursor, int size) {
+        String param = roleAssignmentSearchDTO == null ? null : ParamUtils.arrToStr(roleAssignmentSearchDTO.getParam());
+        return mapper.selectUserWithRolesByCursor(roleAssignmentSearchDTO, sourceId, sourceType, cursor, size, param);
+    }
+
+    @Override
+    public int countUsersWithLevelRoles(RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long sourceId,
+                                        String sourceType) {
+        return memberCountCache.countUsers(roleAssignmentSearchDTO, sourceId, sourceType);
+    }
+
     @Override
     public UserE updateUserInfo(UserE userE) {
         UserDO user = ConvertHelper.convert(userE, UserDO.class);
         if (mapper.updateByPrimaryKeySelective(user) != 1) {
             throw new CommonException("error.user.update");
         }
+        cacheEventPublisher.publish(CacheEvent.userChanged(user.getId()));
         return ConvertHelper.convert(mapper.selectByPrimaryKey(user.getId()), UserE.class);
     }
 
@@ -179,6 +218,21 @@ public class UserRepositoryImpl implements UserRepository {
                 memberType, sourceId, sourceType, roleAssignmentSearchDTO, param);
     }
 
+    @Override
+    public List<RoleDO> selectUserCountGroupByRole(Long sourceId, String sourceType,
+                                                   RoleAssignmentSearchDTO roleAssignmentSearchDTO, String param) {
+        return mapper.selectUserCountGroupByRole("user", sourceId, sourceType, roleAssignmentSearchDTO, param);
+    }
+
+    @Override
+    public List<UserDO> listUsersByRoleIds(List<Long> roleIds, Long sourceId, String sourceType) {
+        List<UserDO> users = new ArrayList<>();
+        for (List<Long> batch : CollectionUtils.subList(roleIds, BATCH_SIZE)) {
+            users.addAll(mapper.selectUsersByRoleIds(batch, sourceId, sourceType));
+        }
+        return users;
+    }
+
     @Override
     public List<UserDO> listUsersByRoleIdOnSiteLevel(Long roleId) {
         return mapper.selectUsersFromMemberRoleByOptions(roleId, "user", 0L,
@@ -216,27 +270,65 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     public Page<UserDO> pagingQueryAdminUsers(PageRequest pageRequest, UserDO userDO, String params) {
+        Map<UserSearchIndex.Field, String> conditions = new EnumMap<>(UserSearchIndex.Field.class);
+        conditions.put(UserSearchIndex.Field.LOGIN_NAME, userDO.getLoginName());
+        conditions.put(UserSearchIndex.Field.REAL_NAME, userDO.getRealName());
+        List<Long> ids = userSearchIndex.search(conditions, params,
+                EnumSet.of(UserSearchIndex.Field.LOGIN_NAME, UserSearchIndex.Field.REAL_NAME));
         return PageHelper.doPageAndSort(pageRequest, () -> {
             userDO.setAdmin(true);
-            return mapper.selectAdminUserPage(userDO, params);
+            return mapper.selectAdminUserPage(userDO, params, ids);
         });
     }
 
     @Override
     public List<UserDO> insertList(List<UserDO> insertUsers) {
-        insertUsers.forEach(u -> {
-            if (mapper.insertSelective(u) != 1) {
+        Date now = new Date();
+        Long operator = Optional.ofNullable(DetailsHelper.getUserDetails()).map(CustomUserDetails::getUserId).orElse(0L);
+        for (List<UserDO> batch : CollectionUtils.subList(insertUsers, BATCH_SIZE)) {
+            //多行插入不会走审计拦截器，也不会使用列的默认值
+            batch.forEach(u -> {
+                u.setCreatedBy(operator);
+                u.setLastUpdatedBy(operator);
+                u.setCreationDate(now);
+                u.setLastUpdateDate(now);
+                u.setObjectVersionNumber(1L);
+                if (u.getPasswordAttempt() == null) {
+                    u.setPasswordAttempt(0);
+                }
+            });
+            if (mapper.batchInsert(batch) != batch.size()) {
                 throw new CommonException("error.batch.insert.user");
             }
-        });
+            fillIds(batch);
+            batch.forEach(u -> cacheEventPublisher.publish(CacheEvent.userChanged(u.getId())));
+        }
         return insertUsers;
     }
 
+    /**
+     * 不支持批量返回主键的数据库按login_name回填id
+     */
+    private void fillIds(List<UserDO> users) {
+        if (users.stream().allMatch(u -> u.getId() != null)) {
+            return;
+        }
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> loginNames = users.stream().map(UserDO::getLoginName).collect(Collectors.toSet());
+        mapper.selectByLoginNames(loginNames).forEach(u -> ids.put(u.getLoginName(), u.getId()));
+        users.forEach(u -> u.setId(ids.get(u.getLoginName())));
+    }
+
     @Override
     public Set<String> matchLoginName(Set<String> nameSet) {
         return mapper.matchLoginName(nameSet);
     }
 
+    @Override
+    public List<UserDO> selectByLoginNames(Set<String> nameSet) {
+        return mapper.selectByLoginNames(nameSet);
+    }
+
     @Override
     public Set<String> matchEmail(Set<String> emailSet) {
         return mapper.matchEmail(emailSet);
@@ -0,0 +1,36 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'script/db/iam_swagger_fingerprint.groovy') {
+    changeSet(author: 'superleader8@gmail.com', id: '2018-09-20-iam-swagger-fingerprint') {
+        if (helper.dbType().isSupportSequence()) {
+            createSequence(sequenceName: 'IAM_SWAGGER_FINGERPRINT_S', startValue: "1")
+        }
+        createTable(tableName: "IAM_SWAGGER_FINGERPRINT") {
+            column(name: 'ID', type: 'BIGINT UNSIGNED', autoIncrement: true, remarks: '表ID，主键，供其他表做外键，unsigned bigint、单表时自增、步长为 1') {
+                constraints(primaryKey: true, primaryKeyName: 'PK_IAM_SWAGGER_FINGERPRINT')
+            }
+            column(name: 'SERVICE_NAME', type: 'VARCHAR(128)', remarks: '服务名') {
+                constraints(nullable: false)
+            }
+            column(name: 'VERSION', type: 'VARCHAR(64)', remarks: '最近一次解析的服务版本，只用于记录')
+            column(name: 'FINGERPRINT', type: 'VARCHAR(32)', remarks: 'swagger文档paths的md5') {
+                constraints(nullable: false)
+            }
+            column(name: 'OPERATIONS', type: 'MEDIUMTEXT', remarks: '每个接口的md5，json格式，key为method和path')
+
+            column(name: "OBJECT_VERSION_NUMBER", type: "BIGINT UNSIGNED", defaultValue: "1") {
+                constraints(nullable: true)
+            }
+            column(name: "CREATED_BY", type: "BIGINT UNSIGNED", defaultValue: "0") {
+                constraints(nullable: true)
+            }
+            column(name: "CREATION_DATE", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "LAST_UPDATED_BY", type: "BIGINT UNSIGNED", defaultValue: "0") {
+                constraints(nullable: true)
+            }
+            column(name: "LAST_UPDATE_DATE", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        //每个服务只保留最近一次解析的指纹
+        addUniqueConstraint(tableName: 'IAM_SWAGGER_FINGERPRINT', columnNames: 'SERVICE_NAME', constraintName: 'UK_IAM_SWAGGER_FINGERPRINT_U1')
+    }
+}
@@ -11,7 +11,9 @@ import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.boot.test.web.client.TestRestTemplate
 import org.springframework.context.annotation.Import
 import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
 import spock.lang.Specification
 
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
@@ -129,6 +131,20 @@ class LanguageControllerSpec extends Specification {
         entity.getBody().size() == 2
     }
 
+    def "ListAll with If-None-Match"() {
+        given: "第一次请求拿到ETag"
+        def entity = restTemplate.getForEntity(BASE_PATH + "/list", List)
+        def headers = new HttpHeaders()
+        headers.setIfNoneMatch(entity.headers.getETag())
+
+        when: "带上ETag再次请求"
+        def notModified = restTemplate.exchange(BASE_PATH + "/list", HttpMethod.GET, new HttpEntity<>(headers), List)
+
+        then: "语言未变化返回304"
+        entity.headers.getETag() != null
+        notModified.statusCode == HttpStatus.NOT_MODIFIED
+    }
+
     def "QueryByCode"() {
         given: "构造参数列表"
         def paramsMap = new HashMap<String, Object>()
@@ -0,0 +1,77 @@
+package io.choerodon.iam.api.eventhandler
+
+import groovy.json.JsonSlurper
+import io.choerodon.asgard.saga.feign.SagaClient
+import io.choerodon.iam.infra.dataobject.LabelDO
+import io.choerodon.iam.infra.dataobject.MemberRoleDO
+import io.choerodon.iam.infra.dataobject.RoleDO
+import io.choerodon.iam.infra.mapper.MemberRoleMapper
+import io.choerodon.iam.infra.mapper.RoleMapper
+import org.apache.ibatis.executor.result.DefaultResultContext
+import org.apache.ibatis.session.ResultHandler
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class DevopsListenerSpec extends Specification {
+
+    private MemberRoleMapper memberRoleMapper = Mock(MemberRoleMapper)
+    private RoleMapper roleMapper = Mock(RoleMapper)
+    private SagaClient sagaClient = Mock(SagaClient)
+    private DevopsListener devopsListener = new DevopsListener(memberRoleMapper, roleMapper, sagaClient)
+
+    def "assignRolesOnProject"() {
+        given: "1001个用户，第一个用户在项目1有两个角色，最后一个用户的角色没有label"
+        def rows = [memberRole(1L, 1L, 10L), memberRole(1L, 1L, 11L)]
+        (2L..1000L).each { rows << memberRole(2L, it, 10L) }
+        rows << memberRole(2L, 1001L, 12L)
+        List<String> inputs = []
+
+        when:
+        devopsListener.assignRolesOnProject("")
+
+        then: "读取前一次查出所有角色的label"
+        1 * roleMapper.selectAllWithLabels() >> [role(10L, "project.gitlab.developer"),
+                                                 role(11L, "project.owner", "project.gitlab.owner")]
+
+        then: "相邻记录聚合为一个payload，满1000个发送一次saga"
+        1 * memberRoleMapper.selectProjectUserMemberRoles(_) >> { ResultHandler handler ->
+            DefaultResultContext context = new DefaultResultContext()
+            rows.each {
+                context.nextResultObject(it)
+                handler.handleResult(context)
+            }
+        }
+        2 * sagaClient.startSaga(*_) >> { args -> inputs << args[1].input; return null }
+
+        and: "多个角色取label的并集"
+        def first = new JsonSlurper().parseText(inputs[0])
+        first.size() == 1000
+        first[0].userId == 1
+        first[0].roleLabels as Set == ["project.gitlab.developer", "project.owner", "project.gitlab.owner"] as Set
+        first[1].roleLabels == ["project.gitlab.developer"]
+        def last = new JsonSlurper().parseText(inputs[1])
+        last*.userId == [1001]
+        last[0].roleLabels == []
+    }
+
+    private static RoleDO role(Long id, String... labelNames) {
+        RoleDO role = new RoleDO()
+        role.setId(id)
+        role.setLabels(labelNames.collect {
+            LabelDO label = new LabelDO()
+            label.setName(it)
+            return label
+        })
+        return role
+    }
+
+    private static MemberRoleDO memberRole(Long sourceId, Long memberId, Long roleId) {
+        MemberRoleDO memberRole = new MemberRoleDO()
+        memberRole.setSourceId(sourceId)
+        memberRole.setMemberId(memberId)
+        memberRole.setRoleId(roleId)
+        return memberRole
+    }
+}
@@ -0,0 +1,58 @@
+package io.choerodon.iam.api.eventhandler
+
+import io.choerodon.iam.domain.service.ParsePermissionService
+import org.springframework.core.task.AsyncTaskExecutor
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class ParsePermissionQueueSpec extends Specification {
+
+    private ParsePermissionService parsePermissionService = Mock(ParsePermissionService)
+    private List<Runnable> tasks = []
+    private AsyncTaskExecutor executor = Stub(AsyncTaskExecutor) {
+        execute(_ as Runnable) >> { Runnable task -> tasks.add(task) }
+    }
+    private ParsePermissionQueue parsePermissionQueue = new ParsePermissionQueue(parsePermissionService, executor, 10)
+
+    def "submit"() {
+        when: "同一服务在解析前收到三份文档"
+        parsePermissionQueue.submit("iam-service", "v1")
+        parsePermissionQueue.submit("iam-service", "v2")
+        parsePermissionQueue.submit("iam-service", "v3")
+        parsePermissionQueue.submit("manager-service", "v1")
+
+        then: "每个服务只提交一个任务"
+        tasks.size() == 2
+        parsePermissionQueue.metrics().find { it.name == "permission.parse.coalesced" }.value == 2L
+        parsePermissionQueue.metrics().find { it.name == "permission.parse.queue.depth" }.value == 2
+
+        when: "执行任务"
+        tasks.each { it.run() }
+
+        then: "只解析最新的文档"
+        1 * parsePermissionService.parser("v3")
+        1 * parsePermissionService.parser("v1")
+        0 * parsePermissionService.parser(_)
+        parsePermissionQueue.metrics().find { it.name == "permission.parse.queue.depth" }.value == 0
+    }
+
+    def "submit while parsing"() {
+        given: "正在解析时收到新文档"
+        parsePermissionQueue.submit("iam-service", "v1")
+        parsePermissionService.parser("v1") >> { parsePermissionQueue.submit("iam-service", "v2") }
+
+        when:
+        tasks[0].run()
+
+        then: "解析结束后再提交一次"
+        tasks.size() == 2
+
+        when:
+        tasks[1].run()
+
+        then:
+        1 * parsePermissionService.parser("v2")
+    }
+}
@@ -0,0 +1,169 @@
+package io.choerodon.iam.api.service.impl
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.iam.IntegrationTestConfiguration
+import io.choerodon.iam.api.dto.MenuDTO
+import io.choerodon.iam.app.service.MenuService
+import io.choerodon.iam.infra.dataobject.MenuDO
+import io.choerodon.iam.infra.mapper.MenuMapper
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 传入的树中保留site层已有的所有菜单，只调整测试造的菜单
+ *
+ * @author superlee
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+@Transactional
+class MenuServiceImplSpec extends Specification {
+
+    private static final String LEVEL = "site"
+    private static final Long USER_ID = 99999L
+
+    @Autowired
+    private MenuService menuService
+
+    @Autowired
+    private MenuMapper menuMapper
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "saveListTree"() {
+        given: "dir1下有menu1和menu2，dir2下有menu3，dir3没有子菜单，还有一个没有子菜单的默认菜单"
+        def dir1 = insertMenu("test.dir1", "dir", 0L, 0, false)
+        def dir2 = insertMenu("test.dir2", "dir", 0L, 1, false)
+        def dir3 = insertMenu("test.dir3", "dir", 0L, 2, false)
+        def menu1 = insertMenu("test.menu1", "menu", dir1.id, 0, false)
+        def menu2 = insertMenu("test.menu2", "menu", dir1.id, 1, false)
+        def menu3 = insertMenu("test.menu3", "menu", dir2.id, 0, false)
+        def defaultMenu = insertMenu("test.default", "menu", dir3.id, 0, true)
+        List<MenuDTO> tree = existingMenus([dir1, dir2, dir3, menu1, menu2, menu3, defaultMenu])
+        login(USER_ID)
+
+        when: "menu1移到dir3下，menu2排到第一，dir1下新建一个菜单，不再传dir2、menu3和默认菜单"
+        def newMenu = menu(null, "test.new", "menu", 1)
+        newMenu.setName("test.new")
+        newMenu.setLevel(LEVEL)
+        tree << menu(dir1, [menu(menu2, 0), newMenu])
+        tree << menu(dir3, [menu(menu1, 0)])
+        menuService.saveListTree(LEVEL, tree)
+
+        then: "新建的菜单不是默认菜单"
+        def created = selectByCode("test.new")
+        created.parentId == dir1.id
+        created.sort == 1
+        !created.getDefault()
+
+        and: "移动的菜单批量更新父节点和排序，版本号加一并记录更新人"
+        def moved = menuMapper.selectByPrimaryKey(menu1.id)
+        moved.parentId == dir3.id
+        moved.sort == 0
+        moved.objectVersionNumber == menu1.objectVersionNumber + 1
+        moved.lastUpdatedBy == USER_ID
+        menuMapper.selectByPrimaryKey(menu2.id).sort == 0
+
+        and: "只删除没有子菜单的非默认菜单"
+        menuMapper.selectByPrimaryKey(menu3.id) == null
+        menuMapper.selectByPrimaryKey(dir2.id) != null
+        menuMapper.selectByPrimaryKey(defaultMenu.id) != null
+    }
+
+    def "saveListTree with stale objectVersionNumber"() {
+        given: "menu1已被其他人更新"
+        def dir1 = insertMenu("test.dir1", "dir", 0L, 0, false)
+        def dir2 = insertMenu("test.dir2", "dir", 0L, 1, false)
+        def menu1 = insertMenu("test.menu1", "menu", dir1.id, 0, false)
+        List<MenuDTO> tree = existingMenus([dir1, dir2, menu1])
+        def stale = menu(menu1, 0)
+        menu1.setSort(5)
+        menuMapper.updateByPrimaryKeySelective(menu1)
+
+        when: "按旧版本号把menu1移到dir2下"
+        tree << menu(dir1, [])
+        tree << menu(dir2, [stale])
+        menuService.saveListTree(LEVEL, tree)
+
+        then:
+        def e = thrown(CommonException)
+        e.code == "error.objectNumber.update"
+    }
+
+    private MenuDO insertMenu(String code, String type, Long parentId, Integer sort, boolean isDefault) {
+        MenuDO menu = new MenuDO()
+        menu.setCode(code)
+        menu.setName(code)
+        menu.setLevel(LEVEL)
+        menu.setType(type)
+        menu.setParentId(parentId)
+        menu.setSort(sort)
+        menu.setDefault(isDefault)
+        menuMapper.insertSelective(menu)
+        return menuMapper.selectByPrimaryKey(menu.getId())
+    }
+
+    private MenuDO selectByCode(String code) {
+        MenuDO example = new MenuDO()
+        example.setCode(code)
+        example.setLevel(LEVEL)
+        return menuMapper.selectOne(example)
+    }
+
+    /**
+     * 层级已有的菜单原样平铺传入，不包括测试中单独组织的菜单
+     */
+    private List<MenuDTO> existingMenus(List<MenuDO> excludes) {
+        Set<Long> excludeIds = excludes*.id as Set
+        MenuDO example = new MenuDO()
+        example.setLevel(LEVEL)
+        return menuMapper.select(example).findAll { !excludeIds.contains(it.id) }.collect {
+            MenuDTO dto = new MenuDTO()
+            dto.setId(it.getId())
+            dto.setParentId(it.getParentId())
+            dto.setSort(it.getSort())
+            dto.setObjectVersionNumber(it.getObjectVersionNumber())
+            return dto
+        }
+    }
+
+    private static MenuDTO menu(MenuDO exist, Integer sort) {
+        return menu(exist.getId(), exist.getCode(), exist.getType(), sort, exist.getObjectVersionNumber())
+    }
+
+    private static MenuDTO menu(MenuDO exist, List<MenuDTO> subMenus) {
+        MenuDTO dto = menu(exist, exist.getSort())
+        dto.setParentId(exist.getParentId())
+        dto.setSubMenus(subMenus)
+        return dto
+    }
+
+    private static MenuDTO menu(Long id, String code, String type, Integer sort, Long objectVersionNumber = null) {
+        MenuDTO dto = new MenuDTO()
+        dto.setId(id)
+        dto.setCode(code)
+        dto.setType(type)
+        dto.setSort(sort)
+        dto.setObjectVersionNumber(objectVersionNumber)
+        return dto
+    }
+
+    private static void login(Long userId) {
+        CustomUserDetails details = new CustomUserDetails("user", "unknown", Collections.emptyList())
+        details.setUserId(userId)
+        details.setAdmin(false)
+        def authentication = new UsernamePasswordAuthenticationToken(details, null, Collections.emptyList())
+        authentication.setDetails(details)
+        SecurityContextHolder.getContext().setAuthentication(authentication)
+    }
+}
@@ -0,0 +1,76 @@
+package io.choerodon.iam.api.service.impl
+
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.iam.api.dto.CheckPermissionDTO
+import io.choerodon.iam.app.service.impl.PermissionServiceImpl
+import io.choerodon.iam.domain.repository.MenuPermissionRepository
+import io.choerodon.iam.domain.repository.PermissionRepository
+import io.choerodon.iam.domain.repository.RolePermissionRepository
+import io.choerodon.iam.infra.cache.CacheEventPublisher
+import io.choerodon.iam.infra.cache.PermissionIndex
+import org.springframework.cloud.client.discovery.DiscoveryClient
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class PermissionServiceImplSpec extends Specification {
+
+    private PermissionRepository permissionRepository = Mock(PermissionRepository)
+    private PermissionIndex permissionIndex = Mock(PermissionIndex)
+    private PermissionServiceImpl permissionService = new PermissionServiceImpl(permissionRepository,
+            Mock(DiscoveryClient), Mock(RolePermissionRepository), Mock(MenuPermissionRepository),
+            permissionIndex, Mock(CacheEventPublisher))
+
+    def setup() {
+        CustomUserDetails details = new CustomUserDetails("admin", "unknown", Collections.emptyList())
+        details.setUserId(1L)
+        details.setAdmin(true)
+        def authentication = new UsernamePasswordAuthenticationToken(details, null, Collections.emptyList())
+        authentication.setDetails(details)
+        SecurityContextHolder.getContext().setAuthentication(authentication)
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "checkPermission of admin by index"() {
+        given: "开启权限索引"
+        permissionService.permissionIndexEnabled = true
+        def dtoList = [checkPermission(" iam-service.user.query "), checkPermission("not.exist")]
+
+        when:
+        def result = permissionService.checkPermission(dtoList)
+
+        then: "只查内存中的code集合，不查库"
+        1 * permissionIndex.containsCode("iam-service.user.query") >> true
+        1 * permissionIndex.containsCode("not.exist") >> false
+        0 * permissionRepository.existByCode(_)
+        result*.approve == [true, null]
+    }
+
+    def "checkPermission of admin by sql"() {
+        given: "关闭权限索引"
+        permissionService.permissionIndexEnabled = false
+        def dtoList = [checkPermission("iam-service.user.query"), checkPermission("not.exist")]
+
+        when:
+        def result = permissionService.checkPermission(dtoList)
+
+        then:
+        1 * permissionRepository.existByCode("iam-service.user.query") >> true
+        1 * permissionRepository.existByCode("not.exist") >> false
+        0 * permissionIndex.containsCode(_)
+        result*.approve == [true, null]
+    }
+
+    private static CheckPermissionDTO checkPermission(String code) {
+        CheckPermissionDTO dto = new CheckPermissionDTO()
+        dto.setCode(code)
+        dto.setResourceType("site")
+        return dto
+    }
+}
@@ -0,0 +1,105 @@
+package io.choerodon.iam.domain.service.impl
+
+import io.choerodon.asgard.saga.feign.SagaClient
+import io.choerodon.core.exception.CommonException
+import io.choerodon.iam.api.dto.RoleAssignmentDeleteDTO
+import io.choerodon.iam.domain.repository.MemberRoleRepository
+import io.choerodon.iam.domain.repository.UserRepository
+import io.choerodon.iam.infra.cache.CacheEventPublisher
+import io.choerodon.iam.infra.cache.RoleLabelCache
+import io.choerodon.iam.infra.dataobject.MemberRoleDO
+import io.choerodon.iam.infra.dataobject.UserDO
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class IRoleMemberServiceImplSpec extends Specification {
+
+    private UserRepository userRepository = Mock(UserRepository)
+    private MemberRoleRepository memberRoleRepository = Mock(MemberRoleRepository)
+    private CacheEventPublisher cacheEventPublisher = Mock(CacheEventPublisher)
+    private IRoleMemberServiceImpl iRoleMemberService = new IRoleMemberServiceImpl(userRepository,
+            memberRoleRepository, Mock(RoleLabelCache), Mock(SagaClient), cacheEventPublisher)
+
+    def "insertOrUpdateRolesByMemberIds"() {
+        given: "用户1已有角色10和11，用户2没有角色"
+        userRepository.listUsersByIds(_) >> [user(1L), user(2L)]
+        def existing = [memberRole(100L, 10L, 1L), memberRole(101L, 11L, 1L)]
+
+        when: "编辑模式下给两个用户分配角色10和12"
+        iRoleMemberService.insertOrUpdateRolesByMemberIds(true, 5L, [1L, 2L, 2L], [10L, 12L], "project")
+
+        then: "一次查询、一次插入、一次删除"
+        2 * memberRoleRepository.selectByMemberIds([1L, 2L], "user", 5L, "project") >>> [existing, []]
+        1 * memberRoleRepository.insertList({ List<MemberRoleDO> list ->
+            list.collect { [it.memberId, it.roleId] } == [[1L, 12L], [2L, 10L], [2L, 12L]]
+        })
+        1 * memberRoleRepository.deleteByIds([101L])
+        2 * cacheEventPublisher.publish(_)
+    }
+
+    def "insertOrUpdateRolesByMemberIds with not exist user"() {
+        given:
+        userRepository.listUsersByIds(_) >> [user(1L)]
+
+        when:
+        iRoleMemberService.insertOrUpdateRolesByMemberIds(false, 0L, [1L, 2L], [10L], "site")
+
+        then:
+        def e = thrown(CommonException)
+        e.code == "error.user.not.exist"
+        0 * memberRoleRepository.insertList(_)
+    }
+
+    def "delete"() {
+        given: "角色视图下删除角色10的用户1和用户2"
+        def deleteDTO = new RoleAssignmentDeleteDTO()
+        deleteDTO.setView("roleView")
+        deleteDTO.setSourceId(5L)
+        deleteDTO.setData([10L: [1L, 2L]])
+
+        when:
+        iRoleMemberService.delete(deleteDTO, "project")
+
+        then: "一次查询校验，一次删除"
+        1 * memberRoleRepository.selectByMemberIds([1L, 2L], "user", 5L, "project") >>
+                [memberRole(100L, 10L, 1L), memberRole(101L, 10L, 2L)]
+        1 * memberRoleRepository.deleteByIds([100L, 101L])
+    }
+
+    def "delete not exist"() {
+        given: "用户2没有角色10"
+        def deleteDTO = new RoleAssignmentDeleteDTO()
+        deleteDTO.setView("userView")
+        deleteDTO.setSourceId(5L)
+        deleteDTO.setData([1L: [10L], 2L: [10L]])
+        memberRoleRepository.selectByMemberIds(*_) >> [memberRole(100L, 10L, 1L)]
+
+        when:
+        iRoleMemberService.delete(deleteDTO, "project")
+
+        then:
+        def e = thrown(CommonException)
+        e.code == "error.memberRole.not.exist"
+        0 * memberRoleRepository.deleteByIds(_)
+    }
+
+    private static UserDO user(Long id) {
+        UserDO user = new UserDO()
+        user.setId(id)
+        user.setLoginName("user" + id)
+        return user
+    }
+
+    private static MemberRoleDO memberRole(Long id, Long roleId, Long memberId) {
+        MemberRoleDO memberRole = new MemberRoleDO()
+        memberRole.setId(id)
+        memberRole.setRoleId(roleId)
+        memberRole.setMemberId(memberId)
+        memberRole.setMemberType("user")
+        memberRole.setSourceId(5L)
+        memberRole.setSourceType("project")
+        return memberRole
+    }
+}
@@ -0,0 +1,124 @@
+package io.choerodon.iam.domain.service.impl
+
+import groovy.json.JsonOutput
+import io.choerodon.iam.IntegrationTestConfiguration
+import io.choerodon.iam.domain.service.ParsePermissionService
+import io.choerodon.iam.infra.dataobject.PermissionDO
+import io.choerodon.iam.infra.dataobject.RoleDO
+import io.choerodon.iam.infra.enums.RoleCode
+import io.choerodon.iam.infra.mapper.PermissionMapper
+import io.choerodon.iam.infra.mapper.RoleMapper
+import io.choerodon.iam.infra.mapper.RolePermissionMapper
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 同一服务先后解析两份文档，检查写入的permission和role_permission
+ *
+ * @author superlee
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+@Transactional
+class ParsePermissionServiceImplSpec extends Specification {
+
+    private static final String SERVICE_NAME = "test-parse-service"
+
+    @Autowired
+    private ParsePermissionService parsePermissionService
+
+    @Autowired
+    private PermissionMapper permissionMapper
+
+    @Autowired
+    private RolePermissionMapper rolePermissionMapper
+
+    @Autowired
+    private RoleMapper roleMapper
+
+    def "parser"() {
+        given:
+        Long siteAdmin = roleId(RoleCode.SITE_ADMINISTRATOR)
+        Long projectAdmin = roleId(RoleCode.PROJECT_ADMINISTRATOR)
+        Long developer = roleId(RoleCode.SITE_DEVELOPER)
+
+        when: "第一次解析三个接口"
+        parsePermissionService.parser(message("1.0.0", [
+                operation("/v1/test/query", "get", "查询", "query", "site", [RoleCode.SITE_DEVELOPER]),
+                operation("/v1/test/create", "post", "创建", "create", "site", [RoleCode.SITE_DEVELOPER]),
+                operation("/v1/test/delete", "delete", "删除", "delete", "project", [])
+        ]))
+        def origin = permissions()
+
+        then: "插入权限，按层级关联管理员角色，再关联声明的角色"
+        origin.keySet() == ["test-parse-service.test.query", "test-parse-service.test.create",
+                            "test-parse-service.test.delete"] as Set
+        origin.values().every { it.id != null }
+        rolePermissions() == [
+                "test-parse-service.test.query" : [siteAdmin, developer] as Set,
+                "test-parse-service.test.create": [siteAdmin, developer] as Set,
+                "test-parse-service.test.delete": [projectAdmin] as Set
+        ]
+
+        when: "第二次解析，query修改了描述并去掉声明的角色，delete被删除"
+        parsePermissionService.parser(message("1.0.1", [
+                operation("/v1/test/query", "get", "查询测试", "query", "site", []),
+                operation("/v1/test/create", "post", "创建", "create", "site", [RoleCode.SITE_DEVELOPER])
+        ]))
+        def updated = permissions()
+
+        then: "更新变化的权限，id不变"
+        updated.collectEntries { code, p -> [(code): p.id] } == origin.collectEntries { code, p -> [(code): p.id] }
+        updated["test-parse-service.test.query"].description == "查询测试"
+        updated["test-parse-service.test.create"].description == "创建"
+
+        and: "删除不再声明的预置角色关系，保留管理员角色；删除的接口不删除权限"
+        rolePermissions() == [
+                "test-parse-service.test.query" : [siteAdmin] as Set,
+                "test-parse-service.test.create": [siteAdmin, developer] as Set,
+                "test-parse-service.test.delete": [projectAdmin] as Set
+        ]
+    }
+
+    private Long roleId(String code) {
+        RoleDO role = new RoleDO()
+        role.setCode(code)
+        return roleMapper.selectOne(role).getId()
+    }
+
+    private Map<String, PermissionDO> permissions() {
+        PermissionDO example = new PermissionDO()
+        example.setServiceName(SERVICE_NAME)
+        return permissionMapper.select(example).collectEntries { [(it.code): it] }
+    }
+
+    private Map<String, Set<Long>> rolePermissions() {
+        Map<Long, String> codes = permissions().collectEntries { code, p -> [(p.id): code] }
+        Map<String, Set<Long>> result = [:]
+        rolePermissionMapper.selectByServiceName(SERVICE_NAME).each {
+            result.computeIfAbsent(codes[it.permissionId], { new HashSet<>() }).add(it.roleId)
+        }
+        return result
+    }
+
+    private static Map operation(String path, String method, String summary, String action, String level,
+                                 List<String> roles) {
+        return [path: path, method: method, body: [
+                tags       : ["test-controller"],
+                summary    : summary,
+                description: JsonOutput.toJson([permission: [action: action, permissionLevel: level, roles: roles]])
+        ]]
+    }
+
+    private static String message(String version, List<Map> operations) {
+        Map paths = [:]
+        operations.each { paths.computeIfAbsent(it.path, { [:] }).put(it.method, it.body) }
+        String apiData = JsonOutput.toJson([swagger: "2.0", paths: paths])
+        return JsonOutput.toJson([appName: SERVICE_NAME, version: version, instanceAddress: "127.0.0.1", apiData: apiData])
+    }
+}
@@ -0,0 +1,92 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.iam.api.eventhandler.CacheEventListener
+import io.choerodon.iam.infra.mapper.LabelMapper
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.context.ApplicationEventPublisher
+import org.springframework.kafka.core.KafkaTemplate
+import spock.lang.Specification
+
+/**
+ * 两个节点通过内存中的topic收发缓存失效事件
+ *
+ * @author superlee
+ */
+class CacheBusSpec extends Specification {
+
+    private List<CacheEventListener> listeners = []
+    private boolean broken
+    private KafkaTemplate<String, String> kafkaTemplate = Stub(KafkaTemplate) {
+        send(CacheEventPublisher.TOPIC, _ as String) >> { String topic, String message ->
+            if (broken) {
+                throw new IllegalStateException("kafka unavailable")
+            }
+            //与kafka一致，发送方自己也会收到消息
+            listeners.each { it.receive(message) }
+            return null
+        }
+    }
+    private CacheEventSender cacheEventSender = new KafkaCacheEventSender(kafkaTemplate)
+
+    private LabelMapper labelMapperA = Mock(LabelMapper)
+    private LabelMapper labelMapperB = Mock(LabelMapper)
+    private RoleLabelCache cacheA = new RoleLabelCache(labelMapperA)
+    private RoleLabelCache cacheB = new RoleLabelCache(labelMapperB)
+    private CacheEventPublisher nodeA = node("node-a", cacheA)
+    private CacheEventPublisher nodeB = node("node-b", cacheB)
+
+    def "broadcast"() {
+        given: "两个节点都缓存了角色1的label"
+        1 * labelMapperA.selectLabelNamesInRoleIds([1L]) >> (["project.owner"] as Set)
+        1 * labelMapperB.selectLabelNamesInRoleIds([1L]) >> (["project.owner"] as Set)
+        cacheA.labelNames([1L])
+        cacheB.labelNames([1L])
+
+        when: "节点A修改角色1的label"
+        nodeA.publish(CacheEvent.roleLabelChanged(1L))
+        def resultA = cacheA.labelNames([1L])
+        def resultB = cacheB.labelNames([1L])
+
+        then: "两个节点各重新加载一次，节点A不会重复处理自己的广播"
+        1 * labelMapperA.selectLabelNamesInRoleIds([1L]) >> ([] as Set)
+        1 * labelMapperB.selectLabelNamesInRoleIds([1L]) >> ([] as Set)
+        resultA.isEmpty()
+        resultB.isEmpty()
+    }
+
+    def "refresh after lost broadcast"() {
+        given: "两个节点都缓存了角色1的label，kafka不可用"
+        1 * labelMapperA.selectLabelNamesInRoleIds([1L]) >> (["project.owner"] as Set)
+        1 * labelMapperB.selectLabelNamesInRoleIds([1L]) >> (["project.owner"] as Set)
+        cacheA.labelNames([1L])
+        cacheB.labelNames([1L])
+        broken = true
+
+        when: "节点A修改角色1的label，广播丢失"
+        nodeA.publish(CacheEvent.roleLabelChanged(1L))
+        def resultB = cacheB.labelNames([1L])
+
+        then: "节点B仍然是旧数据"
+        0 * labelMapperB._
+        resultB == ["project.owner"] as Set
+
+        when: "节点B定时刷新"
+        nodeB.refresh()
+        resultB = cacheB.labelNames([1L])
+
+        then:
+        1 * labelMapperB.selectLabelNamesInRoleIds([1L]) >> ([] as Set)
+        resultB.isEmpty()
+    }
+
+    private CacheEventPublisher node(String nodeId, RoleLabelCache cache) {
+        ApplicationEventPublisher local = { event -> cache.onCacheEvent((CacheEvent) event) } as ApplicationEventPublisher
+        ObjectProvider<CacheEventSender> senderProvider = Stub(ObjectProvider) {
+            getIfAvailable() >> cacheEventSender
+        }
+        CacheEventPublisher publisher = new CacheEventPublisher(local, senderProvider)
+        publisher.nodeId = nodeId
+        listeners << new CacheEventListener(publisher)
+        return publisher
+    }
+}
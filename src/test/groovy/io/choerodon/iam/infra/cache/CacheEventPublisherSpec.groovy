@@ -0,0 +1,46 @@
+package io.choerodon.iam.infra.cache
+
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class CacheEventPublisherSpec extends Specification {
+
+    private ApplicationEventPublisher applicationEventPublisher = Mock(ApplicationEventPublisher)
+    private CacheEventSender cacheEventSender = Mock(CacheEventSender)
+    private ObjectProvider<CacheEventSender> senderProvider = Stub(ObjectProvider) {
+        getIfAvailable() >> cacheEventSender
+    }
+    private CacheEventPublisher cacheEventPublisher = new CacheEventPublisher(applicationEventPublisher, senderProvider)
+
+    def "publish"() {
+        given: "不在事务中"
+        def event = CacheEvent.memberRoleChanged(1L, "project", 2L)
+
+        when: "发布事件"
+        cacheEventPublisher.publish(event)
+
+        then: "立即通知本节点并广播，广播的事件带有本节点标识"
+        1 * applicationEventPublisher.publishEvent(event)
+        1 * cacheEventSender.send({ it == [event] && it[0].origin == CacheEventPublisher.NODE_ID })
+    }
+
+    def "receive"() {
+        given: "一个本节点发出的事件，一个其他节点发出的事件"
+        def own = CacheEvent.rolePermissionChanged(1L)
+        own.setOrigin(CacheEventPublisher.NODE_ID)
+        def other = CacheEvent.rolePermissionChanged(2L)
+        other.setOrigin("other-node")
+
+        when: "收到广播"
+        cacheEventPublisher.receive([own, other])
+
+        then: "只处理其他节点的事件，不再广播"
+        1 * applicationEventPublisher.publishEvent(other)
+        0 * applicationEventPublisher.publishEvent(own)
+        0 * cacheEventSender.send(_)
+    }
+}
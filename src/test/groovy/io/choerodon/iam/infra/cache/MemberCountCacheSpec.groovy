@@ -0,0 +1,62 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO
+import io.choerodon.iam.infra.mapper.UserMapper
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class MemberCountCacheSpec extends Specification {
+
+    private UserMapper userMapper = Mock(UserMapper)
+    private MemberCountCache memberCountCache = new MemberCountCache(userMapper)
+
+    def "countUsers"() {
+        given:
+        RoleAssignmentSearchDTO searchDTO = new RoleAssignmentSearchDTO()
+        searchDTO.setLoginName("admin")
+
+        when: "相同条件重复查询"
+        def first = memberCountCache.countUsers(searchDTO, 1L, "organization")
+        def second = memberCountCache.countUsers(searchDTO, 1L, "organization")
+
+        then: "只查询一次数据库"
+        1 * userMapper.selectCountUsers(searchDTO, 1L, "organization", null) >> 10
+        first == 10
+        second == 10
+
+        when: "其他组织分配角色"
+        memberCountCache.onCacheEvent(CacheEvent.memberRoleChanged(1L, "organization", 2L))
+        def third = memberCountCache.countUsers(searchDTO, 1L, "organization")
+
+        then: "不影响缓存"
+        0 * userMapper.selectCountUsers(*_)
+        third == 10
+
+        when: "本组织分配角色"
+        memberCountCache.onCacheEvent(CacheEvent.memberRoleChanged(1L, "organization", 1L))
+        def fourth = memberCountCache.countUsers(searchDTO, 1L, "organization")
+
+        then: "重新查询"
+        1 * userMapper.selectCountUsers(searchDTO, 1L, "organization", null) >> 11
+        fourth == 11
+    }
+
+    def "countUsers with many filters"() {
+        given: "同一组织下每个搜索条件都缓存一次"
+        List<RoleAssignmentSearchDTO> filters = (0..MemberCountCache.MAX_FILTERS).collect {
+            RoleAssignmentSearchDTO searchDTO = new RoleAssignmentSearchDTO()
+            searchDTO.setLoginName("user" + it)
+            return searchDTO
+        }
+
+        when: "搜索条件数量达到上限"
+        filters.each { memberCountCache.countUsers(it, 1L, "organization") }
+        memberCountCache.countUsers(filters[0], 1L, "organization")
+
+        then: "丢弃该组织之前的条件，不再无限增长"
+        (MemberCountCache.MAX_FILTERS + 2) * userMapper.selectCountUsers(*_) >> 1
+        memberCountCache.counts["organization:1"].size() == 2
+    }
+}
@@ -0,0 +1,89 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.iam.infra.dataobject.MenuDO
+import io.choerodon.iam.infra.dataobject.PermissionDO
+import io.choerodon.iam.infra.mapper.MenuMapper
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Specification
+
+import java.util.function.Predicate
+
+/**
+ * @author superlee
+ */
+class MenuTreeCacheSpec extends Specification {
+
+    private MenuMapper menuMapper = Mock(MenuMapper)
+    private PermissionIndex permissionIndex = Stub(PermissionIndex) {
+        menuPermissionFilter(*_) >> ({ true } as Predicate)
+    }
+    private MenuTreeCache menuTreeCache = new MenuTreeCache(menuMapper, permissionIndex)
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "listMenus by language"() {
+        when: "中文和英文各查询一次site层菜单"
+        language("zh_CN")
+        def zh = menuTreeCache.listMenus("site", 1L, null, null)
+        language("en_US")
+        def en = menuTreeCache.listMenus("site", 1L, null, null)
+
+        then: "每种语言各查一次库"
+        1 * menuMapper.queryMenusWithPermissions("site", null) >> [menu(1L, "用户管理")]
+        1 * menuMapper.queryMenusWithPermissions("site", null) >> [menu(1L, "User Management")]
+        zh*.name == ["用户管理"]
+        en*.name == ["User Management"]
+
+        when: "再次查询中文"
+        language("zh_CN")
+        zh = menuTreeCache.listMenus("site", 1L, null, null)
+
+        then: "不再查库"
+        0 * menuMapper._
+        zh*.name == ["用户管理"]
+    }
+
+    def "evict by level"() {
+        given: "site层和project层的菜单都已缓存"
+        language("zh_CN")
+        1 * menuMapper.queryMenusWithPermissions("site", null) >> [menu(1L, "用户管理")]
+        1 * menuMapper.queryMenusWithPermissions("project", null) >> [menu(2L, "项目设置")]
+        menuTreeCache.listMenus("site", 1L, null, null)
+        menuTreeCache.listMenus("project", 1L, "project", 1L)
+
+        when: "project层菜单变化"
+        menuTreeCache.onCacheEvent(CacheEvent.menuChanged("project"))
+        def site = menuTreeCache.listMenus("site", 1L, null, null)
+        def project = menuTreeCache.listMenus("project", 1L, "project", 1L)
+
+        then: "只重新加载project层"
+        0 * menuMapper.queryMenusWithPermissions("site", null)
+        1 * menuMapper.queryMenusWithPermissions("project", null) >> [menu(2L, "项目管理")]
+        site*.name == ["用户管理"]
+        project*.name == ["项目管理"]
+    }
+
+    private static void language(String language) {
+        CustomUserDetails details = new CustomUserDetails("admin", "unknown", Collections.emptyList())
+        details.setUserId(1L)
+        details.setLanguage(language)
+        def authentication = new UsernamePasswordAuthenticationToken(details, null, Collections.emptyList())
+        authentication.setDetails(details)
+        SecurityContextHolder.getContext().setAuthentication(authentication)
+    }
+
+    private static MenuDO menu(Long id, String name) {
+        PermissionDO permission = new PermissionDO()
+        permission.setCode("iam-service.menu.query")
+        MenuDO menu = new MenuDO()
+        menu.setId(id)
+        menu.setName(name)
+        menu.setType("menu")
+        menu.setPermissions([permission])
+        return menu
+    }
+}
@@ -0,0 +1,132 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.iam.infra.dataobject.MemberRoleDO
+import io.choerodon.iam.infra.dataobject.PermissionDO
+import io.choerodon.iam.infra.dataobject.RoleDO
+import io.choerodon.iam.infra.dataobject.RolePermissionDO
+import io.choerodon.iam.infra.mapper.MemberRoleMapper
+import io.choerodon.iam.infra.mapper.PermissionMapper
+import io.choerodon.iam.infra.mapper.RoleMapper
+import io.choerodon.iam.infra.mapper.RolePermissionMapper
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class PermissionIndexSpec extends Specification {
+
+    private PermissionMapper permissionMapper = Mock(PermissionMapper)
+    private RolePermissionMapper rolePermissionMapper = Mock(RolePermissionMapper)
+    private RoleMapper roleMapper = Mock(RoleMapper)
+    private MemberRoleMapper memberRoleMapper = Mock(MemberRoleMapper)
+    private PermissionIndex permissionIndex =
+            new PermissionIndex(permissionMapper, rolePermissionMapper, roleMapper, memberRoleMapper)
+
+    def setup() {
+        permissionMapper.selectAll() >> [
+                permission(1L, "iam-service.user.query", "project", false),
+                permission(2L, "iam-service.user.update", "project", false),
+                permission(3L, "iam-service.user.self", "site", true),
+                permission(4L, "iam-service.org.query", "organization", false)
+        ]
+        roleMapper.selectAll() >> [role(10L, true), role(11L, false)]
+        rolePermissionMapper.selectAll() >> [
+                rolePermission(10L, 1L), rolePermission(10L, 3L), rolePermission(10L, 4L), rolePermission(11L, 2L)
+        ]
+    }
+
+    def "checkPermission"() {
+        given: "用户在项目1有启用角色10，在项目2有禁用角色11"
+        memberRoleMapper.select(_) >> [memberRole(10L, "project", 1L), memberRole(11L, "project", 2L)]
+        def codes = ["iam-service.user.query", "iam-service.user.update",
+                     "iam-service.user.self", "iam-service.org.query", "not.exist"] as Set
+
+        when: "校验项目1"
+        def result = permissionIndex.checkPermission(1L, "project", 1L, codes)
+
+        then: "只通过角色拥有的项目层权限和login权限"
+        result == ["iam-service.user.query", "iam-service.user.self"] as Set
+
+        when: "校验项目2"
+        result = permissionIndex.checkPermission(1L, "project", 2L, codes)
+
+        then: "禁用角色的权限不通过"
+        result == ["iam-service.user.self"] as Set
+    }
+
+    def "evictMember"() {
+        when: "第一次校验没有任何角色"
+        def result = permissionIndex.checkPermission(1L, "organization", 5L, ["iam-service.org.query"] as Set)
+
+        then:
+        1 * memberRoleMapper.select(_) >> []
+        result.isEmpty()
+
+        when: "分配角色后失效缓存"
+        permissionIndex.onCacheEvent(CacheEvent.memberRoleChanged(1L, "organization", 5L))
+        result = permissionIndex.checkPermission(1L, "organization", 5L, ["iam-service.org.query"] as Set)
+
+        then: "重新加载用户角色"
+        1 * memberRoleMapper.select(_) >> [memberRole(10L, "organization", 5L)]
+        result == ["iam-service.org.query"] as Set
+    }
+
+    def "menuPermissionFilter"() {
+        given: "用户在项目1有启用角色10"
+        memberRoleMapper.select(_) >> [memberRole(10L, "project", 1L)]
+
+        when: "菜单权限不区分层级"
+        def filter = permissionIndex.menuPermissionFilter(1L, "project", 1L)
+
+        then:
+        filter.test("iam-service.org.query")
+        filter.test("iam-service.user.self")
+        !filter.test("iam-service.user.update")
+
+        when: "其他项目只有login权限"
+        filter = permissionIndex.menuPermissionFilter(1L, "project", 2L)
+
+        then:
+        !filter.test("iam-service.org.query")
+        filter.test("iam-service.user.self")
+
+        when: "个人中心只按sourceId匹配"
+        filter = permissionIndex.menuPermissionFilter(1L, null, 1L)
+
+        then:
+        filter.test("iam-service.user.query")
+    }
+
+    private static PermissionDO permission(Long id, String code, String level, boolean loginAccess) {
+        PermissionDO permission = new PermissionDO(code)
+        permission.setId(id)
+        permission.setLevel(level)
+        permission.setPublicAccess(false)
+        permission.setLoginAccess(loginAccess)
+        return permission
+    }
+
+    private static RoleDO role(Long id, boolean enabled) {
+        RoleDO role = new RoleDO()
+        role.setId(id)
+        role.setEnabled(enabled)
+        return role
+    }
+
+    private static RolePermissionDO rolePermission(Long roleId, Long permissionId) {
+        RolePermissionDO rolePermission = new RolePermissionDO()
+        rolePermission.setRoleId(roleId)
+        rolePermission.setPermissionId(permissionId)
+        return rolePermission
+    }
+
+    private static MemberRoleDO memberRole(Long roleId, String sourceType, Long sourceId) {
+        MemberRoleDO memberRole = new MemberRoleDO()
+        memberRole.setMemberId(1L)
+        memberRole.setMemberType("user")
+        memberRole.setRoleId(roleId)
+        memberRole.setSourceType(sourceType)
+        memberRole.setSourceId(sourceId)
+        return memberRole
+    }
+}
@@ -0,0 +1,68 @@
+package io.choerodon.iam.infra.cache
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.web.context.request.ServletWebRequest
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class ResponseVersionsSpec extends Specification {
+
+    def "conditional across nodes"() {
+        given: "两个节点"
+        def nodeA = new ResponseVersions()
+        def nodeB = new ResponseVersions()
+        int queries = 0
+        def body = {
+            queries++
+            return [code: "zh_CN", name: "简体中文"]
+        }
+
+        when: "第一次请求落到节点A"
+        def responseA = new MockHttpServletResponse()
+        def entity = nodeA.conditional(get(null, responseA), ResponseVersions.languageKey(), body)
+        String eTag = responseA.getHeader("ETag")
+
+        then:
+        entity.body.name == "简体中文"
+        eTag != null
+
+        when: "带上ETag的请求落到节点B"
+        def responseB = new MockHttpServletResponse()
+        entity = nodeB.conditional(get(eTag, responseB), ResponseVersions.languageKey(), body)
+
+        then: "内容相同，返回304"
+        entity == null
+        responseB.status == 304
+        queries == 2
+
+        when: "节点B再次收到请求"
+        def responseC = new MockHttpServletResponse()
+        entity = nodeB.conditional(get(eTag, responseC), ResponseVersions.languageKey(), body)
+
+        then: "命中缓存的ETag，不再查询"
+        entity == null
+        responseC.status == 304
+        queries == 2
+
+        when: "语言变化后"
+        nodeB.onCacheEvent(CacheEvent.languageChanged())
+        body = { [code: "zh_CN", name: "中文"] }
+        def responseD = new MockHttpServletResponse()
+        entity = nodeB.conditional(get(eTag, responseD), ResponseVersions.languageKey(), body)
+
+        then: "重新计算ETag，返回完整响应"
+        entity.body.name == "中文"
+        responseD.getHeader("ETag") != eTag
+    }
+
+    private static ServletWebRequest get(String ifNoneMatch, MockHttpServletResponse response) {
+        def request = new MockHttpServletRequest("GET", "/v1/languages/list")
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch)
+        }
+        return new ServletWebRequest(request, response)
+    }
+}
@@ -0,0 +1,41 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.iam.infra.mapper.LabelMapper
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class RoleLabelCacheSpec extends Specification {
+
+    private LabelMapper labelMapper = Mock(LabelMapper)
+    private RoleLabelCache roleLabelCache = new RoleLabelCache(labelMapper)
+
+    def "labelNames"() {
+        when: "第一次查询角色1和2的label"
+        def result = roleLabelCache.labelNames([1L, 2L])
+
+        then: "每个角色查一次库"
+        1 * labelMapper.selectLabelNamesInRoleIds([1L]) >> (["project.owner"] as Set)
+        1 * labelMapper.selectLabelNamesInRoleIds([2L]) >> (["project.gitlab.developer"] as Set)
+        result == ["project.owner", "project.gitlab.developer"] as Set
+
+        when: "再次查询相同的角色组合和单个角色"
+        result = roleLabelCache.labelNames([2L, 1L])
+        def single = roleLabelCache.labelNames([1L])
+
+        then: "不再查库"
+        0 * labelMapper._
+        result == ["project.owner", "project.gitlab.developer"] as Set
+        single == ["project.owner"] as Set
+
+        when: "角色1的label变化"
+        roleLabelCache.onCacheEvent(CacheEvent.roleLabelChanged(1L))
+        result = roleLabelCache.labelNames([1L, 2L])
+
+        then: "只重新加载角色1"
+        1 * labelMapper.selectLabelNamesInRoleIds([1L]) >> ([] as Set)
+        0 * labelMapper.selectLabelNamesInRoleIds([2L])
+        result == ["project.gitlab.developer"] as Set
+    }
+}
@@ -0,0 +1,76 @@
+package io.choerodon.iam.infra.cache
+
+import io.choerodon.iam.infra.dataobject.UserDO
+import io.choerodon.iam.infra.mapper.UserMapper
+import org.apache.ibatis.executor.result.DefaultResultContext
+import org.apache.ibatis.session.ResultHandler
+import spock.lang.Specification
+
+import static io.choerodon.iam.infra.cache.UserSearchIndex.Field.*
+
+/**
+ * @author superlee
+ */
+class UserSearchIndexSpec extends Specification {
+
+    private UserMapper userMapper = Mock(UserMapper)
+    private UserSearchIndex userSearchIndex = new UserSearchIndex(userMapper)
+
+    def setup() {
+        userMapper.selectSearchFields(_) >> { ResultHandler handler ->
+            DefaultResultContext context = new DefaultResultContext()
+            [user(1L, "admin", "admin@example.com", "管理员"),
+             user(2L, "zhangsan", "zhangsan@example.com", "张三"),
+             user(3L, "lisi", "Lisi@Test.org", null)].each {
+                context.nextResultObject(it)
+                handler.handleResult(context)
+            }
+        }
+    }
+
+    def "search before loaded"() {
+        expect: "未加载时回退到SQL"
+        userSearchIndex.search([:], "admin", EnumSet.allOf(UserSearchIndex.Field)) == null
+    }
+
+    def "search"() {
+        given:
+        userSearchIndex.load()
+
+        expect: "任一字段包含param，大小写不敏感"
+        userSearchIndex.search([:], "EXAMPLE", EnumSet.allOf(UserSearchIndex.Field)) == [1L, 2L]
+        userSearchIndex.search([:], "test", EnumSet.allOf(UserSearchIndex.Field)) == [3L]
+        userSearchIndex.search([:], "example", EnumSet.of(LOGIN_NAME, REAL_NAME)) == []
+
+        and: "字段条件之间为与的关系，短条件在候选中校验"
+        userSearchIndex.search([(LOGIN_NAME): "zhang", (EMAIL): "@"], null, EnumSet.noneOf(UserSearchIndex.Field)) == [2L]
+
+        and: "所有条件都不足三个字符时回退到SQL"
+        userSearchIndex.search([(LOGIN_NAME): "ad"], "张三", EnumSet.allOf(UserSearchIndex.Field)) == null
+    }
+
+    def "refresh changed user"() {
+        given:
+        userSearchIndex.load()
+
+        when: "用户2改名，用户3被删除"
+        userSearchIndex.onCacheEvent(CacheEvent.userChanged(2L))
+        userSearchIndex.onCacheEvent(CacheEvent.userChanged(3L))
+        def result = userSearchIndex.search([:], "example", EnumSet.allOf(UserSearchIndex.Field))
+
+        then: "查询前重新加载变化的用户"
+        1 * userMapper.listUsersByIds(_) >> [user(2L, "wangwu", "wangwu@other.com", "王五")]
+        result == [1L]
+        userSearchIndex.search([:], "wangwu", EnumSet.allOf(UserSearchIndex.Field)) == [2L]
+        userSearchIndex.search([:], "lisi", EnumSet.allOf(UserSearchIndex.Field)) == []
+    }
+
+    private static UserDO user(Long id, String loginName, String email, String realName) {
+        UserDO user = new UserDO()
+        user.setId(id)
+        user.setLoginName(loginName)
+        user.setEmail(email)
+        user.setRealName(realName)
+        return user
+    }
+}
@@ -0,0 +1,61 @@
+package io.choerodon.iam.infra.common.utils
+
+import io.choerodon.iam.infra.dataobject.UserDO
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder
+import spock.lang.Specification
+
+/**
+ * @author superlee
+ */
+class BulkPasswordEncoderSpec extends Specification {
+
+    private ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor()
+    private BulkPasswordEncoder bulkPasswordEncoder
+
+    def setup() {
+        executor.setCorePoolSize(2)
+        executor.setMaxPoolSize(2)
+        executor.initialize()
+        bulkPasswordEncoder = new BulkPasswordEncoder(executor)
+    }
+
+    def cleanup() {
+        executor.shutdown()
+    }
+
+    def "encode"() {
+        given: "两个空密码和三个明文密码"
+        def users = [user(null), user("pass1"), user(""), user("pass2"), user("pass3")]
+        def encoder = new BCryptPasswordEncoder()
+
+        when:
+        bulkPasswordEncoder.encode(users)
+
+        then: "空密码复用默认密码的密文"
+        users[0].password == users[2].password
+        encoder.matches(BulkPasswordEncoder.DEFAULT_PASSWORD, users[0].password)
+        encoder.matches("pass1", users[1].password)
+        encoder.matches("pass2", users[3].password)
+        encoder.matches("pass3", users[4].password)
+        bulkPasswordEncoder.metrics().find { it.name == "password.hash.count" }.value == 3L
+    }
+
+    def "placeholder"() {
+        expect: "常量只加密一次"
+        bulkPasswordEncoder.placeholder(BulkPasswordEncoder.LDAP_PASSWORD).is(
+                bulkPasswordEncoder.placeholder(BulkPasswordEncoder.LDAP_PASSWORD))
+
+        when: "非常量密码"
+        bulkPasswordEncoder.placeholder("pass1")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static UserDO user(String password) {
+        UserDO user = new UserDO()
+        user.setPassword(password)
+        return user
+    }
+}
@@ -0,0 +1,182 @@
+package io.choerodon.iam.infra.common.utils
+
+import io.choerodon.iam.api.dto.ImportProgressDTO
+import io.choerodon.iam.api.eventhandler.ImportProgressListener
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.core.task.AsyncTaskExecutor
+import org.springframework.kafka.core.KafkaTemplate
+import spock.lang.Specification
+
+/**
+ * 两个实例通过内存中的进度topic广播，executor中的任务由测试手动执行
+ *
+ * @author superlee
+ */
+class ImportProgressRegistrySpec extends Specification {
+
+    private static final String KEY = ImportProgressRegistry.ldapKey(1L)
+
+    private List<Runnable> tasks = []
+    private AsyncTaskExecutor executor = Stub(AsyncTaskExecutor) {
+        execute(_ as Runnable) >> { Runnable task -> tasks << task }
+    }
+    private List<ImportProgressListener> listeners = []
+    private KafkaTemplate<String, String> kafkaTemplate = Stub(KafkaTemplate) {
+        send(ImportProgressRegistry.TOPIC, _ as String, _ as String) >> { String topic, String key, String message ->
+            listeners.each { it.receive(message) }
+            return null
+        }
+    }
+    private ImportProgressSender importProgressSender = new KafkaImportProgressSender(kafkaTemplate)
+    private ImportProgressRegistry nodeA = node("node-a", importProgressSender)
+    private ImportProgressRegistry nodeB = node("node-b", importProgressSender)
+
+    def "report"() {
+        given:
+        List<ImportProgressDTO> checkpoints = []
+        ImportProgress progress = nodeA.start(ImportProgressRegistry.uploadKey(1L), { checkpoints << it })
+
+        when: "距离上次检查点不足间隔"
+        progress.addRead(3)
+        progress.addValidated(2)
+        progress.addInserted(1)
+        progress.setFailed(2)
+        nodeA.report(progress)
+
+        then: "进度交给executor广播，不在导入线程中发送"
+        checkpoints.isEmpty()
+        tasks.size() == 1
+
+        when: "超过间隔后写检查点"
+        progress.lastCheckpointTime = 0
+        nodeA.report(progress)
+
+        then:
+        checkpoints.size() == 1
+        checkpoints[0].readCount == 3
+        checkpoints[0].validatedCount == 2
+        checkpoints[0].insertedCount == 1
+        checkpoints[0].failedCount == 2
+        !checkpoints[0].finished
+    }
+
+    def "subscribe on another node"() {
+        given: "同步在节点A运行"
+        int snapshots = 0
+        ImportProgress progress = nodeA.start(KEY, {})
+
+        when: "在节点B订阅"
+        nodeB.subscribe(KEY, {
+            snapshots++
+            return progressDTO(1L, false)
+        })
+        def subscriber = nodeB.subscribers[KEY][0]
+
+        then: "推送历史记录中的检查点，保持订阅"
+        snapshots == 1
+        subscriber.pending.get().readCount == 1
+        tasks.size() == 1
+
+        when: "客户端很慢，检查点一直没有发送完成，节点A报告进度"
+        tasks.clear()
+        progress.addRead(3)
+        nodeA.report(progress)
+
+        then: "导入线程只放入广播任务"
+        tasks.size() == 1
+
+        when: "广播"
+        runTasks()
+
+        then: "节点B只保留最新的进度，等待慢的客户端"
+        subscriber.pending.get().readCount == 3
+        tasks.isEmpty()
+
+        when: "同步结束"
+        nodeA.finish(progress)
+        runTasks()
+
+        then: "节点B断开所有订阅"
+        nodeB.subscribers.isEmpty()
+        subscriber.pending.get().finished
+    }
+
+    def "subscribe on owner node"() {
+        given:
+        int snapshots = 0
+        ImportProgress progress = nodeA.start(KEY, {})
+        progress.addRead(2)
+
+        when: "同步在本实例运行"
+        nodeA.subscribe(KEY, {
+            snapshots++
+            return null
+        })
+        def subscriber = nodeA.subscribers[KEY][0]
+
+        then: "推送内存中的进度"
+        snapshots == 0
+        subscriber.pending.get().readCount == 2
+
+        when: "同步结束"
+        nodeA.finish(progress)
+        runTasks()
+
+        then:
+        nodeA.subscribers.isEmpty()
+    }
+
+    def "subscribe after finish"() {
+        when: "历史记录已结束"
+        nodeB.subscribe(KEY, { progressDTO(5L, true) })
+
+        then: "推送后断开，不保持订阅"
+        nodeB.subscribers.isEmpty()
+        tasks.isEmpty()
+
+        when: "没有历史记录"
+        nodeB.subscribe(KEY, { null })
+
+        then:
+        nodeB.subscribers.isEmpty()
+    }
+
+    def "subscribe without broadcast"() {
+        given: "没有配置广播的节点"
+        ImportProgressRegistry standalone = node("node-c", null)
+
+        when: "导入不在本实例运行"
+        standalone.subscribe(KEY, { progressDTO(1L, false) })
+
+        then: "推送检查点后断开，由客户端重连"
+        standalone.subscribers.isEmpty()
+        tasks.isEmpty()
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            List<Runnable> running = new ArrayList<>(tasks)
+            tasks.clear()
+            running*.run()
+        }
+    }
+
+    private static ImportProgressDTO progressDTO(Long readCount, boolean finished) {
+        ImportProgressDTO dto = new ImportProgressDTO()
+        dto.setReadCount(readCount)
+        dto.setFinished(finished)
+        return dto
+    }
+
+    private ImportProgressRegistry node(String nodeId, ImportProgressSender sender) {
+        ObjectProvider<ImportProgressSender> senderProvider = Stub(ObjectProvider) {
+            getIfAvailable() >> sender
+        }
+        ImportProgressRegistry registry = new ImportProgressRegistry(senderProvider, executor)
+        registry.nodeId = nodeId
+        if (sender != null) {
+            listeners << new ImportProgressListener(registry)
+        }
+        return registry
+    }
+}
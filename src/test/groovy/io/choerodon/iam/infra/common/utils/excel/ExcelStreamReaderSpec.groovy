@@ -0,0 +1,102 @@
+package io.choerodon.iam.infra.common.utils.excel
+
+import io.choerodon.core.excel.ExcelReadConfig
+import io.choerodon.core.exception.CommonException
+import io.choerodon.iam.api.dto.ExcelMemberRoleDTO
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.ss.usermodel.Workbook
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author superlee
+ */
+class ExcelStreamReaderSpec extends Specification {
+
+    @Unroll
+    def "read #suffix"() {
+        given: "readme页和一个有空行的数据页"
+        File file = write(workbook, suffix)
+        ExcelReadConfig config = new ExcelReadConfig()
+        config.setSkipSheetNames(["readme"] as String[])
+        config.setPropertyMap(["登录名*": "loginName", "角色编码*": "roleCode"])
+        List<List<ExcelMemberRoleDTO>> chunks = []
+
+        when:
+        def total = ExcelStreamReader.read(file, suffix, config, ExcelMemberRoleDTO, 2, { chunks << it })
+
+        then: "按chunk大小分批，数字按显示的格式读取"
+        total == 3
+        chunks*.size() == [2, 1]
+        chunks.flatten()*.loginName == ["admin", "test", "13800000000"]
+        chunks.flatten()*.roleCode == ["role/site/default/administrator", null, "role/project/default/project-owner"]
+
+        cleanup:
+        file.delete()
+
+        where:
+        suffix | workbook
+        "xlsx" | new XSSFWorkbook()
+        "xls"  | new HSSFWorkbook()
+    }
+
+    def "illegal column"() {
+        given:
+        File file = write(new XSSFWorkbook(), "xlsx")
+        ExcelReadConfig config = new ExcelReadConfig()
+        config.setPropertyMap(["登录名*": "loginName"])
+
+        when:
+        ExcelStreamReader.read(file, "xlsx", config, ExcelMemberRoleDTO, 2, {})
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        file.delete()
+    }
+
+    @Unroll
+    def "validate #expected"() {
+        given:
+        File file = write(new XSSFWorkbook(), "xlsx", rows)
+        ExcelReadConfig config = new ExcelReadConfig()
+        config.setSkipSheetNames(["readme"] as String[])
+        config.setPropertyMap(["登录名*": "loginName", "角色编码*": "roleCode"])
+
+        when: "异步导入前检查"
+        String code = null
+        try {
+            ExcelStreamReader.validate(file, "xlsx", config, ExcelMemberRoleDTO, "error.excel.memberRole.empty")
+        } catch (CommonException e) {
+            code = e.code
+        }
+
+        then:
+        code == expected
+
+        cleanup:
+        file.delete()
+
+        where:
+        rows                                        | expected
+        [["登录名*", "角色编码*"], ["admin"], ["test"]] | null
+        [["登录名*", "角色编码*"], []]                  | "error.excel.memberRole.empty"
+        [["登录名", "角色编码*"], ["admin"]]            | "error.excel.illegal.column"
+    }
+
+    private static File write(Workbook workbook, String suffix,
+                              List<List> rows = [["登录名*", "角色编码*"], ["admin", "role/site/default/administrator"],
+                                                 ["test"], [], [13800000000d, "role/project/default/project-owner"]]) {
+        workbook.createSheet("README").createRow(0).createCell(0).setCellValue("说明")
+        def sheet = workbook.createSheet("用户")
+        rows.eachWithIndex { values, i ->
+            def row = sheet.createRow(i)
+            values.eachWithIndex { value, j -> row.createCell(j).setCellValue(value) }
+        }
+        File file = File.createTempFile("excel-stream-reader", "." + suffix)
+        file.withOutputStream { workbook.write(it) }
+        return file
+    }
+}
@@ -0,0 +1,106 @@
+package io.choerodon.iam.infra.common.utils.excel
+
+import io.choerodon.iam.api.dto.ErrorUserDTO
+import io.choerodon.iam.infra.dataobject.UserDO
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author superlee
+ */
+class ExcelUserDeduplicatorSpec extends Specification {
+
+    def "distinct"() {
+        given: "第一批"
+        ExcelUserDeduplicator deduplicator = new ExcelUserDeduplicator()
+        List<ErrorUserDTO> errorUsers = []
+        def users = [user("a", "a@x.com"), user("a", "a@x.com"), user("a", "c@x.com"),
+                     user("b", "b@x.com"), user("c", "b@x.com"),
+                     user("n1", "e1@x.com"), user("n1", "e2@x.com"), user("n2", "e2@x.com")]
+
+        when:
+        def distinct = deduplicator.distinct(users, errorUsers)
+
+        then: "登录名和邮箱都与其他行重复的行不保留，其余先出现的用户保留"
+        distinct*.loginName == ["a", "b", "n1", "n2"]
+        errorUsers*.cause == ["Excel中存在重复的用户名和邮箱", "Excel中存在重复的用户名",
+                              "Excel中存在重复的邮箱", "Excel中存在重复的用户名和密码"]
+        errorUsers*.loginName == ["a", "a", "c", "n1"]
+
+        when: "第二批与第一批比较"
+        errorUsers.clear()
+        distinct = deduplicator.distinct([user("a", "a@x.com"), user("n2", "c@x.com"), user("x", "e1@x.com"),
+                                          user("n1", "e2@x.com"), user("d", "d@x.com")], errorUsers)
+
+        then:
+        distinct*.loginName == ["d"]
+        errorUsers*.cause == ["Excel中存在重复的用户名和邮箱", "Excel中存在重复的用户名",
+                              "Excel中存在重复的邮箱", "Excel中存在重复的用户名和邮箱"]
+        deduplicator.size() == 5
+    }
+
+    @Unroll
+    def "distinct #users.loginName #users.email"() {
+        given:
+        List<ErrorUserDTO> errorUsers = []
+
+        when:
+        def distinct = new ExcelUserDeduplicator().distinct(users, errorUsers)
+
+        then: "原因与行的顺序无关"
+        distinct*.email.sort() == ["e1@x.com", "e2@x.com"]
+        errorUsers*.email == ["e2@x.com"]
+        errorUsers*.loginName == ["n1"]
+        errorUsers*.cause == ["Excel中存在重复的用户名和密码"]
+
+        where:
+        users << [user("n1", "e1@x.com"), user("n1", "e2@x.com"), user("n2", "e2@x.com")].permutations()
+    }
+
+    def "stringHashMap"() {
+        given:
+        ExcelUserDeduplicator.StringHashMap map = new ExcelUserDeduplicator.StringHashMap()
+
+        when: "扩容多次"
+        10000.times { map.put("key" + it, "value" + it) }
+        map.put("key1", "new")
+
+        then:
+        map.size == 10000
+        map.get("key1") == "new"
+        map.get("key9999") == "value9999"
+        map.get("key10000") == null
+    }
+
+    /**
+     * 吞吐量基准，-Dexcel.benchmark=true 时运行
+     */
+    @Unroll
+    @Requires({ Boolean.getBoolean("excel.benchmark") })
+    def "benchmark #rows rows"() {
+        given: "十分之一的用户与之前的用户重复"
+        List<UserDO> users = (0..<rows).collect { user("user" + (it % 10 == 9 ? it - 1 : it), "user${it}@x.com") }
+        //预热
+        3.times { new ExcelUserDeduplicator().distinct(users, []) }
+
+        when:
+        long begin = System.nanoTime()
+        def distinct = new ExcelUserDeduplicator().distinct(users, [])
+        long millis = (System.nanoTime() - begin).intdiv(1000000)
+        println "distinct ${rows} rows for ${millis} millisecond"
+
+        then:
+        distinct.size() == rows - rows.intdiv(10)
+
+        where:
+        rows << [10000, 100000, 500000]
+    }
+
+    private static UserDO user(String loginName, String email) {
+        UserDO user = new UserDO()
+        user.setLoginName(loginName)
+        user.setEmail(email)
+        return user
+    }
+}
@@ -0,0 +1,123 @@
+package io.choerodon.iam.infra.common.utils.menu
+
+import io.choerodon.iam.api.dto.MenuDTO
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author superlee
+ */
+class MenuTreeUtilSpec extends Specification {
+
+    private static MenuDTO menu(Long id, Long parentId, String type, Integer sort) {
+        MenuDTO menu = new MenuDTO()
+        menu.setId(id)
+        menu.setParentId(parentId)
+        menu.setType(type)
+        menu.setSort(sort)
+        return menu
+    }
+
+    def "formatMenu"() {
+        given: "乱序的菜单列表"
+        def menus = [
+                menu(5L, 2L, "menu", 2),
+                menu(1L, 0L, "root", 10),
+                menu(4L, 2L, "menu", 1),
+                menu(2L, 1L, "dir", null),
+                menu(3L, 1L, "menu", 1),
+                menu(6L, 0L, "dir", 1),
+                menu(7L, 0L, "menu", 0)
+        ]
+
+        when:
+        def tree = MenuTreeUtil.formatMenu(menus)
+
+        then: "只有root和dir类型的顶层菜单"
+        tree*.id == [6L, 1L]
+
+        and: "子菜单按sort排序，sort为空的在前"
+        tree[1].subMenus*.id == [2L, 3L]
+        tree[1].subMenus[0].subMenus*.id == [4L, 5L]
+        tree[1].subMenus[1].subMenus == null
+        tree[0].subMenus == null
+    }
+
+    def "formatMenu with many menus"() {
+        given: "每个目录下100个菜单"
+        def menus = []
+        (1..50).each { d ->
+            menus << menu(d as Long, 0L, "dir", 50 - d)
+            (1..100).each { m -> menus << menu((d * 1000 + m) as Long, d as Long, "menu", m % 7) }
+        }
+
+        when:
+        def tree = MenuTreeUtil.formatMenu(menus)
+
+        then:
+        tree.size() == 50
+        tree[0].id == 50L
+        tree.every { it.subMenus.size() == 100 }
+        tree.every { dir -> dir.subMenus*.sort == dir.subMenus*.sort.sort(false) }
+    }
+
+    /**
+     * 与原来逐层扫描整个列表的实现对比耗时，-Dmenu.benchmark=true 时运行
+     * 原实现为O(n²)，只在5000个菜单时对比
+     */
+    @Unroll
+    @Requires({ Boolean.getBoolean("menu.benchmark") })
+    def "benchmark #size menus"() {
+        given: "每个目录下49个菜单"
+        def menus = (0..<size).collect { i ->
+            i % 50 == 0 ? menu(i as Long, 0L, "dir", size - i) : menu(i as Long, (i - i % 50) as Long, "menu", i % 7)
+        }
+        //预热
+        5.times { MenuTreeUtil.formatMenu(new ArrayList<>(menus)) }
+
+        when:
+        long begin = System.nanoTime()
+        def tree = MenuTreeUtil.formatMenu(new ArrayList<>(menus))
+        long micros = (System.nanoTime() - begin).intdiv(1000)
+        println "formatMenu ${size} menus for ${micros} microsecond"
+        if (compare) {
+            begin = System.nanoTime()
+            def reference = quadraticFormat(new ArrayList<>(menus))
+            println "quadratic formatMenu ${size} menus for ${(System.nanoTime() - begin).intdiv(1000)} microsecond"
+            assert reference*.id == tree*.id
+        }
+
+        then:
+        tree.size() == size.intdiv(50)
+        tree.every { it.subMenus.size() == 49 }
+
+        where:
+        size  | compare
+        5000  | true
+        50000 | false
+    }
+
+    /**
+     * 原来的实现，每个菜单扫描一遍整个列表找子菜单
+     */
+    private static List<MenuDTO> quadraticFormat(List<MenuDTO> menus) {
+        def display = menus.findAll { it.parentId == 0L && it.type in ["root", "dir"] }
+        display.each { it.subMenus = quadraticChildren(it.id, menus) }
+        return display.sort(false) { it.sort }
+    }
+
+    private static List<MenuDTO> quadraticChildren(Long id, List<MenuDTO> menus) {
+        List<MenuDTO> children = null
+        for (MenuDTO menu : menus) {
+            if (menu.parentId == id) {
+                if (children == null) {
+                    children = []
+                }
+                menu.subMenus = quadraticChildren(menu.id, menus)
+                children << menu
+            }
+        }
+        return children == null ? null : children.sort(false) { it.sort }
+    }
+}
@@ -0,0 +1,130 @@
+package io.choerodon.iam.infra.common.utils.swagger
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import groovy.json.JsonOutput
+import io.choerodon.core.swagger.SwaggerExtraData
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+
+/**
+ * @author superlee
+ */
+class SwaggerOperationReaderSpec extends Specification {
+
+    private static String document(String summary, String host) {
+        JsonOutput.toJson([
+                swagger: "2.0",
+                host   : host,
+                tags   : [[name: "user-controller"]],
+                paths  : [
+                        "/v1/users/{id}": [
+                                parameters: [[name: "id", in: "path"]],
+                                get       : [
+                                        tags       : ["user-controller"],
+                                        summary    : summary,
+                                        description: JsonOutput.toJson([permission: [action: "query", permissionLevel: "site", roles: ["role/site/default/developer"]]]),
+                                        responses  : ["200": [description: "OK", schema: [type: "object"]]]
+                                ],
+                                put       : [
+                                        tags   : ["user-controller"],
+                                        summary: "更新用户"
+                                ]
+                        ]
+                ]
+        ])
+    }
+
+    def "read"() {
+        when: "读取文档"
+        def operations = SwaggerOperationReader.read(document("查询用户", "127.0.0.1:8030"))
+
+        then: "跳过path层级的parameters"
+        operations.size() == 2
+        operations[0].path == "/v1/users/{id}"
+        operations[0].method == "get"
+        operations[0].resourceCode == "user"
+        operations[0].summary == "查询用户"
+
+        and: "读取权限描述"
+        def extraData = SwaggerOperationReader.readExtraData(operations[0])
+        extraData.permission.action == "query"
+        extraData.permission.roles == ["role/site/default/developer"] as String[]
+        SwaggerOperationReader.readExtraData(operations[1]) == null
+    }
+
+    def "fingerprint"() {
+        when:
+        def origin = SwaggerOperationReader.fingerprint(SwaggerOperationReader.read(document("查询用户", "127.0.0.1:8030")))
+        def otherHost = SwaggerOperationReader.fingerprint(SwaggerOperationReader.read(document("查询用户", "127.0.0.2:8030")))
+        def otherSummary = SwaggerOperationReader.fingerprint(SwaggerOperationReader.read(document("查询单个用户", "127.0.0.1:8030")))
+
+        then: "指纹只与接口有关"
+        origin == otherHost
+        origin != otherSummary
+    }
+
+    /**
+     * 与readTree加逐个readValue的方式对比耗时和分配的内存，-Dswagger.benchmark=true 时运行
+     * 文档包含2000个接口，每个接口带参数和响应，大小约为几MB
+     */
+    @Requires({ Boolean.getBoolean("swagger.benchmark") })
+    def "benchmark"() {
+        given:
+        def paths = [:]
+        (0..<2000).each { i ->
+            paths["/v1/resource${i}/{id}".toString()] = [
+                    get: [
+                            tags       : ["resource${i}-controller".toString()],
+                            summary    : "查询资源${i}".toString(),
+                            description: JsonOutput.toJson([permission: [action: "query", permissionLevel: "project", roles: []]]),
+                            parameters : (0..<5).collect { [name: "p${it}".toString(), in: "query", type: "string", description: "参数说明" * 10] },
+                            responses  : ["200": [description: "OK", schema: [type: "object", properties: (0..<20).collectEntries { ["field${it}".toString(), [type: "string"]] }]]]
+                    ]
+            ]
+        }
+        String json = JsonOutput.toJson([swagger: "2.0", paths: paths])
+        ObjectMapper objectMapper = new ObjectMapper()
+        def treeRead = {
+            int count = 0
+            JsonNode node = objectMapper.readTree(json)
+            node.get("paths").fields().each { path ->
+                path.value.fields().each { method ->
+                    JsonNode description = method.value.get("description")
+                    if (description != null && objectMapper.readValue(description.asText(), SwaggerExtraData) != null) {
+                        count++
+                    }
+                }
+            }
+            return count
+        }
+        def streamRead = {
+            SwaggerOperationReader.read(json).count { SwaggerOperationReader.readExtraData(it) != null }
+        }
+        //预热
+        5.times { treeRead(); streamRead() }
+
+        when:
+        def tree = measure(treeRead)
+        def stream = measure(streamRead)
+        println "document ${json.length() >> 10} KB, readTree: ${tree.millis} ms ${tree.bytes >> 10} KB allocated, " +
+                "streaming: ${stream.millis} ms ${stream.bytes >> 10} KB allocated"
+
+        then:
+        tree.result == 2000
+        stream.result == 2000
+    }
+
+    private static Map measure(Closure action) {
+        def threadMXBean = ManagementFactory.getThreadMXBean()
+        long threadId = Thread.currentThread().getId()
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId)
+        long begin = System.nanoTime()
+        def result = action()
+        return [result: result,
+                millis: (System.nanoTime() - begin).intdiv(1000000),
+                bytes : threadMXBean.getThreadAllocatedBytes(threadId) - bytes]
+    }
+}
@@ -0,0 +1,180 @@
+package io.choerodon.iam.infra.mapper
+
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.iam.IntegrationTestConfiguration
+import io.choerodon.iam.api.dto.CheckPermissionDTO
+import io.choerodon.iam.app.service.impl.PermissionServiceImpl
+import io.choerodon.iam.domain.repository.MenuPermissionRepository
+import io.choerodon.iam.domain.repository.PermissionRepository
+import io.choerodon.iam.domain.repository.RolePermissionRepository
+import io.choerodon.iam.infra.cache.CacheEventPublisher
+import io.choerodon.iam.infra.cache.PermissionIndex
+import io.choerodon.iam.infra.dataobject.MemberRoleDO
+import io.choerodon.iam.infra.dataobject.PermissionDO
+import io.choerodon.iam.infra.dataobject.RoleDO
+import io.choerodon.iam.infra.dataobject.RolePermissionDO
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.cloud.client.discovery.DiscoveryClient
+import org.springframework.context.annotation.Import
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 每个feature在事务中执行，结束后回滚造的数据
+ *
+ * @author superlee
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+@Transactional
+class PermissionMapperSpec extends Specification {
+
+    private static final Long USER_ID = 99999L
+    private static final Long ORGANIZATION_ID = 9999L
+    private static final Long OTHER_ORGANIZATION_ID = 9998L
+    private static final Long PROJECT_ID = 9999L
+
+    @Autowired
+    private PermissionMapper permissionMapper
+
+    @Autowired
+    private RoleMapper roleMapper
+
+    @Autowired
+    private RolePermissionMapper rolePermissionMapper
+
+    @Autowired
+    private MemberRoleMapper memberRoleMapper
+
+    @Autowired
+    private PermissionRepository permissionRepository
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "checkPermissionBySources matches per source queries"() {
+        given: "三个层级的角色，其中一个停用，另有公开和登录可访问的权限"
+        def site = insertPermission("test.site.query", "site", false, false)
+        def org = insertPermission("test.org.query", "organization", false, false)
+        def orgDisabled = insertPermission("test.org.update", "organization", false, false)
+        def login = insertPermission("test.org.login", "organization", false, true)
+        def project = insertPermission("test.project.query", "project", false, false)
+        def open = insertPermission("test.project.public", "project", true, false)
+        insertPermission("test.project.ungranted", "project", false, false)
+        grant(insertRole("role/test/site", "site", true), 0L, "site", [site])
+        grant(insertRole("role/test/org", "organization", true), ORGANIZATION_ID, "organization", [org, login])
+        grant(insertRole("role/test/org-disabled", "organization", false), ORGANIZATION_ID, "organization", [orgDisabled])
+        grant(insertRole("role/test/project", "project", true), PROJECT_ID, "project", [project, open])
+        def codes = ["test.site.query", "test.org.query", "test.org.update", "test.org.login",
+                     "test.project.query", "test.project.public", "test.project.ungranted"]
+        List<CheckPermissionDTO> dtoList = []
+        codes.each { code ->
+            dtoList << checkPermission(code, "site", null, null)
+            dtoList << checkPermission(code, "organization", ORGANIZATION_ID, null)
+            dtoList << checkPermission(code, "organization", OTHER_ORGANIZATION_ID, null)
+            dtoList << checkPermission(code, "project", null, PROJECT_ID)
+        }
+        PermissionServiceImpl permissionService = new PermissionServiceImpl(permissionRepository,
+                Mock(DiscoveryClient), Mock(RolePermissionRepository), Mock(MenuPermissionRepository),
+                Mock(PermissionIndex), Mock(CacheEventPublisher))
+        permissionService.permissionIndexEnabled = false
+        login(USER_ID)
+
+        when: "一次查询所有source"
+        def result = permissionService.checkPermission(dtoList)
+
+        then: "与逐个source查询的结果一致"
+        result.each { dto ->
+            Long sourceId = dto.resourceType == "site" ? 0L
+                    : dto.resourceType == "organization" ? dto.organizationId : dto.projectId
+            boolean expected = permissionMapper.checkPermission(USER_ID, dto.resourceType, sourceId,
+                    [dto.code] as Set).contains(dto.code)
+            assert (dto.approve == true) == expected: "${dto.resourceType}:${sourceId}:${dto.code}"
+        }
+
+        and: "公开和登录可访问的权限在每个source都通过，停用角色和其他组织的权限不通过"
+        approved(result, "site", 0L) == ["test.org.login", "test.project.public", "test.site.query"]
+        approved(result, "organization", ORGANIZATION_ID) ==
+                ["test.org.login", "test.org.query", "test.project.public"]
+        approved(result, "organization", OTHER_ORGANIZATION_ID) == ["test.org.login", "test.project.public"]
+        approved(result, "project", PROJECT_ID) == ["test.org.login", "test.project.public", "test.project.query"]
+    }
+
+    private static List<String> approved(List<CheckPermissionDTO> result, String resourceType, Long sourceId) {
+        result.findAll {
+            it.resourceType == resourceType && it.approve &&
+                    (resourceType == "site" || (it.organizationId ?: it.projectId) == sourceId)
+        }*.code.sort()
+    }
+
+    private static CheckPermissionDTO checkPermission(String code, String resourceType, Long organizationId,
+                                                      Long projectId) {
+        CheckPermissionDTO dto = new CheckPermissionDTO()
+        dto.setCode(code)
+        dto.setResourceType(resourceType)
+        dto.setOrganizationId(organizationId)
+        dto.setProjectId(projectId)
+        return dto
+    }
+
+    private static void login(Long userId) {
+        CustomUserDetails details = new CustomUserDetails("user", "unknown", Collections.emptyList())
+        details.setUserId(userId)
+        details.setAdmin(false)
+        def authentication = new UsernamePasswordAuthenticationToken(details, null, Collections.emptyList())
+        authentication.setDetails(details)
+        SecurityContextHolder.getContext().setAuthentication(authentication)
+    }
+
+    private PermissionDO insertPermission(String code, String level, boolean publicAccess, boolean loginAccess) {
+        PermissionDO permission = new PermissionDO()
+        permission.setCode(code)
+        permission.setPath("/v1/test/" + code)
+        permission.setMethod("get")
+        permission.setLevel(level)
+        permission.setAction(code)
+        permission.setResource("test")
+        permission.setPublicAccess(publicAccess)
+        permission.setLoginAccess(loginAccess)
+        permission.setWithin(false)
+        permission.setServiceName("test-service")
+        permissionMapper.insertSelective(permission)
+        return permission
+    }
+
+    private RoleDO insertRole(String code, String level, boolean enabled) {
+        RoleDO role = new RoleDO()
+        role.setCode(code)
+        role.setName(code)
+        role.setLevel(level)
+        role.setEnabled(enabled)
+        role.setModified(true)
+        role.setEnableForbidden(true)
+        role.setBuiltIn(false)
+        role.setAssignable(true)
+        roleMapper.insertSelective(role)
+        return role
+    }
+
+    private void grant(RoleDO role, Long sourceId, String sourceType, List<PermissionDO> permissions) {
+        permissions.each {
+            RolePermissionDO rolePermission = new RolePermissionDO()
+            rolePermission.setRoleId(role.getId())
+            rolePermission.setPermissionId(it.getId())
+            rolePermissionMapper.insertSelective(rolePermission)
+        }
+        MemberRoleDO memberRole = new MemberRoleDO()
+        memberRole.setRoleId(role.getId())
+        memberRole.setMemberId(USER_ID)
+        memberRole.setMemberType("user")
+        memberRole.setSourceId(sourceId)
+        memberRole.setSourceType(sourceType)
+        memberRoleMapper.insertSelective(memberRole)
+    }
+}
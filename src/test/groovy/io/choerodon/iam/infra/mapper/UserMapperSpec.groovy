@@ -0,0 +1,247 @@
+package io.choerodon.iam.infra.mapper
+
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.iam.IntegrationTestConfiguration
+import io.choerodon.iam.api.dto.RoleAssignmentSearchDTO
+import io.choerodon.iam.api.dto.RoleSearchDTO
+import io.choerodon.iam.app.service.RoleService
+import io.choerodon.iam.app.service.UserService
+import io.choerodon.iam.domain.repository.UserRepository
+import io.choerodon.iam.infra.cache.UserSearchIndex
+import io.choerodon.iam.infra.dataobject.MemberRoleDO
+import io.choerodon.iam.infra.dataobject.RoleDO
+import io.choerodon.iam.infra.dataobject.UserDO
+import io.choerodon.mybatis.pagehelper.domain.PageRequest
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 每个feature在事务中执行，结束后回滚造的数据
+ *
+ * @author superlee
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+@Transactional
+class UserMapperSpec extends Specification {
+
+    private static final Long ORGANIZATION_ID = 9999L
+
+    private static final String ORGANIZATION = "organization"
+
+    private static final Long OPERATOR_ID = 99999L
+
+    @Autowired
+    private UserMapper userMapper
+
+    @Autowired
+    private RoleMapper roleMapper
+
+    @Autowired
+    private MemberRoleMapper memberRoleMapper
+
+    @Autowired
+    private UserRepository userRepository
+
+    @Autowired
+    private UserService userService
+
+    @Autowired
+    private RoleService roleService
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    @Unroll
+    def "fulltextSearch #param through index and sql"() {
+        given: "用户名中带有LIKE通配符的用户"
+        ["zhang_san", "zhangxsan", "li%si", "lixsi", "wangwu"].each { insertUser(it) }
+        UserSearchIndex index = new UserSearchIndex(userMapper)
+        index.load()
+        UserDO userDO = new UserDO()
+        userDO.setOrganizationId(ORGANIZATION_ID)
+
+        when: "分别通过索引和SQL查询"
+        List<Long> ids = index.search([:], param, EnumSet.allOf(UserSearchIndex.Field))
+        def byIndex = userMapper.fulltextSearch(userDO, ids, param)*.loginName.sort()
+        def bySql = userMapper.fulltextSearch(userDO, null, param)*.loginName.sort()
+
+        then: "结果一致"
+        byIndex == bySql
+        bySql == expected
+        (ids == null) == wildcard
+
+        where:
+        param   | wildcard | expected
+        "zhang" | false    | ["zhang_san", "zhangxsan"]
+        "ng_s"  | true     | ["zhang_san", "zhangxsan"]
+        "i%s"   | true     | ["li%si", "lixsi"]
+        "xsi"   | false    | ["lixsi"]
+    }
+
+    def "cursorQueryUsersWithLevelRoles pages through members"() {
+        given: "组织下5个成员，其中一个有两个角色，另有一个其他组织的成员"
+        RoleDO member = insertRole("role/test/member")
+        RoleDO owner = insertRole("role/test/owner")
+        List<Long> memberIds = (1..5).collect { insertUser("member" + it).getId() }
+        memberIds.each { insertMemberRole(member.getId(), it, ORGANIZATION_ID) }
+        insertMemberRole(owner.getId(), memberIds[2], ORGANIZATION_ID)
+        insertMemberRole(member.getId(), insertUser("other").getId(), ORGANIZATION_ID + 1)
+
+        when: "每页2条翻到最后一页"
+        List<Long> ids = []
+        Map<Long, Integer> roleCounts = [:]
+        List<Integer> pageSizes = []
+        List<String> cursors = []
+        String cursor = null
+        while (true) {
+            def page = userService.cursorQueryUsersWithLevelRoles(cursor, 2, false, null, ORGANIZATION_ID, ORGANIZATION)
+            ids.addAll(page.getContent()*.id)
+            page.getContent().each { roleCounts[it.getId()] = it.getRoles().size() }
+            pageSizes << page.getContent().size()
+            cursor = page.getNextCursor()
+            cursors << cursor
+            if (cursor == null) {
+                break
+            }
+        }
+
+        then: "按用户分页，没有遗漏也没有重复，最后一页nextCursor为空"
+        pageSizes == [2, 2, 1]
+        ids == memberIds
+        roleCounts[memberIds[2]] == 2
+        cursors.last() == null
+        cursors.findAll { it == null }.size() == 1
+    }
+
+    def "grouped role user counts and users match per role queries"() {
+        given: "三个角色，其中一个没有成员，一个用户同时有两个角色"
+        RoleDO reader = insertRole("role/test/reader")
+        RoleDO writer = insertRole("role/test/writer")
+        RoleDO empty = insertRole("role/test/empty")
+        List<Long> userIds = (1..4).collect { insertUser("role" + it).getId() }
+        userIds[0..2].each { insertMemberRole(reader.getId(), it, ORGANIZATION_ID) }
+        userIds[2..3].each { insertMemberRole(writer.getId(), it, ORGANIZATION_ID) }
+        insertMemberRole(empty.getId(), insertUser("other").getId(), ORGANIZATION_ID + 1)
+        List<RoleDO> roles = [reader, writer, empty]
+
+        when: "按角色分组的查询"
+        Map<Long, Integer> counts = userMapper.selectUserCountGroupByRole(
+                "user", ORGANIZATION_ID, ORGANIZATION, null, null).collectEntries { [(it.getId()): it.getUserCount()] }
+        Map<Long, List<Long>> usersByRole = [:]
+        userMapper.selectUsersByRoleIds(roles*.id, ORGANIZATION_ID, ORGANIZATION).each { user ->
+            user.getRoles().each { usersByRole.get(it.getId(), []) << user.getId() }
+        }
+
+        then: "与逐个角色查询的结果一致"
+        roles.each { role ->
+            assert counts.getOrDefault(role.getId(), 0) == userMapper.selectUserCountFromMemberRoleByOptions(
+                    role.getId(), "user", ORGANIZATION_ID, ORGANIZATION, null, null)
+            assert usersByRole.getOrDefault(role.getId(), []).sort() == userMapper.selectUsersFromMemberRoleByOptions(
+                    role.getId(), "user", ORGANIZATION_ID, ORGANIZATION, null, null)*.id.sort()
+        }
+        counts[reader.getId()] == 3
+        counts[writer.getId()] == 2
+        !counts.containsKey(empty.getId())
+
+        when: "通过service查询"
+        def countRoles = roleService.listRolesWithUserCountOnOrganizationLevel(new RoleAssignmentSearchDTO(), ORGANIZATION_ID)
+        RoleSearchDTO roleSearchDTO = new RoleSearchDTO()
+        roleSearchDTO.setCode("role/test/")
+        def userRoles = roleService.pagingQuery(new PageRequest(0, 10), true, ORGANIZATION_ID, ORGANIZATION, roleSearchDTO).getContent()
+
+        then: "没有成员的角色数量为0，用户列表为空，两个角色的用户在两个列表中"
+        countRoles.findAll { it.getId() in roles*.id }.collectEntries { [(it.getId()): it.getUserCount()] } ==
+                [(reader.getId()): 3, (writer.getId()): 2, (empty.getId()): 0]
+        userRoles.collectEntries { [(it.getId()): it.getUsers()*.id.sort()] } ==
+                [(reader.getId()): userIds[0..2], (writer.getId()): userIds[2..3], (empty.getId()): []]
+    }
+
+    def "insertList fills ids across chunks"() {
+        given: "超过一次多行插入上限的用户"
+        List<UserDO> users = (1..1001).collect { newUser("batch.insert." + it) }
+        login(OPERATOR_ID)
+
+        when:
+        userRepository.insertList(users)
+
+        then: "每一行都回填了不重复的id"
+        users.every { it.id != null }
+        (users*.id as Set).size() == users.size()
+
+        and: "id与按login_name查询到的行一致，审计字段和password_attempt已填充"
+        def rows = userMapper.selectByLoginNames(users*.loginName as Set)
+        rows.collectEntries { [(it.loginName): it.id] } == users.collectEntries { [(it.loginName): it.id] }
+        def row = userMapper.selectByPrimaryKey(users[1000].id)
+        row.createdBy == OPERATOR_ID
+        row.lastUpdatedBy == OPERATOR_ID
+        row.creationDate != null
+        row.objectVersionNumber == 1L
+        row.passwordAttempt == 0
+    }
+
+    private RoleDO insertRole(String code) {
+        RoleDO role = new RoleDO()
+        role.setCode(code)
+        role.setName(code)
+        role.setLevel(ORGANIZATION)
+        role.setEnabled(true)
+        role.setModified(true)
+        role.setEnableForbidden(true)
+        role.setBuiltIn(false)
+        role.setAssignable(true)
+        roleMapper.insertSelective(role)
+        return role
+    }
+
+    private void insertMemberRole(Long roleId, Long userId, Long sourceId) {
+        MemberRoleDO memberRole = new MemberRoleDO()
+        memberRole.setRoleId(roleId)
+        memberRole.setMemberId(userId)
+        memberRole.setMemberType("user")
+        memberRole.setSourceId(sourceId)
+        memberRole.setSourceType(ORGANIZATION)
+        memberRoleMapper.insertSelective(memberRole)
+    }
+
+    private UserDO insertUser(String loginName) {
+        UserDO user = newUser(loginName)
+        userMapper.insertSelective(user)
+        return user
+    }
+
+    private static UserDO newUser(String loginName) {
+        UserDO user = new UserDO()
+        user.setLoginName(loginName)
+        user.setEmail(loginName.replace("%", "") + "@test.com")
+        user.setOrganizationId(ORGANIZATION_ID)
+        user.setPassword("password")
+        user.setRealName(loginName)
+        user.setEnabled(true)
+        user.setLocked(false)
+        user.setLdap(false)
+        user.setAdmin(false)
+        user.setLanguage("zh_CN")
+        user.setTimeZone("CTT")
+        user.setLastPasswordUpdatedAt(new Date())
+        return user
+    }
+
+    private static void login(Long userId) {
+        CustomUserDetails details = new CustomUserDetails("user", "unknown", Collections.emptyList())
+        details.setUserId(userId)
+        details.setAdmin(false)
+        def authentication = new UsernamePasswordAuthenticationToken(details, null, Collections.emptyList())
+        authentication.setDetails(details)
+        SecurityContextHolder.getContext().setAuthentication(authentication)
+    }
+}